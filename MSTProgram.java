@@ -1,22 +1,44 @@
-import java.util.*;
-import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 
 /*
   MSTProgram
   -----------
   - Girdi olarak bir test dosyası (ör: test1.txt) alır.
   - İlk kısımda vertex ve edge bilgilerini okuyarak bir Graph oluşturur.
+  - Graph sütunlu tutulur: vertex'ler okunma sırasına göre int indekslidir, kenarlar CSR dizilerindedir
+    (offsets / targets / float weights); sonradan eklenen kenarlar ayrı bir taşma alanına yazılır.
   - Ardından Prim algoritması ile MST (Multiway Tree) kurar.
-  - Daha sonra test dosyasındaki komutları ("print-mst", "path", "insert-edge", "decrease-weight", "quit") uygular.
-  - MST, multiway tree olarak saklanır. Her vertex'i temsil eden Node'da parent, firstChild, nextSibling, prevSibling
-    gibi pointer'lar bulunur.
-  - "evert(u)" işlemiyle istenen düğüm kök yapılarak "print-mst" çıktısı alınır.
+  - Daha sonra test dosyasındaki komutları ("print-mst", "path", "insert-edge", "decrease-weight",
+    "delete-edge", "increase-weight", "quit") uygular.
+  - MST bir link-cut tree'de tutulur: evert, path üzerindeki en büyük kenar, cut ve link amortized O(log n).
+  - Multiway tree (parent, firstChild, nextSibling, prevSibling int dizileri) sadece "print-mst" için,
+    istenen düğüm kök olacak şekilde kurulur; kardeşler vertex id'ye göre sıralıdır.
   - "path u v" komutunda MST üzerinde u->...->v yolunu bulup ekrana basar.
   - insert-edge / decrease-weight komutlarında MST, "minimum spanning tree" özelliğini koruyacak şekilde
     kısmen güncellenir (en kısa yol ekleniyorsa, path üzerindeki en büyük kenar çıkar vb.)
+  - delete-edge / increase-weight komutlarında MST'den çıkan kenarın yerine iki parça arasındaki en hafif
+    kenar konur; bu kenar Holm-de Lichtenberg-Thorup seviyeleri (LevelForests) üzerinden, silme başına
+    amortized polylog zamanda aranır.
+  - Eşit ağırlıklı kenarlar kenar başına tutulan bir sıra (rank) ile ayrılır: başlangıçta vertex çiftinin
+    anahtarı, her ağırlık değişikliğinde ve eklemede yeniden atanır (ağaçta kalan kenar en öne, diğerleri sona).
   - "Invalid Operation" kuralları:
     * insert-edge varsa, aynı (u,v) tekrar eklenemez.
     * decrease-weight varsa, graf içinde (u,v) kenarı yoksa geçersizdir.
+    * delete-edge / increase-weight için de graf içinde (u,v) kenarı olmalıdır.
   - Çıktı formatı ödevde anlatıldığı gibi yapılır.
 */
 
@@ -26,206 +48,2158 @@ public class MSTProgram {
     // Internal Data Classes
     // ---------------------
 
-    // Vertex in the Graph (adjacency list representation)
-    static class Vertex {
-        String id;                  // String identifier
-        ArrayList<Edge> adj;       // adjacency list (edges)
-
-        // For Prim
-        boolean inMST;             // mark if it's included in MST (Prim usage)
-        float key;                 // for Prim: best weight to connect
-        Vertex pred;               // predecessor in MST (used initially)
-        int heapIndex;             // index in the binary heap
-
-        // For referencing the MST multiway tree node
-        Node mstNode;             // link to the corresponding node in the multiway tree
-
-        public Vertex(String id) {
-            this.id = id;
-            this.adj = new ArrayList<>();
-            this.inMST = false;
-            this.key = Float.MAX_VALUE;
-            this.pred = null;
-            this.heapIndex = -1;
-            this.mstNode = null;
+    // Link-cut tree over the MST (Sleator & Tarjan), with edges as nodes of
+    // their own. Each preferred path is a splay tree ordered from the root
+    // downwards; evert reverses a path lazily with the flipped bit. A splay
+    // subtree keeps its heaviest edge node, which is the same either way
+    // round; edges are ordered by weight and then by tie rank (see
+    // MSTManager), so there is exactly one. Nodes are ints: vertex v is node v, and the MST edges take the nodes
+    // after the vertices, which go back on a free list when an edge is cut.
+    static class LinkCutTree {
+        private static final int NIL = -1;
+
+        private final int vertices;
+        private int[] left, right;
+        private int[] parent;      // splay parent, or path-parent if x is the root of its splay tree
+        private boolean[] flipped; // the children's subtrees still have to be reversed
+
+        private int[] top;         // heaviest edge node in x's splay subtree, NIL if none
+
+        private float[] weight;    // by edge node - vertices
+        private long[] rank;       // by edge node - vertices
+        private int used;          // edge nodes handed out so far
+        private int free = NIL;    // unused edge nodes, chained through left
+        private int[] pending = new int[32];
+
+        public LinkCutTree(int vertices) {
+            this.vertices = vertices;
+            // a forest has fewer edges than vertices
+            int edges = Math.max(vertices, 1);
+            left = new int[vertices + edges];
+            right = new int[vertices + edges];
+            parent = new int[vertices + edges];
+            flipped = new boolean[vertices + edges];
+            top = new int[vertices + edges];
+            weight = new float[edges];
+            rank = new long[edges];
+            Arrays.fill(left, 0, vertices, NIL);
+            Arrays.fill(right, 0, vertices, NIL);
+            Arrays.fill(parent, 0, vertices, NIL);
+            Arrays.fill(top, 0, vertices, NIL);
         }
-    }
 
-    // Edge in the Graph
-    static class Edge {
-        Vertex u, v;     // endpoints
-        float weight;    // weight
+        public boolean connected(int u, int v) {
+            return findRoot(u) == findRoot(v);
+        }
 
-        public Edge(Vertex u, Vertex v, float weight) {
-            this.u = u;
-            this.v = v;
-            this.weight = weight;
+        // Ends of the heaviest MST edge on the path u..v, by weight and then
+        // rank, as an EdgeMap key; -1 if u == v.
+        public long heaviestOnPath(int u, int v) {
+            evert(u);
+            access(v);
+            // v's splay tree is the whole path
+            int x = top[v];
+            if (x == NIL) return -1;
+            // the ends are x's neighbours in the path order
+            splay(x);
+            int a = left[x];
+            push(a);
+            while (right[a] != NIL) {
+                a = right[a];
+                push(a);
+            }
+            int b = right[x];
+            push(b);
+            while (left[b] != NIL) {
+                b = left[b];
+                push(b);
+            }
+            return EdgeMap.key(a, b);
+        }
+
+        // Vertices on the path u..v, in order.
+        public ArrayList<Integer> path(int u, int v) {
+            evert(u);
+            access(v);
+            ArrayList<Integer> result = new ArrayList<>();
+            int[] stack = new int[32];
+            int top = 0;
+            int x = v;
+            while (x != NIL || top > 0) {
+                while (x != NIL) {
+                    push(x);
+                    if (top == stack.length) stack = Arrays.copyOf(stack, 2 * top);
+                    stack[top++] = x;
+                    x = left[x];
+                }
+                x = stack[--top];
+                if (x < vertices)
+                    result.add(x);
+                x = right[x];
+            }
+            return result;
+        }
+
+        // Adds an edge of weight w and tie rank r between u and v to the MST;
+        // u and v must be in different trees.
+        public void link(int u, int v, float w, long r) {
+            int x = newEdgeNode(w, r);
+            evert(u);
+            parent[u] = x;
+            evert(v);
+            parent[v] = x;
+        }
+
+        // Takes the MST edge between u and v out.
+        public void cut(int u, int v) {
+            int x = edgeBetween(u, v);
+            cutAdjacent(x, u);
+            cutAdjacent(x, v);
+            left[x] = free;
+            free = x;
+        }
+
+        // the MST edge between u and v now weighs w, with tie rank r
+        public void reweigh(int u, int v, float w, long r) {
+            int x = edgeBetween(u, v);
+            weight[x - vertices] = w;
+            rank[x - vertices] = r;
+            update(x);
+        }
+
+        // A node for an edge of weight w and tie rank r, not linked to anything yet
+        public int newEdgeNode(float w, long r) {
+            int x;
+            if (free != NIL) {
+                x = free;
+                free = left[x];
+            } else {
+                if (used == weight.length) grow(2 * weight.length);
+                x = vertices + used++;
+            }
+            left[x] = NIL;
+            right[x] = NIL;
+            parent[x] = NIL;
+            flipped[x] = false;
+            top[x] = w == w ? x : NIL; // not NaN
+            weight[x - vertices] = w;
+            rank[x - vertices] = r;
+            return x;
+        }
+
+        // Hangs a fresh vertex or edge node under parent; only valid while
+        // child is the root of its tree and has no preferred child.
+        public void attach(int child, int parent) {
+            this.parent[child] = parent;
+        }
+
+        // Makes x the root of its tree.
+        public void evert(int x) {
+            access(x);
+            flip(x);
+        }
+
+        private void grow(int edges) {
+            int nodes = vertices + edges;
+            left = Arrays.copyOf(left, nodes);
+            right = Arrays.copyOf(right, nodes);
+            parent = Arrays.copyOf(parent, nodes);
+            flipped = Arrays.copyOf(flipped, nodes);
+            top = Arrays.copyOf(top, nodes);
+            weight = Arrays.copyOf(weight, edges);
+            rank = Arrays.copyOf(rank, edges);
+        }
+
+        // The node of the MST edge between u and v, splayed to the top of
+        // its splay tree
+        private int edgeBetween(int u, int v) {
+            evert(u);
+            access(v);
+            // the path is just u, the edge, v, so the edge ends v's left subtree
+            int x = left[v];
+            push(x);
+            while (right[x] != NIL) {
+                x = right[x];
+                push(x);
+            }
+            splay(x);
+            return x;
+        }
+
+        private void cutAdjacent(int a, int b) {
+            evert(a);
+            access(b);
+            // the path is just a, b, so a is b's whole left subtree
+            parent[left[b]] = NIL;
+            left[b] = NIL;
+            update(b);
+        }
+
+        private int findRoot(int x) {
+            access(x);
+            push(x);
+            while (left[x] != NIL) {
+                x = left[x];
+                push(x);
+            }
+            splay(x);
+            return x;
+        }
+
+        // Makes the root..x path preferred, with x the root of its splay tree.
+        private void access(int x) {
+            int last = NIL;
+            for (int y = x; y != NIL; y = parent[y]) {
+                splay(y);
+                right[y] = last;
+                update(y);
+                last = y;
+            }
+            splay(x);
+        }
+
+        private void splay(int x) {
+            // push pending flips down from the splay root first
+            int y = x;
+            int top = 0;
+            pending[top++] = y;
+            while (!isSplayRoot(y)) {
+                y = parent[y];
+                if (top == pending.length) pending = Arrays.copyOf(pending, 2 * top);
+                pending[top++] = y;
+            }
+            while (top > 0)
+                push(pending[--top]);
+
+            while (!isSplayRoot(x)) {
+                int p = parent[x];
+                if (!isSplayRoot(p)) {
+                    int g = parent[p];
+                    rotate((left[g] == p) == (left[p] == x) ? p : x);
+                }
+                rotate(x);
+            }
+        }
+
+        private void rotate(int x) {
+            int p = parent[x];
+            int g = parent[p];
+            if (!isSplayRoot(p)) {
+                if (left[g] == p) left[g] = x;
+                else right[g] = x;
+            }
+            parent[x] = g;
+            if (left[p] == x) {
+                left[p] = right[x];
+                if (right[x] != NIL) parent[right[x]] = p;
+                right[x] = p;
+            } else {
+                right[p] = left[x];
+                if (left[x] != NIL) parent[left[x]] = p;
+                left[x] = p;
+            }
+            parent[p] = x;
+            update(p);
+            update(x);
+        }
+
+        private boolean isSplayRoot(int x) {
+            int p = parent[x];
+            return p == NIL || (left[p] != x && right[p] != x);
         }
-    }
 
-    // Node in the Multiway Tree
-    // Each Node corresponds to exactly one Vertex in the Graph
-    static class Node {
-        Vertex vertex;
-        Node parent;
-        Node firstChild;
-        Node nextSibling;
-        Node prevSibling;
-
-        public Node(Vertex v) {
-            this.vertex = v;
-            this.parent = null;
-            this.firstChild = null;
-            this.nextSibling = null;
-            this.prevSibling = null;
+        private void flip(int x) {
+            int t = left[x];
+            left[x] = right[x];
+            right[x] = t;
+            flipped[x] = !flipped[x];
+        }
+
+        private void push(int x) {
+            if (flipped[x]) {
+                if (left[x] != NIL) flip(left[x]);
+                if (right[x] != NIL) flip(right[x]);
+                flipped[x] = false;
+            }
+        }
+
+        // whether edge node x comes after edge node y, or y is NIL; written so
+        // that an edge of NaN weight never counts as the heaviest
+        private boolean heavier(int x, int y) {
+            if (y == NIL) return weight[x - vertices] == weight[x - vertices];
+            float a = weight[x - vertices];
+            float b = weight[y - vertices];
+            return a > b || (a == b && rank[x - vertices] > rank[y - vertices]);
+        }
+
+        private void update(int x) {
+            int m = x < vertices || !heavier(x, NIL) ? NIL : x;
+            if (left[x] != NIL && top[left[x]] != NIL && heavier(top[left[x]], m)) m = top[left[x]];
+            if (right[x] != NIL && top[right[x]] != NIL && heavier(top[right[x]], m)) m = top[right[x]];
+            top[x] = m;
         }
     }
 
-    // A simple Binary Min-Heap for Prim's algorithm
-    // Stores Vertex objects based on vertex.key
-    static class BinaryHeap {
-        ArrayList<Vertex> heap; // using 1-based indexing is easier, but we can do 0-based
+    // Open-addressing map from a vertex pair to the edge between them. The
+    // pair's int ids are ordered and packed into one long, so both endpoints
+    // find the same entry. Edges are ints (see Graph), and -1 means none.
+    static class EdgeMap {
+        private static final long EMPTY = -1L; // ids are non-negative, so no key is -1
+
+        private long[] keys;
+        private int[] values;
+        private int size;
 
-        public BinaryHeap() {
-            heap = new ArrayList<>();
+        public EdgeMap() {
+            keys = new long[16];
+            values = new int[16];
+            Arrays.fill(keys, EMPTY);
         }
 
-        public int size() {
-            return heap.size();
+        public static long key(int a, int b) {
+            int lo = Math.min(a, b);
+            int hi = Math.max(a, b);
+            return ((long) lo << 32) | hi;
+        }
+
+        public int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) return values[slot];
+            }
+            return -1;
+        }
+
+        public void put(long key, int e) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    values[slot] = e;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = e;
+            if (2 * ++size > keys.length) resize(2 * keys.length);
+        }
+
+        public void remove(long key) {
+            int mask = keys.length - 1;
+            int hole = hash(key) & mask;
+            while (keys[hole] != key) {
+                if (keys[hole] == EMPTY) return;
+                hole = (hole + 1) & mask;
+            }
+            // move later entries of the probe run back into the hole, unless
+            // their home slot lies after it
+            for (int slot = (hole + 1) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+                int home = hash(keys[slot]) & mask;
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    keys[hole] = keys[slot];
+                    values[hole] = values[slot];
+                    hole = slot;
+                }
+            }
+            keys[hole] = EMPTY;
+            values[hole] = -1;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == EMPTY) continue;
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    // Indexed 4-ary min-heap of vertex ids for Prim, keyed by the weight of
+    // the best edge reaching them and, on equal weights, by that edge's pair
+    // key (EdgeMap.key). pos[v] is v's slot in the heap, or -1 if v is not in
+    // it; key[v] stays infinite until v is first reached.
+    static class IndexedMinHeap {
+        private static final int ARITY = 4;
+
+        private final int[] heap;
+        private final int[] pos;
+        private final float[] key;
+        private final long[] tie;
+        private int size;
+
+        public IndexedMinHeap(int capacity) {
+            heap = new int[capacity];
+            pos = new int[capacity];
+            key = new float[capacity];
+            tie = new long[capacity];
+            Arrays.fill(pos, -1);
+            Arrays.fill(key, Float.POSITIVE_INFINITY);
+            Arrays.fill(tie, Long.MAX_VALUE);
         }
 
         public boolean isEmpty() {
-            return heap.isEmpty();
+            return size == 0;
+        }
+
+        // true if an edge of weight k and pair key t reaches v more cheaply
+        public boolean improves(int v, float k, long t) {
+            return k < key[v] || (k == key[v] && t < tie[v]);
         }
 
-        public void insert(Vertex v) {
-            heap.add(v);
-            v.heapIndex = heap.size() - 1;
-            bubbleUp(heap.size() - 1);
+        // inserts v, or lowers its key if it is already in the heap
+        public void insertOrDecrease(int v, float newKey, long newTie) {
+            key[v] = newKey;
+            tie[v] = newTie;
+            if (pos[v] < 0) {
+                heap[size] = v;
+                pos[v] = size;
+                size++;
+            }
+            siftUp(pos[v]);
         }
 
-        public Vertex extractMin() {
-            if (heap.isEmpty()) return null;
-            Vertex min = heap.get(0);
-            swap(0, heap.size() - 1);
-            heap.remove(heap.size() - 1);
-            if (!heap.isEmpty()) {
-                bubbleDown(0);
+        public int extractMin() {
+            int min = heap[0];
+            size--;
+            if (size > 0) {
+                heap[0] = heap[size];
+                pos[heap[0]] = 0;
+                siftDown(0);
             }
-            min.heapIndex = -1;
+            pos[min] = -1;
             return min;
         }
 
-        // decreaseKey means: vertex's key has decreased, so bubble it up
-        public void decreaseKey(Vertex v, float newKey) {
-            // we assume newKey < v.key
-            v.key = newKey;
-            bubbleUp(v.heapIndex);
+        private boolean before(int a, int b) {
+            return key[a] < key[b] || (key[a] == key[b] && tie[a] < tie[b]);
         }
 
-        private void bubbleUp(int idx) {
-            while (idx > 0) {
-                int parentIdx = (idx - 1) / 2;
-                if (heap.get(idx).key < heap.get(parentIdx).key) {
-                    swap(idx, parentIdx);
-                    idx = parentIdx;
-                } else {
-                    break;
+        private void siftUp(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) / ARITY;
+                int p = heap[parent];
+                if (!before(v, p)) break;
+                heap[i] = p;
+                pos[p] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+
+        private void siftDown(int i) {
+            int v = heap[i];
+            while (true) {
+                int first = ARITY * i + 1;
+                if (first >= size) break;
+                int last = Math.min(first + ARITY, size);
+                int best = first;
+                for (int c = first + 1; c < last; c++) {
+                    if (before(heap[c], heap[best])) best = c;
+                }
+                if (!before(heap[best], v)) break;
+                heap[i] = heap[best];
+                pos[heap[i]] = i;
+                i = best;
+            }
+            heap[i] = v;
+            pos[v] = i;
+        }
+    }
+
+    // Borůvka's algorithm with the per-edge work spread over the common
+    // ForkJoinPool. Edges are ordered by weight and then by pair key, which is
+    // a strict order, so the forest is exactly the one Prim builds. Each round
+    // every live component picks its lightest outgoing edge (a CAS-min per
+    // component), the picks are merged into a concurrent union-find, and the
+    // graph is contracted: every live edge is relabelled with the components of
+    // its ends, and dropped if they are now one. A component that picked no edge
+    // is finished, and one that was merged into another is no longer a root, so
+    // both leave the list of live components. A round thus costs O(live edges +
+    // live components), and the live components at least halve every round.
+    static class ParallelBoruvka {
+
+        // Same result as Prim's pred array: the forest rooted at root, and every
+        // other component at its first vertex in input order.
+        public static int[] predecessors(Graph g, int root) {
+            int n = g.vertexCount();
+            // every edge once, from its lower end; self-loops never join anything
+            long[] pairs = new long[g.edgeCount()];
+            float[] weights = new float[g.edgeCount()];
+            int edges = 0;
+            for (int x = 0; x < n; x++) {
+                for (int h = g.first(x); h >= 0; h = g.next(x, h)) {
+                    int w = g.target(h);
+                    if (w <= x) continue;
+                    pairs[edges] = EdgeMap.key(x, w);
+                    weights[edges] = g.weight(h);
+                    edges++;
                 }
             }
+            int m = edges;
+            long[] pair = Arrays.copyOf(pairs, m);
+            float[] weight = Arrays.copyOf(weights, m);
+
+            // the components of each edge's ends, as union-find roots
+            int[] compLo = new int[m];
+            int[] compHi = new int[m];
+            Arrays.parallelSetAll(compLo, e -> lo(pair[e]));
+            Arrays.parallelSetAll(compHi, e -> hi(pair[e]));
+            AtomicIntegerArray parent = new AtomicIntegerArray(n);
+            AtomicIntegerArray best = new AtomicIntegerArray(n);
+            IntStream.range(0, n).parallel().forEach(v -> parent.set(v, v));
+            boolean[] inForest = new boolean[m];
+            int[] live = IntStream.range(0, m).toArray();
+            int[] roots = IntStream.range(0, n).toArray();
+
+            while (live.length > 0) {
+                Arrays.stream(roots).parallel().forEach(c -> best.set(c, -1));
+                Arrays.stream(live).parallel().forEach(e -> {
+                    offer(best, compLo[e], e, weight, pair);
+                    offer(best, compHi[e], e, weight, pair);
+                });
+
+                // both ends of an edge may pick it; marking and merging twice is harmless
+                Arrays.stream(roots).parallel().forEach(c -> {
+                    int e = best.get(c);
+                    if (e < 0) return;
+                    inForest[e] = true;
+                    union(parent, compLo[e], compHi[e]);
+                });
+
+                live = Arrays.stream(live).parallel().filter(e -> {
+                    compLo[e] = find(parent, compLo[e]);
+                    compHi[e] = find(parent, compHi[e]);
+                    return compLo[e] != compHi[e];
+                }).toArray();
+                roots = Arrays.stream(roots).parallel()
+                        .filter(c -> best.get(c) >= 0 && find(parent, c) == c)
+                        .toArray();
+            }
+            return root(n, root, inForest, pair);
+        }
+
+        private static void offer(AtomicIntegerArray best, int c, int e, float[] weight, long[] pair) {
+            while (true) {
+                int cur = best.get(c);
+                if (cur >= 0 && (weight[cur] < weight[e] || (weight[cur] == weight[e] && pair[cur] < pair[e]))) return;
+                if (best.compareAndSet(c, cur, e)) return;
+            }
         }
 
-        private void bubbleDown(int idx) {
-            int left, right, smallest;
+        // A root is only ever linked below a smaller root, so parent[v] <= v
+        // always holds and concurrent links cannot make a cycle. Finding halves
+        // the path with CAS; a lost race just leaves the path a little longer.
+        private static int find(AtomicIntegerArray parent, int v) {
             while (true) {
-                left = 2 * idx + 1;
-                right = 2 * idx + 2;
-                smallest = idx;
+                int p = parent.get(v);
+                if (p == v) return v;
+                int grand = parent.get(p);
+                if (grand != p) parent.compareAndSet(v, p, grand);
+                v = grand;
+            }
+        }
+
+        private static void union(AtomicIntegerArray parent, int a, int b) {
+            while (true) {
+                a = find(parent, a);
+                b = find(parent, b);
+                if (a == b) return;
+                // only a root still pointing at itself is relinked, so a root
+                // that was linked meanwhile makes the CAS fail and the finds retry
+                if (parent.compareAndSet(Math.max(a, b), Math.max(a, b), Math.min(a, b))) return;
+            }
+        }
+
+        private static int lo(long pair) {
+            return (int) (pair >>> 32);
+        }
+
+        private static int hi(long pair) {
+            return (int) pair;
+        }
+
+        // Orients the forest edges by a breadth-first walk from root, then from
+        // the first vertex of each component it did not reach.
+        private static int[] root(int n, int root, boolean[] inForest, long[] pair) {
+            int[] offsets = new int[n + 1];
+            for (int e = 0; e < pair.length; e++) {
+                if (!inForest[e]) continue;
+                offsets[lo(pair[e]) + 1]++;
+                offsets[hi(pair[e]) + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] targets = new int[offsets[n]];
+            int[] next = Arrays.copyOf(offsets, n);
+            for (int e = 0; e < pair.length; e++) {
+                if (!inForest[e]) continue;
+                targets[next[lo(pair[e])]++] = hi(pair[e]);
+                targets[next[hi(pair[e])]++] = lo(pair[e]);
+            }
+
+            int[] pred = new int[n];
+            Arrays.fill(pred, -1);
+            boolean[] seen = new boolean[n];
+            int[] queue = new int[n];
+            int unseen = 0;
+            int start = root;
+            while (start >= 0) {
+                int head = 0, tail = 0;
+                queue[tail++] = start;
+                seen[start] = true;
+                while (head < tail) {
+                    int u = queue[head++];
+                    for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                        int w = targets[i];
+                        if (seen[w]) continue;
+                        seen[w] = true;
+                        pred[w] = u;
+                        queue[tail++] = w;
+                    }
+                }
+                while (unseen < n && seen[unseen]) unseen++;
+                start = unseen < n ? unseen : -1;
+            }
+            return pred;
+        }
+    }
+
+    // The MST forest laid out for path queries while it does not change
+    // (heavy-light decomposition). Vertices get positions in a preorder that
+    // always continues into the largest child subtree first, so each heavy path
+    // is a run of consecutive positions and any tree path is O(log n) runs.
+    // All arrays below are indexed by position.
+    static class HeavyPaths {
+        private final int[] pos;      // vertex index -> position
+        private final String[] id;
+        private final int[] parent;   // -1 at a root
+        private final int[] head;     // top of the heavy path
+        private final int[] depth;
+        private final int[] root;
+        private int[] pending = new int[32]; // v-side runs of the path being printed
+
+        public HeavyPaths(Graph graph) {
+            int n = graph.vertexCount();
+
+            // preorder of the forest, parents before children
+            int[] up = new int[n];
+            Arrays.fill(up, -2);
+            int[] order = new int[n];
+            int count = 0;
+            int[] stack = new int[n];
+            for (int r = 0; r < n; r++) {
+                if (up[r] != -2) continue;
+                up[r] = -1;
+                order[count++] = r;
+                int top = 0;
+                stack[top++] = r;
+                while (top > 0) {
+                    int x = stack[--top];
+                    for (int h = graph.first(x); h >= 0; h = graph.next(x, h)) {
+                        if (!graph.inTree(h)) continue; // not an MST edge
+                        int w = graph.target(h);
+                        if (up[w] != -2) continue;
+                        up[w] = x;
+                        order[count++] = w;
+                        stack[top++] = w;
+                    }
+                }
+            }
+
+            int[] size = new int[n];
+            int[] heavy = new int[n];
+            Arrays.fill(heavy, -1);
+            for (int i = n - 1; i >= 0; i--) {
+                int v = order[i];
+                size[v]++;
+                if (up[v] >= 0) size[up[v]] += size[v];
+            }
+            int[] firstChild = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                int v = order[i];
+                int p = up[v];
+                if (p < 0) continue;
+                firstChild[p + 1]++;
+                if (heavy[p] == -1 || size[v] > size[heavy[p]]) heavy[p] = v;
+            }
+            for (int v = 0; v < n; v++) firstChild[v + 1] += firstChild[v];
+            int[] children = new int[n];
+            int[] next = Arrays.copyOf(firstChild, n);
+            for (int i = 0; i < n; i++) {
+                int v = order[i];
+                if (up[v] >= 0) children[next[up[v]]++] = v;
+            }
+
+            pos = new int[n];
+            id = new String[n];
+            parent = new int[n];
+            head = new int[n];
+            depth = new int[n];
+            root = new int[n];
+            int assigned = 0;
+            for (int i = 0; i < n; i++) {
+                if (up[order[i]] != -1) continue;
+                int top = 0;
+                stack[top++] = order[i];
+                while (top > 0) {
+                    int x = stack[--top];
+                    for (int y = x; y != -1; y = heavy[y]) {
+                        int py = assigned++;
+                        pos[y] = py;
+                        id[py] = graph.id(y);
+                        head[py] = pos[x];
+                        parent[py] = up[y] < 0 ? -1 : pos[up[y]];
+                        depth[py] = up[y] < 0 ? 0 : depth[parent[py]] + 1;
+                        root[py] = up[y] < 0 ? py : root[parent[py]];
+                        for (int c = firstChild[y]; c < firstChild[y + 1]; c++) {
+                            if (children[c] != heavy[y]) stack[top++] = children[c];
+                        }
+                    }
+                }
+            }
+        }
+
+        public boolean connected(int u, int v) {
+            return root[pos[u]] == root[pos[v]];
+        }
+
+        // Adds the ids on the path u..v to sj, in order; u and v must be connected.
+        public void path(int u, int v, StringJoiner sj) {
+            int a = pos[u];
+            int b = pos[v];
+            int runs = 0;
+            while (head[a] != head[b]) {
+                if (depth[head[a]] >= depth[head[b]]) {
+                    for (int p = a; p >= head[a]; p--) sj.add(id[p]);
+                    a = parent[head[a]];
+                } else {
+                    if (runs + 2 > pending.length) pending = Arrays.copyOf(pending, 2 * pending.length);
+                    pending[runs++] = head[b];
+                    pending[runs++] = b;
+                    b = parent[head[b]];
+                }
+            }
+            // a and b are on one heavy path now, the shallower one is the meeting point
+            if (a >= b) {
+                for (int p = a; p >= b; p--) sj.add(id[p]);
+            } else {
+                for (int p = a; p <= b; p++) sj.add(id[p]);
+            }
+            while (runs > 0) {
+                int last = pending[--runs];
+                for (int p = pending[--runs]; p <= last; p++) sj.add(id[p]);
+            }
+        }
+    }
+
+    // Open-addressing table from vertex id to vertex index, keyed on the id's
+    // UTF-8 bytes so that the loader can look ids up straight from its input
+    // buffer. The bytes of vertex i are pool[starts[i] .. starts[i + 1]). A
+    // slot is one int: the vertex index + 1 below the slot mask, and the high
+    // bits of the id's hash above it. At least a quarter of the slots stay
+    // free, so the index always fits, and most ids that do not match are
+    // turned away without reading the pool.
+    static class VertexTable {
+        private int[] slots = new int[16]; // 0 if empty
+        private int count;                 // vertices, with ids a later duplicate took over
+        private byte[] pool = new byte[1 << 12];
+        private int[] starts = new int[1 << 10];
+
+        public int size() {
+            return count;
+        }
+
+        public String id(int index) {
+            return new String(pool, starts[index], starts[index + 1] - starts[index], StandardCharsets.UTF_8);
+        }
+
+        // The vertex with this id, or -1
+        public int get(String id) {
+            byte[] b = id.getBytes(StandardCharsets.UTF_8);
+            return get(b, 0, b.length);
+        }
+
+        public int get(byte[] b, int off, int len) {
+            int h = hash(b, off, len);
+            int mask = slots.length - 1;
+            for (int slot = h & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+                if (matches(slots[slot], mask, b, off, len, h)) return (slots[slot] & mask) - 1;
+            }
+            return -1;
+        }
 
-                if (left < heap.size() && heap.get(left).key < heap.get(smallest).key) {
-                    smallest = left;
+        // Adds the next vertex and returns its index; a later vertex with the
+        // same id replaces the earlier one
+        public int put(String id) {
+            byte[] b = id.getBytes(StandardCharsets.UTF_8);
+            int index = count++;
+            if (index + 2 > starts.length) starts = Arrays.copyOf(starts, 2 * starts.length);
+            int from = starts[index];
+            if (from + b.length > pool.length) pool = Arrays.copyOf(pool, Math.max(2 * pool.length, from + b.length));
+            System.arraycopy(b, 0, pool, from, b.length);
+            starts[index + 1] = from + b.length;
+            if (4 * count > 3 * slots.length) resize(2 * slots.length);
+
+            int h = hash(b, 0, b.length);
+            int mask = slots.length - 1;
+            int entry = (h & ~mask) | (index + 1);
+            int slot = h & mask;
+            while (slots[slot] != 0) {
+                if (matches(slots[slot], mask, b, 0, b.length, h)) {
+                    slots[slot] = entry;
+                    return index;
                 }
-                if (right < heap.size() && heap.get(right).key < heap.get(smallest).key) {
-                    smallest = right;
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry;
+            return index;
+        }
+
+        // drops the spare room the pool and starts grew with
+        public void trim() {
+            pool = Arrays.copyOf(pool, starts[count]);
+            starts = Arrays.copyOf(starts, count + 1);
+        }
+
+        private boolean matches(int entry, int mask, byte[] b, int off, int len, int h) {
+            if (((entry ^ h) & ~mask) != 0) return false;
+            int index = (entry & mask) - 1;
+            return Arrays.equals(pool, starts[index], starts[index + 1], b, off, off + len);
+        }
+
+        // the hash bits kept in the slots depend on the capacity, so every id
+        // is hashed again from the pool
+        private void resize(int capacity) {
+            int[] old = slots;
+            int oldMask = old.length - 1;
+            slots = new int[capacity];
+            int mask = capacity - 1;
+            for (int entry : old) {
+                if (entry == 0) continue;
+                int index = (entry & oldMask) - 1;
+                int h = hash(pool, starts[index], starts[index + 1] - starts[index]);
+                int slot = h & mask;
+                while (slots[slot] != 0) slot = (slot + 1) & mask;
+                slots[slot] = (h & ~mask) | (index + 1);
+            }
+        }
+
+        private static int hash(byte[] b, int off, int len) {
+            int h = 0;
+            for (int i = off; i < off + len; i++) h = 31 * h + b[i];
+            h *= 0x9E3779B9; // ids like v1, v2, ... hash to runs that linear probing clusters on
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // Line-oriented tokenizer over raw input bytes. readLine() makes the next
+    // line current and nextToken() steps through its whitespace-separated
+    // tokens, which are compared, parsed and looked up in place without
+    // building Strings. The current token is buf[start .. end).
+    static class ByteTokenizer implements Closeable {
+        // powers of ten that a float holds exactly
+        private static final float[] POW10 = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+        private final InputStream in;
+        byte[] buf = new byte[1 << 16];
+        int start, end;
+        private int pos, limit;   // unread input is buf[pos .. limit)
+        private boolean eof;
+        private int cursor;       // rest of the current line is buf[cursor .. lineEnd)
+        private int lineEnd;
+
+        public ByteTokenizer(InputStream in) {
+            this.in = in;
+        }
+
+        public boolean readLine() throws IOException {
+            int i = pos;
+            while (true) {
+                while (i < limit && buf[i] != '\n') i++;
+                if (i < limit || eof) break;
+                int scanned = i - pos;
+                fill();
+                i = pos + scanned;
+            }
+            if (pos == limit) return false;
+            cursor = pos;
+            lineEnd = i;
+            pos = (i < limit) ? i + 1 : i;
+            return true;
+        }
+
+        public void nextLine() throws IOException {
+            if (!readLine()) throw new NoSuchElementException("No line found");
+        }
+
+        public boolean nextToken() {
+            int i = cursor;
+            while (i < lineEnd && isSpace(buf[i])) i++;
+            if (i == lineEnd) {
+                cursor = i;
+                return false;
+            }
+            start = i;
+            while (i < lineEnd && !isSpace(buf[i])) i++;
+            end = i;
+            cursor = i;
+            return true;
+        }
+
+        public void requireToken() {
+            if (!nextToken()) throw new NoSuchElementException("Missing token");
+        }
+
+        // the current line with leading and trailing whitespace removed, as trim() does
+        public String trimmedLine() {
+            int from = cursor;
+            int to = lineEnd;
+            while (from < to && (buf[from] & 0xff) <= ' ') from++;
+            while (to > from && (buf[to - 1] & 0xff) <= ' ') to--;
+            cursor = lineEnd;
+            return new String(buf, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        public String token() {
+            return new String(buf, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        public boolean tokenIs(String ascii) {
+            if (end - start != ascii.length()) return false;
+            for (int i = 0; i < ascii.length(); i++) {
+                if (buf[start + i] != ascii.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        public int tokenInt() {
+            int i = start;
+            boolean negative = buf[i] == '-';
+            if (negative || buf[i] == '+') i++;
+            if (i == end) throw new NumberFormatException("For input string: \"" + token() + "\"");
+            long value = 0;
+            for (; i < end; i++) {
+                int digit = buf[i] - '0';
+                if (digit < 0 || digit > 9 || (value = 10 * value + digit) > Integer.MAX_VALUE + 1L) {
+                    throw new NumberFormatException("For input string: \"" + token() + "\"");
                 }
-                if (smallest != idx) {
-                    swap(idx, smallest);
-                    idx = smallest;
+            }
+            if (negative) value = -value;
+            if (value > Integer.MAX_VALUE) throw new NumberFormatException("For input string: \"" + token() + "\"");
+            return (int) value;
+        }
+
+        // Plain decimals of up to 24 significant bits and 10 fraction digits are
+        // exact float / power-of-ten divisions, which round the same way
+        // Float.parseFloat does; anything else goes through Float.parseFloat.
+        public float tokenFloat() {
+            int i = start;
+            boolean negative = buf[i] == '-';
+            if (negative || buf[i] == '+') i++;
+            long mantissa = 0;
+            int scale = 0;
+            boolean digits = false;
+            boolean dot = false;
+            for (; i < end; i++) {
+                byte b = buf[i];
+                if (b >= '0' && b <= '9') {
+                    mantissa = 10 * mantissa + (b - '0');
+                    digits = true;
+                    if (dot) scale++;
+                    if (mantissa > (1 << 24) || scale >= POW10.length) break;
+                } else if (b == '.' && !dot) {
+                    dot = true;
                 } else {
                     break;
                 }
             }
+            if (i < end || !digits) return Float.parseFloat(token());
+            float value = (float) mantissa / POW10[scale];
+            return negative ? -value : value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
         }
 
-        private void swap(int i, int j) {
-            Vertex vi = heap.get(i);
-            Vertex vj = heap.get(j);
-            heap.set(i, vj);
-            heap.set(j, vi);
-            // update indices
-            vi.heapIndex = j;
-            vj.heapIndex = i;
+        private void fill() throws IOException {
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            } else if (limit == buf.length) {
+                buf = Arrays.copyOf(buf, 2 * buf.length);
+            }
+            int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) eof = true;
+            else limit += n;
         }
     }
 
     // -------------
     // Graph Object
     // -------------
+    // Vertices are ints in the order they were read, with their ids in a
+    // VertexTable. The edges read with the graph are kept in CSR form: the
+    // neighbours of v are targets[offsets[v] .. offsets[v + 1]), in increasing
+    // order. Every edge is listed from both ends (a self-loop once), and a
+    // deleted one stays where it is with its targets complemented (~w). Edges
+    // inserted later go to an overflow with a linked list per vertex.
+    //
+    // Each listing of an edge is a half: CSR slot i is half i, and overflow
+    // edge k has halves base + 2k (at extraFrom[k]) and base + 2k + 1 (at
+    // extraTo[k]). An edge is named by its half in the higher vertex's range
+    // (a self-loop by its only half), or by base + 2k. The half in the lower
+    // vertex's range holds the weight, and the named half holds the slot of
+    // that one, so both ends of an edge, its weight and its other half are
+    // found in O(1).
+    //
+    // Finding the edge between two vertices is a binary search of the higher
+    // one's range, O(log degree). This is a deliberate trade against memory:
+    // an index of all pairs would take 16 bytes or more per edge, as much as
+    // the CSR arrays themselves. Only the overflow edges are in an EdgeMap.
     static class Graph {
-        HashMap<String, Vertex> map; // from id -> Vertex
-        ArrayList<Edge> edges;       // keep edges if needed
-        ArrayList<Vertex> vertices;  // all vertex objects
+        VertexTable ids;             // from id -> vertex index
+
+        int[] offsets;
+        int[] targets;
+        private int[] weightOrTwin;  // by half: the weight's float bits, or the slot of the half holding them
+        private long[] holdsWeight;  // bit per half: it is the lower vertex's half, or a self-loop
+        private long[] reversed;     // bit per CSR edge: it was read with its higher vertex first
+        private long[] inTree;       // bit per half (per edge in the overflow): the edge is in the MST
+        private int base;            // targets.length
+
+        private EdgeMap extraIndex;  // (u,v) -> overflow edge, either way round
+        private int[] extraFrom, extraTo;  // extraTo chains the unused ks instead
+        private float[] extraWeight;
+        private long[] extraRank;    // 0 while the edge has its pair key as rank
+        private int[] extraHead;     // by vertex: first overflow half, -1 if none
+        private int[] extraNext;     // by half - base
+        private int extraCount;
+        private int extraFree = -1;
+
+        private int edgeCount;
+
+        // tie ranks set for CSR edges, by weight half; null until the first
+        private long[] ranks;
+
+        // edges as they are read, until finishLoading
+        private int[] loadFrom = new int[16];
+        private int[] loadTo = new int[16];
+        private float[] loadWeight = new float[16];
+        private int loaded;
 
         public Graph() {
-            map = new HashMap<>();
-            edges = new ArrayList<>();
-            vertices = new ArrayList<>();
+            ids = new VertexTable();
+            extraIndex = new EdgeMap();
+            extraFrom = new int[4];
+            extraTo = new int[4];
+            extraWeight = new float[4];
+            extraRank = new long[4];
+            extraNext = new int[8];
+        }
+
+        public int vertexCount() {
+            return ids.size();
+        }
+
+        public int edgeCount() {
+            return edgeCount;
+        }
+
+        public String id(int v) {
+            return ids.id(v);
         }
 
         public void addVertex(String id) {
-            Vertex v = new Vertex(id);
-            map.put(id, v);
-            vertices.add(v);
+            ids.put(id);
+        }
+
+        // An edge read with the graph; the first of several between the same
+        // two vertices is the one kept
+        public void loadEdge(int v1, int v2, float w) {
+            if (loaded == loadFrom.length) {
+                loadFrom = Arrays.copyOf(loadFrom, 2 * loaded);
+                loadTo = Arrays.copyOf(loadTo, 2 * loaded);
+                loadWeight = Arrays.copyOf(loadWeight, 2 * loaded);
+            }
+            loadFrom[loaded] = v1;
+            loadTo[loaded] = v2;
+            loadWeight[loaded] = w;
+            loaded++;
+        }
+
+        // Lays the loaded edges out in CSR form; no vertices can be added after
+        public void finishLoading() {
+            int n = vertexCount();
+            ids.trim();
+            offsets = new int[n + 1];
+            for (int i = 0; i < loaded; i++) {
+                offsets[loadFrom[i] + 1]++;
+                if (loadFrom[i] != loadTo[i]) offsets[loadTo[i] + 1]++;
+            }
+            for (int v = 0; v < n; v++) offsets[v + 1] += offsets[v];
+
+            // in input order within each range, and the lower end's copy
+            // complemented if the edge was read the other way round
+            targets = new int[offsets[n]];
+            weightOrTwin = new int[offsets[n]];
+            int[] next = Arrays.copyOf(offsets, n);
+            for (int i = 0; i < loaded; i++) {
+                int a = loadFrom[i];
+                int b = loadTo[i];
+                int lo = Math.min(a, b);
+                int hi = Math.max(a, b);
+                int w = Float.floatToRawIntBits(loadWeight[i]);
+                weightOrTwin[next[lo]] = w;
+                targets[next[lo]++] = a > b ? ~hi : hi;
+                if (a == b) continue;
+                weightOrTwin[next[hi]] = w;
+                targets[next[hi]++] = lo;
+            }
+            loadFrom = null;
+            loadTo = null;
+            loadWeight = null;
+            next = null;
+
+            // sort each range and keep the first of equal neighbours, moving
+            // the ranges down over what was dropped
+            int out = 0;
+            for (int v = 0; v < n; v++) {
+                int from = offsets[v];
+                int to = offsets[v + 1];
+                sortRange(from, to);
+                offsets[v] = out;
+                int last = -1;
+                for (int i = from; i < to; i++) {
+                    int w = plain(targets[i]);
+                    if (w == last) continue;
+                    last = w;
+                    targets[out] = targets[i];
+                    weightOrTwin[out] = weightOrTwin[i];
+                    out++;
+                    if (w >= v) edgeCount++;
+                }
+            }
+            offsets[n] = out;
+            if (out < targets.length) {
+                targets = Arrays.copyOf(targets, out);
+                weightOrTwin = Arrays.copyOf(weightOrTwin, out);
+            }
+            base = out;
+
+            // The higher vertex's half gets the slot of the lower one in place
+            // of its weight. Going through the lower ends in order meets the
+            // halves below w in w's range in their sorted order, so a cursor
+            // per range finds each one.
+            holdsWeight = new long[(out + 63) >> 6];
+            reversed = new long[(out + 63) >> 6];
+            next = Arrays.copyOf(offsets, n);
+            for (int v = 0; v < n; v++) {
+                for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    int w = plain(targets[i]);
+                    if (w < v) continue;
+                    setBit(holdsWeight, i, true);
+                    int e = i;
+                    if (w > v) {
+                        e = next[w]++;
+                        weightOrTwin[e] = i;
+                    }
+                    if (targets[i] < 0) {
+                        targets[i] = w;
+                        setBit(reversed, e, true);
+                    }
+                }
+            }
+            inTree = new long[(base + 2 * extraFrom.length + 63) >> 6];
+        }
+
+        // Stable sort of targets[from .. to) by neighbour, weights alongside;
+        // short ranges by insertion, long ones through (neighbour, place) keys
+        private void sortRange(int from, int to) {
+            int i = from + 1;
+            while (i < to && plain(targets[i - 1]) <= plain(targets[i])) i++;
+            if (i >= to) return;
+            if (to - from <= 32) {
+                for (; i < to; i++) {
+                    int t = targets[i];
+                    int w = weightOrTwin[i];
+                    int j = i - 1;
+                    while (j >= from && plain(targets[j]) > plain(t)) {
+                        targets[j + 1] = targets[j];
+                        weightOrTwin[j + 1] = weightOrTwin[j];
+                        j--;
+                    }
+                    targets[j + 1] = t;
+                    weightOrTwin[j + 1] = w;
+                }
+                return;
+            }
+            int len = to - from;
+            long[] keys = new long[len];
+            for (int k = 0; k < len; k++) keys[k] = ((long) plain(targets[from + k]) << 32) | k;
+            Arrays.sort(keys);
+            int[] t = Arrays.copyOfRange(targets, from, to);
+            int[] w = Arrays.copyOfRange(weightOrTwin, from, to);
+            for (int k = 0; k < len; k++) {
+                targets[from + k] = t[(int) keys[k]];
+                weightOrTwin[from + k] = w[(int) keys[k]];
+            }
+        }
+
+        // a target with its complement (loading, deleted edges) undone
+        private static int plain(int target) {
+            return target < 0 ? ~target : target;
+        }
+
+        private static boolean bit(long[] bits, int i) {
+            return (bits[i >> 6] & (1L << i)) != 0;
+        }
+
+        private static void setBit(long[] bits, int i, boolean value) {
+            if (value) bits[i >> 6] |= 1L << i;
+            else bits[i >> 6] &= ~(1L << i);
+        }
+
+        // CSR slot of w in v's range, deleted or not; -1 if there is none
+        private int slot(int v, int w) {
+            int lo = offsets[v];
+            int hi = offsets[v + 1] - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int t = plain(targets[mid]);
+                if (t < w) lo = mid + 1;
+                else if (t > w) hi = mid - 1;
+                else return mid;
+            }
+            return -1;
+        }
+
+        // the half of CSR half h's edge that holds the weight
+        private int lower(int h) {
+            return bit(holdsWeight, h) ? h : weightOrTwin[h];
+        }
+
+        // Edge between v1 and v2, either way round, or -1
+        public int edge(int v1, int v2) {
+            int lo = Math.min(v1, v2);
+            int hi = Math.max(v1, v2);
+            int s = slot(hi, lo);
+            if (s >= 0 && targets[s] >= 0) return s;
+            return extraIndex.get(EdgeMap.key(lo, hi));
+        }
+
+        // Ends of edge e, the way round it was read or inserted
+        public int from(int e) {
+            if (e >= base) return extraFrom[(e - base) >> 1];
+            return bit(reversed, e) ? targets[lower(e)] : targets[e];
+        }
+
+        public int to(int e) {
+            if (e >= base) return extraTo[(e - base) >> 1];
+            return bit(reversed, e) ? targets[e] : targets[lower(e)];
+        }
+
+        // weight of an edge, or of the edge of a half
+        public float weight(int h) {
+            if (h >= base) return extraWeight[(h - base) >> 1];
+            return Float.intBitsToFloat(weightOrTwin[lower(h)]);
+        }
+
+        // Tie rank of an edge (see MSTManager): the one set last, or else the
+        // EdgeMap key of its ends
+        public long rank(int e) {
+            long r = assignedRank(e);
+            return r != 0 ? r : EdgeMap.key(from(e), to(e));
+        }
+
+        // the same for the edge of half h at x
+        public long rank(int x, int h) {
+            long r = assignedRank(h);
+            return r != 0 ? r : EdgeMap.key(x, target(h));
+        }
+
+        private long assignedRank(int h) {
+            if (h >= base) return extraRank[(h - base) >> 1];
+            return ranks == null ? 0 : ranks[lower(h)];
+        }
+
+        public void setRank(int e, long r) {
+            if (e >= base) {
+                extraRank[(e - base) >> 1] = r;
+                return;
+            }
+            if (ranks == null) ranks = new long[base];
+            ranks[lower(e)] = r;
+        }
+
+        // One int per edge, the same for both halves, below halfLimit()
+        public int edgeOf(int h) {
+            return h < base ? lower(h) : base + ((h - base) & ~1);
+        }
+
+        // bound on the halves, and so on edgeOf, of the edges there are room for
+        public int halfLimit() {
+            return base + 2 * extraFrom.length;
         }
 
-        public boolean addEdge(String id1, String id2, float w) {
+        public void setWeight(int e, float w) {
+            if (e >= base) {
+                extraWeight[(e - base) >> 1] = w;
+                return;
+            }
+            weightOrTwin[lower(e)] = Float.floatToRawIntBits(w);
+        }
+
+        // whether the edge of half h is in the MST
+        public boolean inTree(int h) {
+            return bit(inTree, h < base ? h : base + ((h - base) & ~1));
+        }
+
+        public void setInTree(int e, boolean value) {
+            setBit(inTree, e, value);
+            if (e < base) setBit(inTree, lower(e), value);
+        }
+
+        public void clearTree() {
+            Arrays.fill(inTree, 0);
+        }
+
+        // every edge back to its pair key as rank
+        public void clearRanks() {
+            ranks = null;
+            Arrays.fill(extraRank, 0);
+        }
+
+        // Halves at vertex x: for (h = first(x); h >= 0; h = next(x, h))
+        public int first(int x) {
+            return skipDeleted(x, offsets[x]);
+        }
+
+        public int next(int x, int h) {
+            return h < base ? skipDeleted(x, h + 1) : extraNext[h - base];
+        }
+
+        // first overflow half at x, or -1
+        public int extraFirst(int x) {
+            return extraHead == null ? -1 : extraHead[x];
+        }
+
+        private int skipDeleted(int x, int i) {
+            int end = offsets[x + 1];
+            while (i < end && targets[i] < 0) i++;
+            return i < end ? i : extraFirst(x);
+        }
+
+        // the vertex half h leads to
+        public int target(int h) {
+            if (h < base) return targets[h];
+            int k = (h - base) >> 1;
+            return ((h - base) & 1) == 0 ? extraTo[k] : extraFrom[k];
+        }
+
+        // Returns the new edge, or -1 if a vertex is missing or the edge exists
+        public int addEdge(String id1, String id2, float w) {
             // check if vertices exist
-            Vertex v1 = map.get(id1);
-            Vertex v2 = map.get(id2);
-            if (v1 == null || v2 == null) return false;
+            int v1 = ids.get(id1);
+            int v2 = ids.get(id2);
+            if (v1 < 0 || v2 < 0) return -1;
+            return addEdge(v1, v2, w);
+        }
 
+        public int addEdge(int v1, int v2, float w) {
             // check if this edge (v1->v2) or (v2->v1) already exists
-            // we do a quick adjacency check
-            for (Edge e : v1.adj) {
-                if ((e.u == v1 && e.v == v2) || (e.u == v2 && e.v == v1)) {
-                    // edge already exists
-                    return false;
-                }
-            }
-            // create edge
-            Edge e = new Edge(v1, v2, w);
-            v1.adj.add(e);
-            v2.adj.add(e);
-            edges.add(e);
-            return true;
+            if (edge(v1, v2) >= 0) {
+                // edge already exists
+                return -1;
+            }
+            if (extraHead == null) {
+                extraHead = new int[vertexCount()];
+                Arrays.fill(extraHead, -1);
+            }
+            int k;
+            if (extraFree >= 0) {
+                k = extraFree;
+                extraFree = extraTo[k];
+            } else {
+                if (extraCount == extraFrom.length) growExtra();
+                k = extraCount++;
+            }
+            extraFrom[k] = v1;
+            extraTo[k] = v2;
+            extraWeight[k] = w;
+            extraRank[k] = 0;
+            int e = base + 2 * k;
+            extraNext[2 * k] = extraHead[v1];
+            extraHead[v1] = e;
+            extraNext[2 * k + 1] = extraHead[v2];
+            extraHead[v2] = e + 1;
+            extraIndex.put(EdgeMap.key(v1, v2), e);
+            setBit(inTree, e, false);
+            edgeCount++;
+            return e;
+        }
+
+        private void growExtra() {
+            int capacity = 2 * extraFrom.length;
+            extraFrom = Arrays.copyOf(extraFrom, capacity);
+            extraTo = Arrays.copyOf(extraTo, capacity);
+            extraWeight = Arrays.copyOf(extraWeight, capacity);
+            extraRank = Arrays.copyOf(extraRank, capacity);
+            extraNext = Arrays.copyOf(extraNext, 2 * capacity);
+            inTree = Arrays.copyOf(inTree, (base + 2 * capacity + 63) >> 6);
+        }
+
+        // Takes e out of the graph, and out of the MST bits
+        public void removeEdge(int e) {
+            setInTree(e, false);
+            if (e < base) {
+                int t = lower(e);
+                targets[e] = ~targets[e];
+                if (t != e) targets[t] = ~targets[t];
+            } else {
+                int k = (e - base) >> 1;
+                unlink(extraFrom[k], e);
+                unlink(extraTo[k], e + 1);
+                extraIndex.remove(EdgeMap.key(extraFrom[k], extraTo[k]));
+                extraFrom[k] = -1;
+                extraTo[k] = extraFree;
+                extraFree = k;
+            }
+            edgeCount--;
+        }
+
+        private void unlink(int x, int h) {
+            if (extraHead[x] == h) {
+                extraHead[x] = extraNext[h - base];
+                return;
+            }
+            int p = extraHead[x];
+            while (extraNext[p - base] != h) p = extraNext[p - base];
+            extraNext[p - base] = extraNext[h - base];
+        }
+
+        // x's half of the edge between x and y, or -1
+        public int half(int x, int y) {
+            int s = slot(x, y);
+            if (s >= 0 && targets[s] >= 0) return s;
+            int e = extraIndex.get(EdgeMap.key(x, y));
+            if (e < 0) return -1;
+            return extraFrom[(e - base) >> 1] == x ? e : e + 1;
+        }
+
+        // Return the edge if it exists, else -1
+        public int getEdge(String id1, String id2) {
+            int v1 = ids.get(id1);
+            int v2 = ids.get(id2);
+            if (v1 < 0 || v2 < 0) return -1;
+            return edge(v1, v2);
+        }
+
+        // For MST building with Prim; -1 if there is no such vertex
+        public int getVertex(String id) {
+            return ids.get(id);
+        }
+    }
+
+    // Replacement edges for cut MST edges, after Holm, de Lichtenberg and
+    // Thorup. Every edge has a level from 0 to log2 n; F_i is the forest of the
+    // MST edges of level i or more, and none of its trees has more than n / 2^i
+    // vertices. A non-tree edge of level i has both ends in one tree of F_i, so
+    // an edge that can replace a cut MST edge e has at most e's level, and at
+    // its level it leaves the smaller of the two trees the cut leaves. The
+    // search goes down the levels from e's, and at each one that tree goes up
+    // a level: its MST edges of this level, and the non-tree edges met inside
+    // it on the way to the lightest one that leaves it. That is what pays for
+    // the search, since an edge goes up at most log2 n times.
+    //
+    // Edges are ordered by weight and then by tie rank (see MSTManager), and
+    // the MST is the minimum one in that order. Nothing ties the levels to the
+    // weights, since insert-edge and decrease-weight can make any edge the
+    // lightest, so the search keeps the lightest leaving edge of every level
+    // down to 0, and the replacement is the lightest of those. It goes in at
+    // its own level, or lower if the tree of a level below went up, as the
+    // trees of F_i it joins must not grow. The edges left leaving at the
+    // levels above then no longer have their ends in one tree there, and come
+    // down to the replacement's level; that step is paid for by nothing, and
+    // can take O(edges) on a graph whose heavy edges sit above light ones.
+    //
+    // Each F_i is a set of Euler tours, each a splay tree over int nodes: one
+    // per vertex with MST or non-tree edges at that level, and one per
+    // direction of each MST edge in F_i (the arcs, allocated in pairs). Vertex
+    // v's node at level 0 is v; the others are found through vertexNodes, and
+    // the arcs through arcs. A vertex node holds the vertex's non-tree edges
+    // of its level as a treap of halves ordered by (weight, rank); a splay
+    // subtree keeps its number of nodes, the vertex node whose lightest half
+    // is lightest, and an arc of an MST edge of exactly this level, if any.
+    // MST edges go up a level after the search has gone past it, so that the
+    // trees it still has to look at do not change under it.
+    static class LevelForests {
+        private static final int NIL = -1;
+
+        private final Graph graph;
+        private final int levels;   // 0 .. levels - 1
+        private final EdgeMap vertexNodes = new EdgeMap();  // (level << 32 | v) -> node, for levels above 0
+        private final EdgeMap arcs = new EdgeMap();         // (level << 32 | edgeOf) -> first arc of the pair
+
+        // the splay trees of the tours, by node
+        private int[] left, right, parent;
+        private int[] size;        // nodes in x's splay subtree
+        private int[] best;        // vertex node in x's splay subtree with the lightest half, NIL if none
+        private int[] tag;         // marked arc in x's splay subtree, NIL if none
+        private int[] owner;       // the vertex of a vertex node, the complement of an arc's tail
+        private boolean[] marked;  // an arc of an MST edge whose level is this tour's
+        private int[] halves;      // a vertex node's treap of halves, NIL if empty
+        private int[] lightest;    // a vertex node's lightest half, NIL if none
+        private int used;
+        private int freeArcs = NIL; // unused arc pairs, chained through left
+
+        // the treaps of halves, by half
+        private int[] halfLeft, halfRight, halfParent, priority;
+        private int seed = 0x2545F491;
+
+        private byte[] level;      // by edgeOf
+
+        // MST edges gone up a level in this search, as (tail, head), to be
+        // linked in at their new level once it is over
+        private int[] raised = new int[16];
+        private int raisedCount;
+
+        // scratch space of replace, by level: the vertex node on the smaller
+        // side, and whether that side has a leaving edge
+        private final int[] side;
+        private final boolean[] found;
+
+        // Builds the forests of the MST marked in g, every edge at level 0
+        public LevelForests(Graph g) {
+            graph = g;
+            int n = g.vertexCount();
+            levels = 32 - Integer.numberOfLeadingZeros(Math.max(n, 1));
+            side = new int[levels];
+            found = new boolean[levels];
+            int nodes = Math.max(4 * n, 16);
+            left = new int[nodes];
+            right = new int[nodes];
+            parent = new int[nodes];
+            size = new int[nodes];
+            best = new int[nodes];
+            tag = new int[nodes];
+            owner = new int[nodes];
+            marked = new boolean[nodes];
+            halves = new int[nodes];
+            lightest = new int[nodes];
+            for (int v = 0; v < n; v++) clear(v, v);
+            used = (n + 1) & ~1; // arcs go in pairs at even nodes
+
+            int limit = g.halfLimit();
+            halfLeft = new int[limit];
+            halfRight = new int[limit];
+            halfParent = new int[limit];
+            priority = new int[limit];
+            level = new byte[limit];
+
+            // the non-tree edges first, so the tours are built over their final aggregates
+            for (int x = 0; x < n; x++) {
+                for (int h = g.first(x); h >= 0; h = g.next(x, h)) {
+                    if (!g.inTree(h) && g.target(h) != x) addHalf(x, x, h);
+                }
+            }
+
+            // each MST tree's tour, by a depth-first walk, then a balanced splay
+            // tree over it
+            boolean[] seen = new boolean[n];
+            int[] tour = new int[Math.max(3 * n, 1)];
+            int[] stack = new int[n];
+            int[] next = new int[n];   // by stack entry: the half to look at next
+            int[] via = new int[n];    // by stack entry: the arc pair it was reached by
+            for (int r = 0; r < n; r++) {
+                if (seen[r]) continue;
+                seen[r] = true;
+                int length = 0;
+                tour[length++] = r;
+                int depth = 0;
+                stack[0] = r;
+                next[0] = g.first(r);
+                via[0] = NIL;
+                depth++;
+                while (depth > 0) {
+                    int x = stack[depth - 1];
+                    int h = next[depth - 1];
+                    while (h >= 0 && (!g.inTree(h) || seen[g.target(h)])) h = g.next(x, h);
+                    if (h < 0) {
+                        depth--;
+                        if (via[depth] != NIL) tour[length++] = via[depth] + 1;
+                        continue;
+                    }
+                    next[depth - 1] = g.next(x, h);
+                    int y = g.target(h);
+                    seen[y] = true;
+                    int p = newArcPair(g.edgeOf(h), 0, x, y);
+                    marked[p] = true;
+                    tour[length++] = p;
+                    tour[length++] = y;
+                    stack[depth] = y;
+                    next[depth] = g.first(y);
+                    via[depth] = p;
+                    depth++;
+                }
+                build(tour, 0, length, NIL);
+            }
+        }
+
+        // MST edge e joins two trees, at level 0
+        public void link(int e) {
+            ensureHalves();
+            int id = graph.edgeOf(e);
+            level[id] = 0;
+            linkAt(id, 0, graph.from(e), graph.to(e));
+        }
+
+        // Non-tree edge e goes in at its level: 0 if it is new, or the one it
+        // had when it was taken out by remove
+        public void add(int e) {
+            ensureHalves();
+            int x = graph.from(e);
+            int y = graph.to(e);
+            if (x == y) return; // a self-loop never replaces anything
+            insertEdge(x, graph.half(x, y), y, level[graph.edgeOf(e)]);
+        }
+
+        // Takes non-tree edge e out, so that its weight or rank can change
+        // before add puts it back
+        public void remove(int e) {
+            int x = graph.from(e);
+            int y = graph.to(e);
+            if (x == y) return;
+            removeEdge(x, graph.half(x, y), y, level[graph.edgeOf(e)]);
+        }
+
+        // Non-tree edge e leaves the graph
+        public void delete(int e) {
+            remove(e);
+            level[graph.edgeOf(e)] = 0;
+        }
+
+        // MST edge e is cut. Takes it out of the forests and links in the
+        // lightest edge between the two trees left, which it returns, or NIL if
+        // there is none. With keep, e stays one of the candidates, at the weight
+        // it has now and ahead of any edge of the same weight. An edge that does
+        // not go back in is at level 0 afterwards.
+        public int replace(int e, boolean keep) {
+            ensureHalves();
+            int a = graph.from(e);
+            int b = graph.to(e);
+            int id = graph.edgeOf(e);
+            int top = level[id];
+            for (int i = 0; i <= top; i++) cutAt(id, i);
+
+            int bestFrom = NIL;  // the lightest leaving half so far, at bestFrom
+            int bestHalf = NIL;
+            int bestLevel = top;
+            int lowest = top + 1; // lowest level whose smaller tree had MST edges go up
+            for (int k = top; k >= 0; k--) {
+                int s = smaller(node(a, k), node(b, k));
+                side[k] = s;
+                if (raise(s, k)) lowest = k;
+                int m = leaving(s, k);
+                found[k] = m != NIL;
+                if (m == NIL) continue;
+                int x = owner[m];
+                int h = lightest[m];
+                if (bestHalf != NIL ? before(x, h, bestFrom, bestHalf) : !keep || graph.weight(h) < graph.weight(e)) {
+                    bestFrom = x;
+                    bestHalf = h;
+                    bestLevel = k;
+                }
+            }
+            if (bestHalf == NIL && !keep) {
+                linkRaised();
+                level[id] = 0;
+                return NIL;
+            }
+
+            int to = Math.min(bestLevel, lowest);
+            int u = a;
+            int v = b;
+            if (bestHalf != NIL) {
+                u = bestFrom;
+                v = graph.target(bestHalf);
+                removeEdge(u, bestHalf, v, bestLevel);
+                level[id] = 0;
+                id = graph.edgeOf(bestHalf);
+            }
+            for (int k = top; k > to; k--) {
+                if (found[k]) drain(side[k], k, to);
+            }
+            linkRaised();
+            level[id] = (byte) to;
+            for (int i = 0; i <= to; i++) linkAt(id, i, u, v);
+            return bestHalf == NIL ? e : graph.edge(u, v);
+        }
+
+        // MST edge g gives way to edge f, which is not in the forests, between
+        // the two trees g's cut leaves; g stays as a non-tree edge of level 0.
+        // f goes in at the lowest level of the MST path between its ends, so
+        // the trees of no level grow.
+        public void swap(int g, int f) {
+            ensureHalves();
+            int a = graph.from(g);
+            int b = graph.to(g);
+            int u = graph.from(f);
+            int v = graph.to(f);
+            int id = graph.edgeOf(g);
+            int top = level[id];
+            int to = 0;
+            while (to < top && connected(u, v, to + 1)) to++;
+            for (int i = 0; i <= top; i++) cutAt(id, i);
+            for (int k = top; k > to; k--) {
+                int s = smaller(node(a, k), node(b, k));
+                raise(s, k);
+                drain(s, k, to);
+            }
+            linkRaised();
+            int fid = graph.edgeOf(f);
+            level[fid] = (byte) to;
+            for (int i = 0; i <= to; i++) linkAt(fid, i, u, v);
+            level[id] = 0;
+            insertEdge(a, graph.half(a, b), b, 0);
+        }
+
+        // Moves s's tree at level k up a level: its MST edges of this level
+        // (linked in at k + 1 by linkRaised). Returns whether there were any.
+        private boolean raise(int s, int k) {
+            boolean any = false;
+            while (true) {
+                splay(s);
+                int t = tag[s];
+                if (t == NIL) return any;
+                any = true;
+                marked[t] = false;
+                update(t);
+                splay(t);
+                int u = ~owner[t];
+                int v = ~owner[t ^ 1];
+                level[graph.edgeOf(graph.half(u, v))] = (byte) (k + 1);
+                if (raisedCount == raised.length) raised = Arrays.copyOf(raised, 2 * raisedCount);
+                raised[raisedCount++] = u;
+                raised[raisedCount++] = v;
+            }
+        }
+
+        private void linkRaised() {
+            for (int i = 0; i < raisedCount; i += 2) {
+                int u = raised[i];
+                int v = raised[i + 1];
+                int id = graph.edgeOf(graph.half(u, v));
+                linkAt(id, level[id], u, v);
+            }
+            raisedCount = 0;
+        }
+
+        // The vertex node of the lightest half in s's tree at level k whose
+        // edge leaves the tree, or NIL if there is none. The lighter ones met
+        // on the way lie inside the tree, and go up a level.
+        private int leaving(int s, int k) {
+            while (true) {
+                splay(s);
+                int m = best[s];
+                if (m == NIL) return NIL;
+                int x = owner[m];
+                int h = lightest[m];
+                int y = graph.target(h);
+                if (!sameTree(m, node(y, k))) return m;
+                move(x, h, y, k, k + 1);
+            }
+        }
+
+        // Moves every half still in s's tree at level k: an edge inside the
+        // tree goes up a level, one that leaves it goes down to level to.
+        private void drain(int s, int k, int to) {
+            while (true) {
+                splay(s);
+                int m = best[s];
+                if (m == NIL) return;
+                int x = owner[m];
+                int h = lightest[m];
+                int y = graph.target(h);
+                move(x, h, y, k, sameTree(m, node(y, k)) ? k + 1 : to);
+            }
+        }
+
+        // the non-tree edge of x's half h, between x and y, from level k to level to
+        private void move(int x, int h, int y, int k, int to) {
+            removeEdge(x, h, y, k);
+            level[graph.edgeOf(h)] = (byte) to;
+            insertEdge(x, h, y, to);
+        }
+
+        private void insertEdge(int x, int h, int y, int k) {
+            addHalf(node(x, k), x, h);
+            addHalf(node(y, k), y, graph.half(y, x));
+        }
+
+        private void removeEdge(int x, int h, int y, int k) {
+            removeHalf(node(x, k), h);
+            removeHalf(node(y, k), graph.half(y, x));
+        }
+
+        // whether u and v are in one tree of F_k
+        private boolean connected(int u, int v, int k) {
+            int un = existing(u, k);
+            int vn = existing(v, k);
+            return un != NIL && vn != NIL && sameTree(un, vn);
+        }
+
+        // of two nodes in different trees, one in the tree with fewer nodes
+        private int smaller(int x, int y) {
+            splay(x);
+            int sx = size[x];
+            splay(y);
+            return sx <= size[y] ? x : y;
+        }
+
+        private boolean sameTree(int x, int y) {
+            if (x == y) return true;
+            splay(x);
+            splay(y);
+            // x is still the root of its splay tree only if y's is another
+            return parent[x] != NIL;
+        }
+
+        // v's node at level k, made if there is none yet
+        private int node(int v, int k) {
+            if (k == 0) return v;
+            long key = ((long) k << 32) | v;
+            int x = vertexNodes.get(key);
+            if (x >= 0) return x;
+            ensureNodes(used + 1);
+            x = used++;
+            clear(x, v);
+            vertexNodes.put(key, x);
+            return x;
+        }
+
+        // v's node at level k, or NIL if it has none
+        private int existing(int v, int k) {
+            return k == 0 ? v : vertexNodes.get(((long) k << 32) | v);
+        }
+
+        private void clear(int x, int v) {
+            left[x] = NIL;
+            right[x] = NIL;
+            parent[x] = NIL;
+            size[x] = 1;
+            best[x] = NIL;
+            tag[x] = NIL;
+            owner[x] = v;
+            marked[x] = false;
+            halves[x] = NIL;
+            lightest[x] = NIL;
+        }
+
+        // The two arcs of edge id at level k, from u to v and back, each a
+        // tour of its own
+        private int newArcPair(int id, int k, int u, int v) {
+            int p;
+            if (freeArcs != NIL) {
+                p = freeArcs;
+                freeArcs = left[p];
+            } else {
+                if ((used & 1) != 0) used++;
+                ensureNodes(used + 2);
+                p = used;
+                used += 2;
+            }
+            clear(p, ~u);
+            clear(p + 1, ~v);
+            arcs.put(((long) k << 32) | id, p);
+            return p;
+        }
+
+        // Puts MST edge id between u and v into the tours of level k
+        private void linkAt(int id, int k, int u, int v) {
+            int p = newArcPair(id, k, u, v);
+            marked[p] = level[id] == k;
+            update(p);
+            // u's tour from u, the arc over, v's tour from v, and the arc back
+            int x = reroot(node(u, k));
+            int y = reroot(node(v, k));
+            join(join(join(x, p), y), p + 1);
+        }
+
+        // Takes MST edge id out of the tours of level k: what lies between
+        // its two arcs is one of the two tours left, and what is around them
+        // the other
+        private void cutAt(int id, int k) {
+            long key = ((long) k << 32) | id;
+            int p = arcs.get(key);
+            arcs.remove(key);
+            int first = p;
+            int second = p + 1;
+            splay(first);
+            int before = left[first] == NIL ? 0 : size[left[first]];
+            splay(second);
+            if ((left[second] == NIL ? 0 : size[left[second]]) < before) {
+                first = p + 1;
+                second = p;
+            }
+            splay(first);
+            int x = detachLeft(first);
+            detachRight(first);
+            splay(second);
+            detachLeft(second);
+            int z = detachRight(second);
+            join(x, z);
+            left[p] = freeArcs;
+            freeArcs = p;
+        }
+
+        // Makes x's tour start at x, which it returns as its root
+        private int reroot(int x) {
+            splay(x);
+            int l = detachLeft(x);
+            return join(x, l);
+        }
+
+        private int detachLeft(int x) {
+            int l = left[x];
+            if (l == NIL) return NIL;
+            left[x] = NIL;
+            parent[l] = NIL;
+            update(x);
+            return l;
+        }
+
+        private int detachRight(int x) {
+            int r = right[x];
+            if (r == NIL) return NIL;
+            right[x] = NIL;
+            parent[r] = NIL;
+            update(x);
+            return r;
+        }
+
+        // The tour of root a followed by that of root b; returns the new root
+        private int join(int a, int b) {
+            if (a == NIL) return b;
+            if (b == NIL) return a;
+            int r = a;
+            while (right[r] != NIL) r = right[r];
+            splay(r);
+            right[r] = b;
+            parent[b] = r;
+            update(r);
+            return r;
+        }
+
+        // a balanced splay tree over tour[from .. to), hung from p
+        private int build(int[] tour, int from, int to, int p) {
+            if (from >= to) return NIL;
+            int mid = (from + to) >>> 1;
+            int x = tour[mid];
+            parent[x] = p;
+            left[x] = build(tour, from, mid, x);
+            right[x] = build(tour, mid + 1, to, x);
+            update(x);
+            return x;
+        }
+
+        private void splay(int x) {
+            while (parent[x] != NIL) {
+                int p = parent[x];
+                int g = parent[p];
+                if (g != NIL) rotate((left[g] == p) == (left[p] == x) ? p : x);
+                rotate(x);
+            }
         }
 
-        // Return the edge if it exists, else null
-        public Edge getEdge(String id1, String id2) {
-            Vertex v1 = map.get(id1);
-            Vertex v2 = map.get(id2);
-            if (v1 == null || v2 == null) return null;
-            for (Edge e : v1.adj) {
-                if ((e.u == v1 && e.v == v2) || (e.u == v2 && e.v == v1)) {
-                    return e;
+        private void rotate(int x) {
+            int p = parent[x];
+            int g = parent[p];
+            if (g != NIL) {
+                if (left[g] == p) left[g] = x;
+                else right[g] = x;
+            }
+            parent[x] = g;
+            if (left[p] == x) {
+                left[p] = right[x];
+                if (right[x] != NIL) parent[right[x]] = p;
+                right[x] = p;
+            } else {
+                right[p] = left[x];
+                if (left[x] != NIL) parent[left[x]] = p;
+                left[x] = p;
+            }
+            parent[p] = x;
+            update(p);
+            update(x);
+        }
+
+        private void update(int x) {
+            int s = 1;
+            int b = lightest[x] != NIL ? x : NIL;
+            int t = marked[x] ? x : NIL;
+            int l = left[x];
+            int r = right[x];
+            if (l != NIL) {
+                s += size[l];
+                b = lighter(best[l], b);
+                if (t == NIL) t = tag[l];
+            }
+            if (r != NIL) {
+                s += size[r];
+                b = lighter(best[r], b);
+                if (t == NIL) t = tag[r];
+            }
+            size[x] = s;
+            best[x] = b;
+            tag[x] = t;
+        }
+
+        // of two vertex nodes, either of them NIL, the one whose lightest half is lighter
+        private int lighter(int a, int b) {
+            if (a == NIL) return b;
+            if (b == NIL) return a;
+            return before(owner[a], lightest[a], owner[b], lightest[b]) ? a : b;
+        }
+
+        // whether x's half h comes before y's half k, by weight and then rank
+        private boolean before(int x, int h, int y, int k) {
+            float a = graph.weight(h);
+            float b = graph.weight(k);
+            return a < b || (a == b && graph.rank(x, h) < graph.rank(y, k));
+        }
+
+        // Adds x's half h to the treap of x's node xn
+        private void addHalf(int xn, int x, int h) {
+            halfLeft[h] = NIL;
+            halfRight[h] = NIL;
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            priority[h] = seed;
+            int p = halves[xn];
+            if (p == NIL) {
+                halfParent[h] = NIL;
+                halves[xn] = h;
+            } else {
+                while (true) {
+                    if (before(x, h, x, p)) {
+                        if (halfLeft[p] == NIL) {
+                            halfLeft[p] = h;
+                            break;
+                        }
+                        p = halfLeft[p];
+                    } else {
+                        if (halfRight[p] == NIL) {
+                            halfRight[p] = h;
+                            break;
+                        }
+                        p = halfRight[p];
+                    }
                 }
+                halfParent[h] = p;
+                while (halfParent[h] != NIL && priority[halfParent[h]] < priority[h]) rotateHalf(h);
+                if (halfParent[h] == NIL) halves[xn] = h;
+            }
+            refresh(xn);
+        }
+
+        private void removeHalf(int xn, int h) {
+            // down to at most one child, then spliced out
+            while (halfLeft[h] != NIL && halfRight[h] != NIL) {
+                int c = priority[halfLeft[h]] > priority[halfRight[h]] ? halfLeft[h] : halfRight[h];
+                rotateHalf(c);
+                if (halves[xn] == h) halves[xn] = c;
+            }
+            int c = halfLeft[h] != NIL ? halfLeft[h] : halfRight[h];
+            int p = halfParent[h];
+            if (c != NIL) halfParent[c] = p;
+            if (p == NIL) halves[xn] = c;
+            else if (halfLeft[p] == h) halfLeft[p] = c;
+            else halfRight[p] = c;
+            refresh(xn);
+        }
+
+        // puts half h above its parent
+        private void rotateHalf(int h) {
+            int p = halfParent[h];
+            int g = halfParent[p];
+            if (g != NIL) {
+                if (halfLeft[g] == p) halfLeft[g] = h;
+                else halfRight[g] = h;
             }
-            return null;
+            halfParent[h] = g;
+            if (halfLeft[p] == h) {
+                halfLeft[p] = halfRight[h];
+                if (halfRight[h] != NIL) halfParent[halfRight[h]] = p;
+                halfRight[h] = p;
+            } else {
+                halfRight[p] = halfLeft[h];
+                if (halfLeft[h] != NIL) halfParent[halfLeft[h]] = p;
+                halfLeft[h] = p;
+            }
+            halfParent[p] = h;
+        }
+
+        // after xn's treap changed
+        private void refresh(int xn) {
+            int h = halves[xn];
+            if (h != NIL) {
+                while (halfLeft[h] != NIL) h = halfLeft[h];
+            }
+            lightest[xn] = h;
+            update(xn);
+            splay(xn);
+        }
+
+        private void ensureNodes(int nodes) {
+            if (nodes <= left.length) return;
+            int capacity = Math.max(nodes, 2 * left.length);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            size = Arrays.copyOf(size, capacity);
+            best = Arrays.copyOf(best, capacity);
+            tag = Arrays.copyOf(tag, capacity);
+            owner = Arrays.copyOf(owner, capacity);
+            marked = Arrays.copyOf(marked, capacity);
+            halves = Arrays.copyOf(halves, capacity);
+            lightest = Arrays.copyOf(lightest, capacity);
         }
 
-        // For MST building with Prim
-        public Vertex getVertex(String id) {
-            return map.get(id);
+        // room for every edge the graph has room for
+        private void ensureHalves() {
+            int limit = graph.halfLimit();
+            if (limit <= level.length) return;
+            halfLeft = Arrays.copyOf(halfLeft, limit);
+            halfRight = Arrays.copyOf(halfRight, limit);
+            halfParent = Arrays.copyOf(halfParent, limit);
+            priority = Arrays.copyOf(priority, limit);
+            level = Arrays.copyOf(level, limit);
         }
     }
 
@@ -233,136 +2207,223 @@ public class MSTProgram {
     // MST Manager
     // -----------
     static class MSTManager {
+        private static final int NIL = -1;
+
         Graph graph;
 
-        // MST is stored as a multiway tree:
-        // Each Vertex has a "mstNode" -> Node with firstChild/nextSibling/etc.
-        // We will "link" them via the 'pred' from Prim (initially).
+        // MST is kept in a link-cut tree over the vertices and MST edges, and
+        // marked in graph.inTree. The multiway tree (parent/firstChild/
+        // nextSibling/prevSibling by vertex) is only built by print-mst.
+        LinkCutTree links;
+        private int[] treeParent, firstChild, nextSibling, prevSibling;
+
+        private byte[] indent = new byte[0]; // ". " repeated, see preorderPrint
+
+        // Edges are ordered by weight and then by tie rank, a strict order, and
+        // the MST is the minimum spanning forest in it. An edge's rank is its
+        // EdgeMap key, as with Prim and Borůvka, until it is inserted or its
+        // weight changes. Then it ranks below every other edge if it was in
+        // the MST and stays there, so that it keeps its place against edges of
+        // the same weight, and above every other edge otherwise.
+        private long lowRank = -1;
+        private long highRank;  // past every pair key
+
+        // the levels of the replacement search; null until an MST edge is
+        // first cut, and from then on kept up with every change
+        private LevelForests levels;
+
+        // paths() roots the MST forest once it has at least one query per this
+        // many vertices and edges
+        private static final int PATH_BATCH_RATIO = 64;
 
         public MSTManager(Graph g) {
             this.graph = g;
+            this.links = new LinkCutTree(g.vertexCount());
+            this.highRank = (long) g.vertexCount() << 32;
         }
 
         //---------------------
         // 1) Prim's Algorithm
         //---------------------
         public void buildInitialMST(String rootId) {
-            // We'll reset all vertices
-            for (Vertex v : graph.vertices) {
-                v.inMST = false;
-                v.key = Float.MAX_VALUE;
-                v.pred = null;
-            }
+            buildInitialMST(rootId, false);
+        }
 
-            Vertex root = graph.getVertex(rootId);
-            if (root == null) {
+        // parallel: build with ParallelBoruvka instead of Prim; the MST is the same
+        public void buildInitialMST(String rootId, boolean parallel) {
+            int root = graph.getVertex(rootId);
+            if (root < 0) {
                 // invalid, but assume input is correct as per instructions
                 return;
             }
 
-            root.key = 0;
-
-            BinaryHeap pq = new BinaryHeap();
-            // put all in the heap
-            for (Vertex v : graph.vertices) {
-                pq.insert(v);
-            }
-
-            // Prim
-            while (!pq.isEmpty()) {
-                Vertex u = pq.extractMin();
-                u.inMST = true;
-
-                // for each adjacency
-                for (Edge e : u.adj) {
-                    Vertex w = (e.u == u) ? e.v : e.u;
-                    if (!w.inMST && e.weight < w.key) {
-                        pq.decreaseKey(w, e.weight);
-                        w.pred = u;
-                    }
-                }
-            }
-
-            // now build the multiway tree structure from pred info
-            // first, break any existing MST node links if we are rebuilding
-            for (Vertex v : graph.vertices) {
-                v.mstNode = new Node(v);
-            }
-            // link them
-            for (Vertex v : graph.vertices) {
-                if (v.pred != null) {
-                    // v's parent is v.pred in MST
-                    Node child = v.mstNode;
-                    Node parent = v.pred.mstNode;
-                    linkAsChild(parent, child);
+            int[] pred = parallel ? ParallelBoruvka.predecessors(graph, root) : prim(root);
+
+            // now load the pred forest into the link-cut tree
+            // first, break any existing MST links if we are rebuilding
+            int n = graph.vertexCount();
+            links = new LinkCutTree(n);
+            levels = null;
+            graph.clearTree();
+            graph.clearRanks();
+            // every node starts out as its own preferred path, so the forest can be
+            // hung from path-parent pointers as it is
+            for (int v = 0; v < n; v++) {
+                if (pred[v] >= 0) {
+                    int e = graph.edge(v, pred[v]);
+                    int x = links.newEdgeNode(graph.weight(e), EdgeMap.key(v, pred[v]));
+                    links.attach(v, x);
+                    links.attach(x, pred[v]);
+                    graph.setInTree(e, true);
                 }
             }
         }
 
-        // link childNode as a child of parentNode in the multiway tree
-        private void linkAsChild(Node parent, Node child) {
-            child.parent = parent;
-            // insert child in sorted order among siblings by vertex id
-            // So we find the correct place among parent's children
-            if (parent.firstChild == null) {
-                parent.firstChild = child;
-            } else {
-                // we want to insert child so that siblings are sorted by id
-                Node cursor = parent.firstChild;
-                // if 'child' < cursor => put child as new firstChild
-                if (child.vertex.id.compareTo(cursor.vertex.id) < 0) {
-                    // insert in front
-                    child.nextSibling = cursor;
-                    cursor.prevSibling = child;
-                    parent.firstChild = child;
-                } else {
-                    // find place in sibling chain
-                    while (cursor.nextSibling != null &&
-                            cursor.nextSibling.vertex.id.compareTo(child.vertex.id) < 0) {
-                        cursor = cursor.nextSibling;
+        // Prim, from root first and then from the first vertex of every
+        // component it did not reach. Vertices enter the heap when first reached.
+        // Returns each vertex's predecessor in MST, -1 for roots.
+        private int[] prim(int root) {
+            int n = graph.vertexCount();
+            int[] offsets = graph.offsets;
+            int[] targets = graph.targets;
+            IndexedMinHeap pq = new IndexedMinHeap(n);
+            boolean[] inMST = new boolean[n];
+            int[] pred = new int[n];
+            Arrays.fill(pred, -1);
+
+            int next = 0;
+            int start = root;
+            while (start >= 0) {
+                pq.insertOrDecrease(start, 0, -1);
+                while (!pq.isEmpty()) {
+                    int u = pq.extractMin();
+                    inMST[u] = true;
+
+                    // for each adjacency; the CSR range straight off the arrays,
+                    // then any inserted edges
+                    for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                        int w = targets[i];
+                        if (w < 0 || inMST[w]) continue;  // deleted, or done
+                        long pair = EdgeMap.key(u, w);
+                        float weight = graph.weight(i);
+                        if (pq.improves(w, weight, pair)) {
+                            pq.insertOrDecrease(w, weight, pair);
+                            pred[w] = u;
+                        }
                     }
-                    // now insert child after 'cursor'
-                    child.nextSibling = cursor.nextSibling;
-                    if (cursor.nextSibling != null) {
-                        cursor.nextSibling.prevSibling = child;
+                    for (int h = graph.extraFirst(u); h >= 0; h = graph.next(u, h)) {
+                        int w = graph.target(h);
+                        if (inMST[w]) continue;
+                        long pair = EdgeMap.key(u, w);
+                        if (pq.improves(w, graph.weight(h), pair)) {
+                            pq.insertOrDecrease(w, graph.weight(h), pair);
+                            pred[w] = u;
+                        }
                     }
-                    cursor.nextSibling = child;
-                    child.prevSibling = cursor;
                 }
+                while (next < n && inMST[next]) next++;
+                start = next < n ? next : -1;
             }
+            return pred;
         }
 
         //--------------------------
         // 2) print-mst <rootVertex>
         //--------------------------
         public void printMST(String rootId) {
-            Vertex v = graph.getVertex(rootId);
-            if (v == null) return; // assume input valid
+            int v = graph.getVertex(rootId);
+            if (v < 0) return; // assume input valid
             // "Directive-----------------> print-mst rootId"
             System.out.println("Directive-----------------> print-mst " + rootId);
 
-            // We need to "evert" so that v's node is root
-            Node newRoot = evert(v.mstNode);
+            // build the multiway tree with v as root; names holds the ids of
+            // its vertices
+            String[] names = new String[graph.vertexCount()];
+            materialize(v, names);
 
-            // Then do a preorder traversal from newRoot
-            preorderPrint(newRoot, 0);
+            // Then do a preorder traversal from v
+            preorderPrint(v, names);
         }
 
-        // Preorder traversal, each line prints "." * depth, then vertex id
-        private void preorderPrint(Node r, int depth) {
-            if (r == null) return;
-            // print the current node
-            StringBuilder sb = new StringBuilder();
-            for (int i=0; i<depth; i++) {
-                sb.append(". ");
+        // Builds the multiway tree of v's MST component rooted at v, siblings
+        // sorted by vertex id. Vertices outside the component are left as they are.
+        private void materialize(int v, String[] names) {
+            int n = graph.vertexCount();
+            if (treeParent == null) {
+                treeParent = new int[n];
+                firstChild = new int[n];
+                nextSibling = new int[n];
+                prevSibling = new int[n];
+            }
+            int[] stack = new int[n];
+            int top = 0;
+            ArrayList<Integer> children = new ArrayList<>();
+            names[v] = graph.id(v);
+            treeParent[v] = NIL;
+            prevSibling[v] = NIL;
+            nextSibling[v] = NIL;
+            stack[top++] = v;
+            while (top > 0) {
+                int x = stack[--top];
+                children.clear();
+                for (int h = graph.first(x); h >= 0; h = graph.next(x, h)) {
+                    if (!graph.inTree(h)) continue; // not an MST edge
+                    int w = graph.target(h);
+                    if (w != treeParent[x]) {
+                        children.add(w);
+                        names[w] = graph.id(w);
+                    }
+                }
+                children.sort((a, b) -> names[a].compareTo(names[b]));
+
+                firstChild[x] = NIL;
+                int prev = NIL;
+                for (int w : children) {
+                    treeParent[w] = x;
+                    prevSibling[w] = prev;
+                    nextSibling[w] = NIL;
+                    if (prev == NIL) {
+                        firstChild[x] = w;
+                    } else {
+                        nextSibling[prev] = w;
+                    }
+                    prev = w;
+                    stack[top++] = w;
+                }
             }
-            System.out.println(sb.toString() + r.vertex.id);
+        }
 
-            // traverse children in order
-            Node child = r.firstChild;
-            while (child != null) {
-                preorderPrint(child, depth+1);
-                child = child.nextSibling;
+        // Preorder traversal, each line prints ". " * depth, then vertex id.
+        // It follows the parent and sibling links instead of recursing, so a
+        // path-like tree needs no stack; the prefix is cut from indent, which
+        // grows to the deepest level printed so far.
+        private void preorderPrint(int r, String[] names) {
+            PrintStream out = System.out;
+            int depth = 0;
+            int x = r;
+            while (x != NIL) {
+                if (2 * depth > indent.length) {
+                    indent = new byte[Math.max(2 * depth, 2 * indent.length)];
+                    for (int i = 0; i < indent.length; i += 2) {
+                        indent[i] = '.';
+                        indent[i + 1] = ' ';
+                    }
+                }
+                out.write(indent, 0, 2 * depth);
+                out.println(names[x]);
+
+                // next in preorder: the first child, or else the next sibling of
+                // the nearest node on the way back up that has one
+                if (firstChild[x] != NIL) {
+                    x = firstChild[x];
+                    depth++;
+                    continue;
+                }
+                while (x != r && nextSibling[x] == NIL) {
+                    x = treeParent[x];
+                    depth--;
+                }
+                x = (x == r) ? NIL : nextSibling[x];
             }
         }
 
@@ -371,40 +2432,54 @@ public class MSTProgram {
         //----------------
         public void path(String idu, String idv) {
             System.out.println("Directive-----------------> path " + idu + " " + idv);
-            Vertex u = graph.getVertex(idu);
-            Vertex v = graph.getVertex(idv);
-            if (u == null || v == null) {
+            int u = graph.getVertex(idu);
+            int v = graph.getVertex(idv);
+            if (u < 0 || v < 0 || !links.connected(u, v)) {
                 // assume valid input
                 System.out.println(idu + "," + idv);
                 return;
             }
 
-            // MST path is unique. We'll find path by temporarily making one of them root
-            // then from v up to root, or vice versa. Alternatively, we can do a LCA approach,
-            // but simpler: evert(u), then path from u to v is just the parent chain of v.
-
-            Node nu = u.mstNode;
-            Node nv = v.mstNode;
-
-            // evert(u) so that u is root
-            evert(nu);
-            // now, the path from u to v is just the chain from v up to u
-            LinkedList<String> pathList = new LinkedList<>();
-            Node curr = nv;
-            while (curr != null) {
-                pathList.addFirst(curr.vertex.id);
-                if (curr.vertex == u) break;
-                curr = curr.parent;
-            }
+            // MST path is unique; the link-cut tree hands it over from u to v
             // print with commas
-            // if the path doesn't actually lead to u (disconnected?), we ignore - but MST is connected.
             StringJoiner sj = new StringJoiner(", ");
-            for (String s : pathList) {
-                sj.add(s);
+            for (int x : links.path(u, v)) {
+                sj.add(graph.id(x));
             }
             System.out.println(sj.toString());
         }
 
+        // A run of path directives with no MST change in between; ids holds the
+        // pairs one after the other. A long enough run is answered on a
+        // HeavyPaths layout of the MST, built once for the run, without
+        // re-rooting anything. Short runs go to the link-cut tree one by one,
+        // since the layout reads every adjacency list.
+        public void paths(ArrayList<String> ids) {
+            int queries = ids.size() / 2;
+            if ((long) queries * PATH_BATCH_RATIO < (long) graph.vertexCount() + graph.edgeCount()) {
+                for (int i = 0; i < ids.size(); i += 2) {
+                    path(ids.get(i), ids.get(i + 1));
+                }
+                return;
+            }
+
+            HeavyPaths forest = new HeavyPaths(graph);
+            for (int i = 0; i < ids.size(); i += 2) {
+                String idu = ids.get(i);
+                String idv = ids.get(i + 1);
+                System.out.println("Directive-----------------> path " + idu + " " + idv);
+                int u = graph.getVertex(idu);
+                int v = graph.getVertex(idv);
+                if (u < 0 || v < 0 || !forest.connected(u, v)) {
+                    System.out.println(idu + "," + idv);
+                    continue;
+                }
+                StringJoiner sj = new StringJoiner(", ");
+                forest.path(u, v, sj);
+                System.out.println(sj.toString());
+            }
+        }
+
         //----------------------------
         // 4) insert-edge u v w
         //----------------------------
@@ -412,64 +2487,24 @@ public class MSTProgram {
             System.out.println("Directive-----------------> insert-edge " + idu + " " + idv + " " + w);
 
             // 1) Check if edge already exists
-            Edge e = graph.getEdge(idu, idv);
-            if (e != null) {
+            int e = graph.getEdge(idu, idv);
+            if (e >= 0) {
                 // edge already exists
                 System.out.println("Invalid Operation");
                 return;
             }
             // 2) Insert into graph adjacency
-            boolean ok = graph.addEdge(idu, idv, w);
-            if (!ok) {
+            e = graph.addEdge(idu, idv, w);
+            if (e < 0) {
                 // means invalid, maybe vertex not found or such
                 // but according to problem, we check that vertices exist, so we do:
                 System.out.println("Invalid Operation");
                 return;
             }
+            graph.setRank(e, highRank++);
 
-            // 3) Potentially update MST:
-            // The new edge might create a cheaper connection in MST. The rule:
-            // - find path between u and v in current MST
-            // - if on that path the maximum weight edge is bigger than w, we replace it
-
-            Vertex vu = graph.getVertex(idu);
-            Vertex vv = graph.getVertex(idv);
-
-            // evert(u), find path from u to v, track max weight edge
-            evert(vu.mstNode);
-            // walk from v up to u, collecting edges
-            Node cur = vv.mstNode;
-
-            Edge maxEdgeOnPath = null;
-            float maxWeight = -1;
-            Node parentNode = cur.parent;
-            while (parentNode != null) {
-                Vertex pVert = parentNode.vertex;
-                // find the edge in the graph that connects cur.vertex and pVert
-                Edge pathEdge = graph.getEdge(cur.vertex.id, pVert.id);
-                if (pathEdge.weight > maxWeight) {
-                    maxWeight = pathEdge.weight;
-                    maxEdgeOnPath = pathEdge;
-                }
-                if (pVert == vu) break;
-                cur = parentNode;
-                parentNode = cur.parent;
-            }
-
-            if (maxEdgeOnPath != null && w < maxWeight) {
-                // remove maxEdgeOnPath from MST, add new edge
-                Vertex x = maxEdgeOnPath.u;
-                Vertex y = maxEdgeOnPath.v;
-                // remove the child->parent link from MST multiway structure
-                removeEdgeFromMST(x, y);
-                // now link (u,v) in MST
-                // we know the MST link is that v's pred = u (or vice versa)
-                // let's set vv.pred = vu (or the other way around) -
-                // but we must see which side is parent, up to you
-                // for consistency, let's do: v's parent = u
-                // but we have to fix the Node structure properly (u as parent)
-                linkAsChild(vu.mstNode, vv.mstNode);
-            }
+            // 3) Potentially update MST
+            offerEdge(e);
         }
 
         //-------------------------------
@@ -479,167 +2514,143 @@ public class MSTProgram {
             System.out.println("Directive-----------------> decrease-weight " + idu + " " + idv + " " + dw);
 
             // check edge existence
-            Edge e = graph.getEdge(idu, idv);
-            if (e == null) {
+            int e = graph.getEdge(idu, idv);
+            if (e < 0) {
                 // invalid
                 System.out.println("Invalid Operation");
                 return;
             }
             // new weight = e.weight - dw
-            float newWeight = e.weight - dw;
+            float newWeight = graph.weight(e) - dw;
             if (newWeight < 0) {
                 // problem statement: we assume all edges are positive weights, but
                 // not specified what if it becomes negative. We'll accept it or you might clamp it.
                 // We'll just accept it here:
                 newWeight = 0;
             }
-            e.weight = newWeight;
-
-            // same MST update logic: new edge weight might become beneficial
-            Vertex vu = e.u;
-            Vertex vv = e.v;
-
-            // evert(u), find max edge on path u->v
-            evert(vu.mstNode);
-            float maxWeight = -1;
-            Edge maxEdgeOnPath = null;
-            Node cur = vv.mstNode;
-            Node parentNode = cur.parent;
-            while (parentNode != null) {
-                Vertex pVert = parentNode.vertex;
-                Edge pathEdge = graph.getEdge(cur.vertex.id, pVert.id);
-                if (pathEdge.weight > maxWeight) {
-                    maxWeight = pathEdge.weight;
-                    maxEdgeOnPath = pathEdge;
-                }
-                if (pVert == vu) break;
-                cur = parentNode;
-                parentNode = cur.parent;
-            }
-
-            if (maxEdgeOnPath != null && e.weight < maxWeight) {
-                // remove the heavier edge from MST, add this one if not already in MST
-                removeEdgeFromMST(maxEdgeOnPath.u, maxEdgeOnPath.v);
-                // link (u,v) into MST
-                linkAsChild(vu.mstNode, vv.mstNode);
-            }
-        }
-
-        // -------------------------------------
-        // "Evert" operation to make 'node' root
-        // -------------------------------------
-        // Implementation approach:
-        // We'll do a standard multiway-tree evert:
-        //   - Climb up from node, reversing parent->child relations.
-        //   - The node ends up as root.
-        // For simplicity, we'll do a standard top-down approach.
-        // The end result is node is root, parent pointers reversed, siblings reversed, etc.
-
-        private Node evert(Node node) {
-            if (node == null) return null;
-
-            Node cur = node;
-            Node prev = null;
-            Node next = null;
-
-            // We'll climb up the parent chain, reversing it
-            while (cur != null) {
-                next = cur.parent;
-                cur.parent = prev;  // reverse parent
-                // also handle sibling links carefully:
-
-                // if we are reversing direction: the parent's relationship to cur
-                // must be cut as a child, because we'll re-link in the next iteration
-                // In a classic evert for a "tree with parent pointers", we wouldn't have to
-                // handle siblings so intricately. But let's do it carefully:
-
-                // We will treat each step as: cut(cur) from its parent, then link it as we go
-                // A simpler approach is "Link-Cut" style. But let's do something simpler.
-
-                // We'll set cur as root of partial. The sibling structure among
-                // cur's children remains the same. We'll break from the parent's child list if needed.
-
-                // detach cur from possible parent's child list
-                if (next != null) {
-                    // next is old parent. We remove 'cur' from next's children
-                    if (next.firstChild == cur) {
-                        next.firstChild = null; // might lose siblings, but let's do a thorough approach
-                    } else {
-                        // if it wasn't the firstChild, we find cur in siblings
-                        Node s = next.firstChild;
-                        while (s != null) {
-                            if (s == cur) {
-                                // remove from sibling chain
-                                if (s.prevSibling != null) {
-                                    s.prevSibling.nextSibling = s.nextSibling;
-                                }
-                                if (s.nextSibling != null) {
-                                    s.nextSibling.prevSibling = s.prevSibling;
-                                }
-                                break;
-                            }
-                            s = s.nextSibling;
-                        }
-                    }
-                }
+            lighten(e, newWeight);
+        }
 
-                // now we also remove sibling pointers from cur to avoid confusion
-                cur.prevSibling = null;
-                cur.nextSibling = null;
+        //-------------------------------
+        // 6) delete-edge u v
+        //-------------------------------
+        public void deleteEdge(String idu, String idv) {
+            System.out.println("Directive-----------------> delete-edge " + idu + " " + idv);
 
-                prev = cur;
-                cur = next;
+            int e = graph.getEdge(idu, idv);
+            if (e < 0) {
+                // invalid
+                System.out.println("Invalid Operation");
+                return;
             }
-            // now node is root of the reversed structure
-            return node;
-        }
-
-        // Remove edge (x,y) from the MST multiway tree
-        // That means we find which node is child of which, then "cut" that child from parent's child list
-        private void removeEdgeFromMST(Vertex x, Vertex y) {
-            // one must be the ancestor of the other in the MST.
-            // We can see from their node structure who is parent.
-            Node nx = x.mstNode;
-            Node ny = y.mstNode;
-            // We'll evert(x) so that x is root, so we can see if y is child
-            evert(nx);
-            // if y is direct or indirect child, then y.parent is x
-            // so the MST edge is (x,y). Let's see if indeed y.parent == x
-            if (ny.parent == nx) {
-                // cut ny from nx
-                cutChild(nx, ny);
-            } else if (nx.parent == ny) {
-                // cut nx from ny
-                cutChild(ny, nx);
+            if (!graph.inTree(e)) {
+                if (levels != null) levels.delete(e);
+                graph.removeEdge(e);
+                return;
             }
+            // the lightest edge between the two sides takes its place
+            LevelForests forests = levels();
+            links.cut(graph.from(e), graph.to(e));
+            int r = forests.replace(e, false);
+            graph.removeEdge(e);
+            if (r != NIL) link(r);
         }
 
-        private void cutChild(Node parent, Node child) {
-            // remove 'child' from parent's children
-            if (parent.firstChild == child) {
-                parent.firstChild = child.nextSibling;
-                if (child.nextSibling != null) {
-                    child.nextSibling.prevSibling = null;
+        //-------------------------------
+        // 7) increase-weight u v w
+        //-------------------------------
+        public void increaseWeight(String idu, String idv, float dw) {
+            System.out.println("Directive-----------------> increase-weight " + idu + " " + idv + " " + dw);
+
+            int e = graph.getEdge(idu, idv);
+            if (e < 0) {
+                // invalid
+                System.out.println("Invalid Operation");
+                return;
+            }
+            float newWeight = graph.weight(e) + dw;
+            if (dw < 0) {
+                // a negative amount makes e lighter, so it goes the way of decrease-weight
+                lighten(e, newWeight);
+            } else if (graph.inTree(e)) {
+                // some other edge between the two sides might be lighter now; e
+                // itself is still one of the candidates, and wins ties
+                LevelForests forests = levels();
+                links.cut(graph.from(e), graph.to(e));
+                graph.setWeight(e, newWeight);
+                int r = forests.replace(e, true);
+                if (r == e) {
+                    graph.setRank(e, lowRank--);
+                    links.link(graph.from(e), graph.to(e), newWeight, graph.rank(e));
+                } else {
+                    graph.setInTree(e, false);
+                    graph.setRank(e, highRank++);
+                    forests.add(e);
+                    link(r);
                 }
             } else {
-                // search siblings
-                Node s = parent.firstChild;
-                while (s != null) {
-                    if (s == child) {
-                        if (s.prevSibling != null) {
-                            s.prevSibling.nextSibling = s.nextSibling;
-                        }
-                        if (s.nextSibling != null) {
-                            s.nextSibling.prevSibling = s.prevSibling;
-                        }
-                        break;
-                    }
-                    s = s.nextSibling;
-                }
+                // a heavier edge outside the MST stays out
+                if (levels != null) levels.remove(e);
+                graph.setWeight(e, newWeight);
+                graph.setRank(e, highRank++);
+                if (levels != null) levels.add(e);
+            }
+        }
+
+        // e's weight goes down to w
+        private void lighten(int e, float w) {
+            if (graph.inTree(e)) {
+                // already in the MST, which stays minimal; only the path maxima change
+                graph.setWeight(e, w);
+                graph.setRank(e, lowRank--);
+                links.reweigh(graph.from(e), graph.to(e), w, graph.rank(e));
+                return;
+            }
+            // same MST update logic as insert-edge: e might be beneficial now
+            if (levels != null) levels.remove(e);
+            graph.setWeight(e, w);
+            graph.setRank(e, highRank++);
+            offerEdge(e);
+        }
+
+        private LevelForests levels() {
+            if (levels == null) levels = new LevelForests(graph);
+            return levels;
+        }
+
+        private void link(int e) {
+            links.link(graph.from(e), graph.to(e), graph.weight(e), graph.rank(e));
+            graph.setInTree(e, true);
+        }
+
+        // The new edge might create a cheaper connection in MST. The rule:
+        // - find path between u and v in current MST
+        // - if the heaviest edge on that path (by weight, then rank) comes after
+        //   the new one, we replace it
+        // If u and v are in different MST components, the edge joins them.
+        // e must not be in levels yet.
+        private void offerEdge(int e) {
+            int u = graph.from(e);
+            int v = graph.to(e);
+            if (!links.connected(u, v)) {
+                link(e);
+                if (levels != null) levels.link(e);
+                return;
+            }
+            long heaviest = links.heaviestOnPath(u, v);
+            if (heaviest < 0) return; // a self-loop
+            int maxEdgeOnPath = graph.edge((int) (heaviest >>> 32), (int) heaviest);
+            float w = graph.weight(e);
+            float maxWeight = graph.weight(maxEdgeOnPath);
+            if (w < maxWeight || (w == maxWeight && graph.rank(e) < graph.rank(maxEdgeOnPath))) {
+                // remove the heavier edge from MST, add this one
+                links.cut(graph.from(maxEdgeOnPath), graph.to(maxEdgeOnPath));
+                graph.setInTree(maxEdgeOnPath, false);
+                link(e);
+                if (levels != null) levels.swap(maxEdgeOnPath, e);
+            } else if (levels != null) {
+                levels.add(e);
             }
-            child.parent = null;
-            child.prevSibling = null;
-            child.nextSibling = null;
         }
     }
 
@@ -647,79 +2658,134 @@ public class MSTProgram {
     // Main Program Flow
     // ------------------
     public static void main(String[] args) {
-        if (args.length < 1) {
-            System.err.println("Usage: java MSTProgram <inputfile>");
+        boolean parallel = false;
+        String filename = null;
+        for (String arg : args) {
+            if (arg.equals("--parallel")) {
+                parallel = true;   // build the initial MST with ParallelBoruvka
+            } else {
+                filename = arg;
+            }
+        }
+        if (filename == null) {
+            System.err.println("Usage: java MSTProgram [--parallel] <inputfile>");
             return;
         }
 
-        String filename = args[0];
+        // Output is buffered in full rather than flushed per line, and flushed
+        // once at the end.
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+        System.setOut(out);
 
-        try {
-            Scanner sc = new Scanner(new File(filename));
+        try (ByteTokenizer in = new ByteTokenizer(new FileInputStream(filename))) {
             Graph graph = new Graph();
 
             // 1) Read number of vertices
-            int n = Integer.parseInt(sc.nextLine().trim());
+            in.nextLine();
+            in.requireToken();
+            int n = in.tokenInt();
 
             // 2) Read vertex identifiers
-            ArrayList<String> vertexIds = new ArrayList<>();
+            String firstVertexId = null;
             for (int i=0; i<n; i++) {
-                String id = sc.nextLine().trim();
+                in.nextLine();
+                String id = in.trimmedLine();
                 graph.addVertex(id);
-                vertexIds.add(id);
+                if (i == 0) firstVertexId = id;
             }
 
             // 3) Read number of edges
-            int e = Integer.parseInt(sc.nextLine().trim());
-            // 4) Read edges
+            in.nextLine();
+            in.requireToken();
+            int e = in.tokenInt();
+            // 4) Read edges; ids are looked up straight from the input buffer
             for (int i=0; i<e; i++) {
-                String line = sc.nextLine().trim();
-                String[] parts = line.split("\\s+");
+                in.nextLine();
                 // format: vertex1 vertex2 weight
-                String v1 = parts[0];
-                String v2 = parts[1];
-                float w = Float.parseFloat(parts[2]);
-                graph.addEdge(v1, v2, w);
+                in.requireToken();
+                int v1 = graph.ids.get(in.buf, in.start, in.end - in.start);
+                in.requireToken();
+                int v2 = graph.ids.get(in.buf, in.start, in.end - in.start);
+                in.requireToken();
+                float w = in.tokenFloat();
+                if (v1 >= 0 && v2 >= 0) graph.loadEdge(v1, v2, w);
             }
+            graph.finishLoading();
 
             // 5) Build MST using Prim, root is the first vertex read
             MSTManager mst = new MSTManager(graph);
-            String firstVertexId = vertexIds.get(0);
-            mst.buildInitialMST(firstVertexId);
+            mst.buildInitialMST(firstVertexId, parallel);
+
+            // 6) Process directives; consecutive path directives are collected
+            // and answered together once any other directive (or the end) comes
+            ArrayList<String> pathBatch = new ArrayList<>();
+            while (in.readLine()) {
+                if (!in.nextToken()) continue;  // skip empty
 
-            // 6) Process directives
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine().trim();
-                if (line.equals("")) continue;  // skip empty
+                if (!pathBatch.isEmpty() && !in.tokenIs("path")) {
+                    mst.paths(pathBatch);
+                    pathBatch.clear();
+                }
 
                 // parse directive
-                String[] tokens = line.split("\\s+");
-                if (tokens[0].equals("print-mst")) {
+                if (in.tokenIs("print-mst")) {
                     // format: print-mst u
-                    String rootId = tokens[1];
+                    in.requireToken();
+                    String rootId = in.token();
                     mst.printMST(rootId);
                 }
-                else if (tokens[0].equals("path")) {
+                else if (in.tokenIs("path")) {
                     // format: path u v
-                    String u = tokens[1];
-                    String v = tokens[2];
-                    mst.path(u, v);
+                    String u = in.nextToken() ? in.token() : null;
+                    String v = u != null && in.nextToken() ? in.token() : null;
+                    if (v == null) {
+                        // a malformed line stops the run only after the paths before it are printed
+                        mst.paths(pathBatch);
+                        pathBatch.clear();
+                        throw new NoSuchElementException("Missing token");
+                    }
+                    pathBatch.add(u);
+                    pathBatch.add(v);
                 }
-                else if (tokens[0].equals("insert-edge")) {
+                else if (in.tokenIs("insert-edge")) {
                     // format: insert-edge u v w
-                    String u = tokens[1];
-                    String v = tokens[2];
-                    float w = Float.parseFloat(tokens[3]);
+                    in.requireToken();
+                    String u = in.token();
+                    in.requireToken();
+                    String v = in.token();
+                    in.requireToken();
+                    float w = in.tokenFloat();
                     mst.insertEdge(u, v, w);
                 }
-                else if (tokens[0].equals("decrease-weight")) {
+                else if (in.tokenIs("decrease-weight")) {
                     // format: decrease-weight u v w
-                    String u = tokens[1];
-                    String v = tokens[2];
-                    float dw = Float.parseFloat(tokens[3]);
+                    in.requireToken();
+                    String u = in.token();
+                    in.requireToken();
+                    String v = in.token();
+                    in.requireToken();
+                    float dw = in.tokenFloat();
                     mst.decreaseWeight(u, v, dw);
                 }
-                else if (tokens[0].equals("quit")) {
+                else if (in.tokenIs("delete-edge")) {
+                    // format: delete-edge u v
+                    in.requireToken();
+                    String u = in.token();
+                    in.requireToken();
+                    String v = in.token();
+                    mst.deleteEdge(u, v);
+                }
+                else if (in.tokenIs("increase-weight")) {
+                    // format: increase-weight u v w
+                    in.requireToken();
+                    String u = in.token();
+                    in.requireToken();
+                    String v = in.token();
+                    in.requireToken();
+                    float dw = in.tokenFloat();
+                    mst.increaseWeight(u, v, dw);
+                }
+                else if (in.tokenIs("quit")) {
                     System.out.println("Directive-----------------> quit");
                     break;
                 }
@@ -728,10 +2794,13 @@ public class MSTProgram {
                     // not specified by problem, we can ignore or do something
                 }
             }
-
-            sc.close();
+            if (!pathBatch.isEmpty()) {
+                mst.paths(pathBatch);
+            }
         } catch (Exception ex) {
             ex.printStackTrace();
+        } finally {
+            out.flush();
         }
     }
 }
@@ -0,0 +1,77 @@
+import bench.MSTCore;
+import bench.MSTData;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// Default-package side of bench.MSTCore; see the interface for why.
+public class MSTCoreBridge implements MSTCore {
+
+    private PrintStream savedOut;
+
+    @Override
+    public Object newGraph(MSTData.Graph data) {
+        MSTProgram.Graph graph = new MSTProgram.Graph();
+        for (String id : data.ids)
+            graph.addVertex(id);
+        for (int i = 0; i < data.edges(); i++)
+            graph.loadEdge(data.from[i], data.to[i], data.weight[i]);
+        graph.finishLoading();
+        return graph;
+    }
+
+    @Override
+    public Object newManager(Object graph) {
+        return new MSTProgram.MSTManager((MSTProgram.Graph) graph);
+    }
+
+    @Override
+    public void buildInitialMST(Object manager, String rootId, boolean parallel) {
+        ((MSTProgram.MSTManager) manager).buildInitialMST(rootId, parallel);
+    }
+
+    @Override
+    public void evert(Object manager, String id) {
+        MSTProgram.MSTManager mst = (MSTProgram.MSTManager) manager;
+        mst.links.evert(mst.graph.getVertex(id));
+    }
+
+    @Override
+    public void insertEdge(Object manager, String u, String v, float w) {
+        ((MSTProgram.MSTManager) manager).insertEdge(u, v, w);
+    }
+
+    @Override
+    public void deleteEdge(Object manager, String u, String v) {
+        ((MSTProgram.MSTManager) manager).deleteEdge(u, v);
+    }
+
+    @Override
+    public void decreaseWeight(Object manager, String u, String v, float dw) {
+        ((MSTProgram.MSTManager) manager).decreaseWeight(u, v, dw);
+    }
+
+    @Override
+    public void increaseWeight(Object manager, String u, String v, float dw) {
+        ((MSTProgram.MSTManager) manager).increaseWeight(u, v, dw);
+    }
+
+    @Override
+    public void path(Object manager, String u, String v) {
+        ((MSTProgram.MSTManager) manager).path(u, v);
+    }
+
+    @Override
+    public void discardOutput() {
+        if (savedOut == null)
+            savedOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Override
+    public void restoreOutput() {
+        if (savedOut != null)
+            System.setOut(savedOut);
+        savedOut = null;
+    }
+}
@@ -0,0 +1,247 @@
+import bench.NotificationCore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+// Default-package side of bench.NotificationCore; see the interface for why.
+public class NotificationCoreBridge implements NotificationCore {
+
+    private static final Comparator<EarthquakeEvent> BY_MAGNITUDE = new Comparator<EarthquakeEvent>() {
+        @Override
+        public int compare(EarthquakeEvent o1, EarthquakeEvent o2) {
+            return Double.compare(o1.magnitude, o2.magnitude);
+        }
+    };
+
+    @Override
+    public Object newWatcherTree() {
+        return new KDTree2D();
+    }
+
+    @Override
+    public Object newOffHeapWatcherTree() {
+        return new OffHeapKDTree2D();
+    }
+
+    @Override
+    public Object newWatcher(double x, double y, String name) {
+        return new Point2D(x, y, name);
+    }
+
+    @Override
+    public void insertWatcher(Object tree, Object watcher) {
+        ((WatcherTree) tree).insert((Point2D) watcher);
+    }
+
+    @Override
+    public void removeWatcher(Object tree, Object watcher) {
+        ((WatcherTree) tree).remove((Point2D) watcher);
+    }
+
+    @Override
+    public boolean removeWatcherByName(Object tree, String name) {
+        return ((WatcherTree) tree).removeByName(name);
+    }
+
+    @Override
+    public int rangeQueryCircular(Object tree, double x, double y, double radius) {
+        return ((WatcherTree) tree).rangeQueryCircular(x, y, radius).size();
+    }
+
+    @Override
+    public Object newMagnitudeHeap() {
+        return new MaxHeap<EarthquakeEvent>(BY_MAGNITUDE);
+    }
+
+    @Override
+    public Object newEarthquake(int time, String id, String place, double x, double y, double magnitude) {
+        return new EarthquakeEvent(time, id, place, x, y, 10.0, magnitude);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void heapInsert(Object heap, Object quake) {
+        ((MaxHeap<EarthquakeEvent>) heap).insert((EarthquakeEvent) quake);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void heapRemove(Object heap, Object quake) {
+        ((MaxHeap<EarthquakeEvent>) heap).remove((EarthquakeEvent) quake);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object heapPeek(Object heap) {
+        return ((MaxHeap<EarthquakeEvent>) heap).peek();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int heapTopK(Object heap, int k) {
+        return ((MaxHeap<EarthquakeEvent>) heap).topK(k).size();
+    }
+
+    // The naive alternative to MaxHeap.topK: copy the window and sort it.
+    @Override
+    public double[] sortedMagnitudes(Object[] quakes, int k) {
+        EarthquakeEvent[] copy = new EarthquakeEvent[quakes.length];
+        for (int i = 0; i < quakes.length; i++)
+            copy[i] = (EarthquakeEvent) quakes[i];
+        Arrays.sort(copy, new Comparator<EarthquakeEvent>() {
+            @Override
+            public int compare(EarthquakeEvent o1, EarthquakeEvent o2) {
+                return Double.compare(o2.magnitude, o1.magnitude);
+            }
+        });
+        double[] top = new double[Math.min(k, copy.length)];
+        for (int i = 0; i < top.length; i++)
+            top[i] = copy[i].magnitude;
+        return top;
+    }
+
+    @Override
+    public Object newSimpleMap() {
+        return new SimpleMap<String, Integer>();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object mapGet(Object map, String key) {
+        return ((SimpleMap<String, Integer>) map).get(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object mapPut(Object map, String key, Integer value) {
+        return ((SimpleMap<String, Integer>) map).put(key, value);
+    }
+
+    @Override
+    public Object newEventList(Object[] events) {
+        List<Event> list = new ArrayList<>(Math.max(1, events.length));
+        for (int i = 0; i < events.length; i++)
+            list.add((Event) events[i]);
+        return list;
+    }
+
+    @Override
+    public Object newWatcherEvent(int time, double x, double y, String name) {
+        return new WatcherEvent(time, "add", x, y, name);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sortEventsByTime(Object events) {
+        EarthquakeNotification.sortEventsByTime((List<Event>) events);
+    }
+
+    @Override
+    public int readWatcherFile(String fileName) {
+        return EarthquakeNotification.readWatcherStore(fileName, 0, 0, new StringDictionary()).size();
+    }
+
+    @Override
+    public int readEarthquakeFile(String fileName) {
+        return EarthquakeNotification.readEarthquakeStore(fileName, 0, new StringDictionary()).size();
+    }
+
+    // The two input files of a run, already read into stores, and the watcher
+    // population they run against.
+    private static class Simulation {
+        static final int PLACES = 5000;
+        // quakes per simulated hour, so the window holds about 6 * 64 of them
+        static final int ROUNDS_PER_HOUR = 64;
+
+        final StringDictionary strings = new StringDictionary();
+        final WatcherTree watcherTree = new KDTree2D();
+        final WatcherTierIndex watcherIndex = new WatcherTierIndex();
+        final PrintStream savedOut = System.out;
+        EventStore watcherEvents;
+        EventStore earthquakeEvents;
+    }
+
+    // Each round, a watcher moves (delete + add), a quake arrives, and a
+    // query-topk and a query-largest are answered.
+    @Override
+    public Object newSimulation(int watchers, int rounds, long seed) {
+        Simulation simulation = new Simulation();
+        double[][] watcherPoints = bench.BenchData.points(bench.BenchData.Distribution.CLUSTERED, 2 * watchers, seed);
+        double[][] quakePoints = bench.BenchData.points(bench.BenchData.Distribution.CLUSTERED, rounds, seed + 1);
+        Random random = new Random(seed);
+        String[] places = new String[Simulation.PLACES];
+        for (int i = 0; i < places.length; i++)
+            places[i] = random.nextInt(100) + "km N of place" + random.nextInt(50);
+
+        simulation.watcherEvents = new EventStore(simulation.strings, 4 * rounds);
+        simulation.earthquakeEvents = new EventStore(simulation.strings, rounds);
+        for (int round = 0; round < rounds; round++) {
+            int time = round / Simulation.ROUNDS_PER_HOUR;
+            int slot = round % watchers;
+            int point = (round + watchers) % (2 * watchers);
+            simulation.watcherEvents.add(new WatcherEvent(time, "delete", "w" + slot));
+            WatcherEvent add = new WatcherEvent(time, "add", watcherPoints[0][point], watcherPoints[1][point], "w" + slot);
+            add.watcherId = slot;
+            simulation.watcherEvents.add(add);
+            // one decimal, like the feed: the printer caches the text of repeated magnitudes
+            double magnitude = (10 + random.nextInt(20)) / 10.0;
+            simulation.earthquakeEvents.add(new EarthquakeEvent(time, Integer.toString(round), places[random.nextInt(places.length)],
+                    quakePoints[0][round], quakePoints[1][round], 10.0, magnitude));
+            simulation.watcherEvents.add(new WatcherEvent(time, "query-topk", 5));
+            simulation.watcherEvents.add(new WatcherEvent(time, "query-largest"));
+        }
+
+        System.setOut(new BufferedPrintStream(OutputStream.nullOutputStream(), 1 << 16));
+        for (int i = 0; i < watchers; i++) {
+            simulation.watcherTree.insert(watcherPoints[0][i], watcherPoints[1][i], "w" + i, i);
+            simulation.watcherIndex.add(watcherPoints[0][i], watcherPoints[1][i]);
+        }
+        return simulation;
+    }
+
+    // Runs both stores through simulateEvents. Every round leaves the moved
+    // watcher in the tree, so the population is the same size each run.
+    @Override
+    public void simulate(Object handle) {
+        Simulation simulation = (Simulation) handle;
+        EarthquakeNotification.simulateEvents(new InputProgress(simulation.watcherEvents, 0, 0, 0),
+                new InputProgress(simulation.earthquakeEvents, 0, 0, 0), simulation.watcherTree, simulation.watcherIndex,
+                false, null, null, null, 0, null);
+    }
+
+    @Override
+    public void closeSimulation(Object handle) {
+        System.setOut(((Simulation) handle).savedOut);
+    }
+
+    @Override
+    public Object openWatcherLog(String directory, long syncMillis) throws IOException {
+        WatcherLog log = new WatcherLog(new File(directory), syncMillis);
+        log.recover(new KDTree2D(), new WatcherTierIndex());
+        return log;
+    }
+
+    // The appended events are not read from a file, so every record carries the
+    // position of an empty one.
+    private static final InputProgress NO_INPUT = new InputProgress(new EventStore(new StringDictionary()), 0, 0, 0);
+
+    @Override
+    public void watcherLogAppend(Object log, Object watcherEvent) throws IOException {
+        ((WatcherLog) log).append((WatcherEvent) watcherEvent, NO_INPUT);
+    }
+
+    @Override
+    public void watcherLogSync(Object log) throws IOException {
+        ((WatcherLog) log).sync();
+    }
+
+    @Override
+    public void watcherLogClose(Object log) throws IOException {
+        ((WatcherLog) log).close();
+    }
+}
@@ -0,0 +1,104 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+// Deterministic inputs shared by the benchmarks.
+public final class BenchData {
+
+    public enum Distribution {
+        // lon/lat uniform over the whole map
+        UNIFORM,
+        // Gaussian blobs around a fixed set of city centres
+        CLUSTERED,
+        // uniform, then sorted by longitude (worst case for an unbalanced 2-d tree)
+        SORTED
+    }
+
+    private static final double[][] CITIES = {
+            {-118.24, 34.05}, {-122.42, 37.77}, {139.69, 35.69}, {136.91, 35.18}, {28.98, 41.01},
+            {32.86, 39.93}, {-0.13, 51.51}, {2.35, 48.86}, {13.40, 52.52}, {21.01, 52.23},
+            {151.21, -33.87}, {174.76, -36.85}, {-46.63, -23.55}, {-70.67, -33.45}, {-99.13, 19.43},
+            {77.21, 28.61}, {72.88, 19.08}, {106.85, -6.21}, {121.47, 31.23}, {-21.94, 64.15}
+    };
+
+    private BenchData() {
+    }
+
+    // Returns {xs, ys} with n points each.
+    public static double[][] points(Distribution distribution, int n, long seed) {
+        Random random = new Random(seed);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            if (distribution == Distribution.CLUSTERED) {
+                double[] city = CITIES[random.nextInt(CITIES.length)];
+                xs[i] = city[0] + random.nextGaussian() * 2.0;
+                ys[i] = city[1] + random.nextGaussian() * 2.0;
+            } else {
+                xs[i] = random.nextDouble() * 360.0 - 180.0;
+                ys[i] = random.nextDouble() * 180.0 - 90.0;
+            }
+        }
+        if (distribution == Distribution.SORTED) {
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++)
+                order[i] = i;
+            Arrays.sort(order, (a, b) -> Double.compare(xs[a], xs[b]));
+            double[] sortedX = new double[n];
+            double[] sortedY = new double[n];
+            for (int i = 0; i < n; i++) {
+                sortedX[i] = xs[order[i]];
+                sortedY[i] = ys[order[i]];
+            }
+            return new double[][]{sortedX, sortedY};
+        }
+        return new double[][]{xs, ys};
+    }
+
+    // Gutenberg-Richter style magnitudes (b = 1) above 1.0.
+    public static double[] magnitudes(int n, long seed) {
+        Random random = new Random(seed);
+        double[] magnitudes = new double[n];
+        for (int i = 0; i < n; i++)
+            magnitudes[i] = 1.0 - Math.log10(1.0 - random.nextDouble());
+        return magnitudes;
+    }
+
+    public static Path writeWatcherFile(Path file, Distribution distribution, int n, long seed) throws IOException {
+        double[][] p = points(distribution, n, seed);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < n; i++) {
+                out.write(i + " add " + p[0][i] + " " + p[1][i] + " w" + i);
+                out.newLine();
+            }
+        }
+        return file;
+    }
+
+    public static Path writeEarthquakeFile(Path file, Distribution distribution, int n, long seed) throws IOException {
+        double[][] p = points(distribution, n, seed);
+        double[] magnitudes = magnitudes(n, seed + 1);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("<allearthquakes>");
+            out.newLine();
+            for (int i = 0; i < n; i++) {
+                out.write(" <earthquake>\n");
+                out.write("  <id> " + i + " </id>\n");
+                out.write("  <time> " + i + " </time>\n");
+                out.write("  <place> " + (i % 97) + "km East of Somewhere </place>\n");
+                out.write("  <coordinates> " + p[0][i] + ", " + p[1][i] + ", 10.0 </coordinates>\n");
+                out.write("  <magnitude> " + magnitudes[i] + " </magnitude>\n");
+                out.write(" </earthquake>\n");
+            }
+            out.write("</allearthquakes>");
+            out.newLine();
+        }
+        return file;
+    }
+}
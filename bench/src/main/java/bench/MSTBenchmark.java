@@ -0,0 +1,201 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// MSTProgram's MST operations on generated graphs of `vertices` vertices, with
+// the initial MST built. Directive output is discarded. insertEdge and
+// deleteEdge time the two halves of inserting an edge and deleting it again,
+// decreaseWeight and increaseWeight those of halving an edge's weight and
+// doubling it back; the other half runs in an untimed per-invocation fixture,
+// so the graph stays the same from one call to the next and a score is one
+// directive. deleteEdge and increaseWeight often take an edge out of the MST,
+// so they mostly time the search for its replacement. The largest graphs need
+// most of the 16 GB heap.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class MSTBenchmark {
+
+    private static final int PICKS = 1 << 16;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int vertices;
+
+    @Param({"GEOMETRIC", "GRID", "POWER_LAW"})
+    public MSTData.Family family;
+
+    private MSTCore core;
+    private MSTData.Graph data;
+    private Object manager;
+
+    // random vertex pairs that are not edges, and random edges with half their weight
+    private final String[] pairU = new String[PICKS];
+    private final String[] pairV = new String[PICKS];
+    private final String[] edgeU = new String[PICKS];
+    private final String[] edgeV = new String[PICKS];
+    private final float[] halfWeight = new float[PICKS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        core = MSTCore.load();
+        data = MSTData.graph(family, vertices, 42);
+        manager = core.newManager(core.newGraph(data));
+        core.buildInitialMST(manager, data.ids[0], false);
+
+        Set<Long> edges = new HashSet<>();
+        for (int i = 0; i < data.edges(); i++)
+            edges.add(pairKey(data.from[i], data.to[i]));
+        Random random = new Random(43);
+        for (int i = 0; i < PICKS; i++) {
+            int a;
+            int b;
+            do {
+                a = random.nextInt(vertices);
+                b = random.nextInt(vertices);
+            } while (a == b || edges.contains(pairKey(a, b)));
+            pairU[i] = data.ids[a];
+            pairV[i] = data.ids[b];
+            int e = random.nextInt(data.edges());
+            edgeU[i] = data.ids[data.from[e]];
+            edgeV[i] = data.ids[data.to[e]];
+            halfWeight[i] = data.weight[e] / 2;
+        }
+        core.discardOutput();
+    }
+
+    @TearDown
+    public void tearDown() {
+        core.restoreOutput();
+    }
+
+    private static long pairKey(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    private int pick() {
+        return next++ & (PICKS - 1);
+    }
+
+    // Prim over the whole graph, then loading the link-cut tree
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void buildInitialMST() {
+        core.buildInitialMST(manager, data.ids[0], false);
+    }
+
+    @Benchmark
+    public void evert() {
+        core.evert(manager, pairU[pick()]);
+    }
+
+    @Benchmark
+    public void path() {
+        int i = pick();
+        core.path(manager, pairU[i], pairV[i]);
+    }
+
+    // insertEdge's pair, deleted again after the call
+    @State(Scope.Thread)
+    public static class Insertion {
+        int i;
+
+        @Setup(Level.Invocation)
+        public void pick(MSTBenchmark benchmark) {
+            i = benchmark.pick();
+        }
+
+        @TearDown(Level.Invocation)
+        public void undo(MSTBenchmark benchmark) {
+            benchmark.core.deleteEdge(benchmark.manager, benchmark.pairU[i], benchmark.pairV[i]);
+        }
+    }
+
+    // deleteEdge's pair, inserted before the call
+    @State(Scope.Thread)
+    public static class Deletion {
+        int i;
+
+        @Setup(Level.Invocation)
+        public void insert(MSTBenchmark benchmark) {
+            i = benchmark.pick();
+            benchmark.core.insertEdge(benchmark.manager, benchmark.pairU[i], benchmark.pairV[i], benchmark.halfWeight[i]);
+        }
+    }
+
+    // decreaseWeight's edge, its weight doubled back after the call. Halving a
+    // weight and doubling it back are both exact, so weights do not drift.
+    @State(Scope.Thread)
+    public static class Decrease {
+        int i;
+
+        @Setup(Level.Invocation)
+        public void pick(MSTBenchmark benchmark) {
+            i = benchmark.pick();
+        }
+
+        @TearDown(Level.Invocation)
+        public void undo(MSTBenchmark benchmark) {
+            benchmark.core.increaseWeight(benchmark.manager, benchmark.edgeU[i], benchmark.edgeV[i], benchmark.halfWeight[i]);
+        }
+    }
+
+    // increaseWeight's edge, its weight halved before the call
+    @State(Scope.Thread)
+    public static class Increase {
+        int i;
+
+        @Setup(Level.Invocation)
+        public void decrease(MSTBenchmark benchmark) {
+            i = benchmark.pick();
+            benchmark.core.decreaseWeight(benchmark.manager, benchmark.edgeU[i], benchmark.edgeV[i], benchmark.halfWeight[i]);
+        }
+    }
+
+    @Benchmark
+    public void insertEdge(Insertion insertion) {
+        int i = insertion.i;
+        core.insertEdge(manager, pairU[i], pairV[i], halfWeight[i]);
+    }
+
+    @Benchmark
+    public void deleteEdge(Deletion deletion) {
+        int i = deletion.i;
+        core.deleteEdge(manager, pairU[i], pairV[i]);
+    }
+
+    @Benchmark
+    public void decreaseWeight(Decrease decrease) {
+        int i = decrease.i;
+        core.decreaseWeight(manager, edgeU[i], edgeV[i], halfWeight[i]);
+    }
+
+    @Benchmark
+    public void increaseWeight(Increase increase) {
+        int i = increase.i;
+        core.increaseWeight(manager, edgeU[i], edgeV[i], halfWeight[i]);
+    }
+}
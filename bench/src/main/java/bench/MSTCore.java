@@ -0,0 +1,38 @@
+package bench;
+
+// MSTProgram counterpart of NotificationCore: MSTProgram lives in the default
+// package too, so the benchmarks reach it through this interface, implemented
+// by MSTCoreBridge (default package). Handles are passed around as Object.
+public interface MSTCore {
+
+    static MSTCore load() {
+        try {
+            return (MSTCore) Class.forName("MSTCoreBridge").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("MSTCoreBridge is not on the classpath", e);
+        }
+    }
+
+    // MSTProgram.Graph over graph's vertices and edges, loaded the way main does
+    Object newGraph(MSTData.Graph graph);
+
+    // MSTProgram.MSTManager over a graph from newGraph; no MST is built yet
+    Object newManager(Object graph);
+
+    void buildInitialMST(Object manager, String rootId, boolean parallel);
+
+    // Re-roots the link-cut tree at the vertex
+    void evert(Object manager, String id);
+
+    // The directives. They print as they do in MSTProgram, so output should be
+    // discarded while they run
+    void insertEdge(Object manager, String u, String v, float w);
+    void deleteEdge(Object manager, String u, String v);
+    void decreaseWeight(Object manager, String u, String v, float dw);
+    void increaseWeight(Object manager, String u, String v, float dw);
+    void path(Object manager, String u, String v);
+
+    // Sends System.out to a discarding stream until restoreOutput
+    void discardOutput();
+    void restoreOutput();
+}
@@ -0,0 +1,237 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Deterministic MSTProgram inputs: graphs of a few shapes and directive scripts
+// over them. main writes a whole input file, for timing MSTProgram at scale:
+//
+//   java -cp target/benchmarks.jar bench.MSTData <family> <vertices> <directives> <seed>
+public final class MSTData {
+
+    public enum Family {
+        // points uniform in a square, joined when closer than a radius that gives
+        // about 6 neighbours each; the weight is the distance
+        GEOMETRIC,
+        // square grid with edges to the right and down, random weights
+        GRID,
+        // preferential attachment, 3 edges from each new vertex, random weights
+        POWER_LAW
+    }
+
+    // Vertex i is ids[i]; edge i joins from[i] and to[i]
+    public static final class Graph {
+        public final String[] ids;
+        public int[] from = new int[16];
+        public int[] to = new int[16];
+        public float[] weight = new float[16];
+        private int edges;
+
+        Graph(int n) {
+            ids = new String[n];
+            for (int i = 0; i < n; i++)
+                ids[i] = "v" + i;
+        }
+
+        public int edges() {
+            return edges;
+        }
+
+        void add(int a, int b, float w) {
+            if (edges == from.length) {
+                from = Arrays.copyOf(from, 2 * edges);
+                to = Arrays.copyOf(to, 2 * edges);
+                weight = Arrays.copyOf(weight, 2 * edges);
+            }
+            from[edges] = a;
+            to[edges] = b;
+            weight[edges] = w;
+            edges++;
+        }
+    }
+
+    private MSTData() {
+    }
+
+    public static Graph graph(Family family, int n, long seed) {
+        Random random = new Random(seed);
+        Graph graph = new Graph(n);
+        switch (family) {
+            case GEOMETRIC:
+                geometric(graph, random);
+                break;
+            case GRID:
+                grid(graph, random);
+                break;
+            default:
+                powerLaw(graph, random);
+                break;
+        }
+        return graph;
+    }
+
+    // Weights in [0.01, 1000] with two decimals
+    private static float randomWeight(Random random) {
+        return (1 + random.nextInt(100_000)) / 100f;
+    }
+
+    private static void geometric(Graph graph, Random random) {
+        int n = graph.ids.length;
+        double side = Math.sqrt(n);
+        double radius = Math.sqrt(6 / Math.PI);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = random.nextDouble() * side;
+            ys[i] = random.nextDouble() * side;
+        }
+
+        // bucket the points into cells one radius wide, so neighbours are found
+        // in the 3x3 cells around a point
+        int cells = Math.max(1, (int) Math.ceil(side / radius));
+        int[] cellOf = new int[n];
+        int[] start = new int[cells * cells + 1];
+        for (int i = 0; i < n; i++) {
+            int cx = Math.min(cells - 1, (int) (xs[i] / radius));
+            int cy = Math.min(cells - 1, (int) (ys[i] / radius));
+            cellOf[i] = cy * cells + cx;
+            start[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < cells * cells; c++)
+            start[c + 1] += start[c];
+        int[] members = new int[n];
+        int[] next = Arrays.copyOf(start, cells * cells);
+        for (int i = 0; i < n; i++)
+            members[next[cellOf[i]]++] = i;
+
+        for (int i = 0; i < n; i++) {
+            int cx = cellOf[i] % cells;
+            int cy = cellOf[i] / cells;
+            for (int y = Math.max(0, cy - 1); y <= Math.min(cells - 1, cy + 1); y++) {
+                for (int x = Math.max(0, cx - 1); x <= Math.min(cells - 1, cx + 1); x++) {
+                    int c = y * cells + x;
+                    for (int k = start[c]; k < start[c + 1]; k++) {
+                        int j = members[k];
+                        if (j <= i)
+                            continue;
+                        double distance = Math.hypot(xs[i] - xs[j], ys[i] - ys[j]);
+                        if (distance < radius)
+                            graph.add(i, j, (float) distance);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void grid(Graph graph, Random random) {
+        int n = graph.ids.length;
+        int side = (int) Math.ceil(Math.sqrt(n));
+        for (int i = 0; i < n; i++) {
+            if ((i + 1) % side != 0 && i + 1 < n)
+                graph.add(i, i + 1, randomWeight(random));
+            if (i + side < n)
+                graph.add(i, i + side, randomWeight(random));
+        }
+    }
+
+    private static void powerLaw(Graph graph, Random random) {
+        int n = graph.ids.length;
+        int links = 3;
+        int core = Math.min(n, links + 1);
+        // every edge puts both endpoints here, so a uniform pick is a pick by degree
+        int[] ends = new int[2 * (core * core + links * n)];
+        int count = 0;
+        for (int i = 0; i < core; i++) {
+            for (int j = i + 1; j < core; j++) {
+                graph.add(i, j, randomWeight(random));
+                ends[count++] = i;
+                ends[count++] = j;
+            }
+        }
+        int[] picked = new int[links];
+        for (int v = core; v < n; v++) {
+            int k = 0;
+            while (k < links) {
+                int w = ends[random.nextInt(count)];
+                boolean repeated = false;
+                for (int p = 0; p < k; p++)
+                    repeated |= picked[p] == w;
+                if (!repeated)
+                    picked[k++] = w;
+            }
+            for (int p = 0; p < links; p++) {
+                graph.add(v, picked[p], randomWeight(random));
+                ends[count++] = v;
+                ends[count++] = picked[p];
+            }
+        }
+    }
+
+    // Directives over graph, mostly path queries with insert-edge, decrease-weight,
+    // increase-weight and delete-edge mixed in, and one print-mst halfway through.
+    // Inserted pairs are random and may already be edges; changed weights stay
+    // positive.
+    public static List<String> script(Graph graph, int directives, long seed) {
+        Random random = new Random(seed);
+        int n = graph.ids.length;
+        List<String> lines = new ArrayList<>(directives + 1);
+        for (int i = 0; i < directives; i++) {
+            if (i == directives / 2) {
+                lines.add("print-mst " + graph.ids[random.nextInt(n)]);
+                continue;
+            }
+            int e = graph.edges() == 0 ? -1 : random.nextInt(graph.edges());
+            int kind = random.nextInt(100);
+            if (kind < 60 || e < 0) {
+                lines.add("path " + graph.ids[random.nextInt(n)] + " " + graph.ids[random.nextInt(n)]);
+            } else if (kind < 75) {
+                lines.add("insert-edge " + graph.ids[random.nextInt(n)] + " " + graph.ids[random.nextInt(n)]
+                        + " " + randomWeight(random));
+            } else if (kind < 90) {
+                lines.add("decrease-weight " + graph.ids[graph.from[e]] + " " + graph.ids[graph.to[e]]
+                        + " " + graph.weight[e] * random.nextFloat() / 2);
+            } else if (kind < 95) {
+                lines.add("increase-weight " + graph.ids[graph.from[e]] + " " + graph.ids[graph.to[e]]
+                        + " " + randomWeight(random));
+            } else {
+                lines.add("delete-edge " + graph.ids[graph.from[e]] + " " + graph.ids[graph.to[e]]);
+            }
+        }
+        lines.add("quit");
+        return lines;
+    }
+
+    // An MSTProgram input file: the vertices, the edges, then the directives
+    public static void write(Writer out, Graph graph, List<String> directives) throws IOException {
+        out.write(graph.ids.length + "\n");
+        for (String id : graph.ids)
+            out.write(id + "\n");
+        out.write(graph.edges() + "\n");
+        for (int i = 0; i < graph.edges(); i++)
+            out.write(graph.ids[graph.from[i]] + " " + graph.ids[graph.to[i]] + " " + graph.weight[i] + "\n");
+        for (String line : directives)
+            out.write(line + "\n");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: java bench.MSTData <GEOMETRIC|GRID|POWER_LAW> <vertices> <directives> <seed>");
+            System.exit(1);
+        }
+        Family family = Family.valueOf(args[0]);
+        int vertices = Integer.parseInt(args[1]);
+        int directives = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+        Graph graph = graph(family, vertices, seed);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        write(out, graph, script(graph, directives, seed + 1));
+        out.flush();
+    }
+}
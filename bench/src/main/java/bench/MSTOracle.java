@@ -0,0 +1,305 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+// Correctness oracle for MSTProgram. Runs MSTProgram (in a java process of its
+// own, with any further arguments passed on, e.g. --parallel) on small random
+// inputs and compares its output with answers worked out here, rebuilding the
+// MST from scratch with Kruskal after every directive. All weights are kept
+// distinct, so the MST is unique and every correct backend has to agree.
+//
+//   java -cp target/benchmarks.jar bench.MSTOracle <scripts> <max vertices> [MSTProgram options]
+public final class MSTOracle {
+
+    private static final int DIRECTIVES = 60;
+
+    private final String[] ids;
+    private final Map<String, Integer> index = new HashMap<>();
+    // current weight of each edge, by pairKey
+    private final Map<Long, Float> weights = new LinkedHashMap<>();
+    private final Set<Float> usedWeights = new HashSet<>();
+    private final Random random;
+    private List<List<Integer>> tree;
+
+    private MSTOracle(MSTData.Graph graph, Random random) {
+        this.ids = graph.ids;
+        this.random = random;
+        for (int i = 0; i < ids.length; i++)
+            index.put(ids[i], i);
+        // the generated weights are replaced by distinct ones
+        for (int i = 0; i < graph.edges(); i++) {
+            float w = freshWeight(0);
+            graph.weight[i] = w;
+            weights.put(pairKey(graph.from[i], graph.to[i]), w);
+        }
+        rebuild();
+    }
+
+    private static long pairKey(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    // A whole number weight above floor not used before. Weights stay far below
+    // 2^24, so they and their differences are exact as floats.
+    private float freshWeight(float floor) {
+        float w;
+        do {
+            w = floor + 1 + random.nextInt(1 << 16);
+        } while (!usedWeights.add(w));
+        return w;
+    }
+
+    // An unused whole number weight in [1, old), or -1 if none turns up
+    private float lowerWeight(float old) {
+        for (int attempt = 0; attempt < 20 && old > 1; attempt++) {
+            float w = 1 + random.nextInt((int) old - 1);
+            if (usedWeights.add(w))
+                return w;
+        }
+        return -1;
+    }
+
+    private void rebuild() {
+        Long[] keys = weights.keySet().toArray(new Long[0]);
+        Arrays.sort(keys, (a, b) -> Float.compare(weights.get(a), weights.get(b)));
+        int[] parent = new int[ids.length];
+        for (int i = 0; i < parent.length; i++)
+            parent[i] = i;
+        tree = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++)
+            tree.add(new ArrayList<>());
+        for (long key : keys) {
+            int a = (int) (key >>> 32);
+            int b = (int) key;
+            int ra = find(parent, a);
+            int rb = find(parent, b);
+            if (ra == rb)
+                continue;
+            parent[ra] = rb;
+            tree.get(a).add(b);
+            tree.get(b).add(a);
+        }
+    }
+
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    // Vertices from u to v in the MST, or null if they are not connected
+    private List<Integer> treePath(int u, int v) {
+        int[] previous = new int[ids.length];
+        Arrays.fill(previous, -2);
+        previous[u] = -1;
+        List<Integer> stack = new ArrayList<>();
+        stack.add(u);
+        while (!stack.isEmpty()) {
+            int x = stack.remove(stack.size() - 1);
+            for (int y : tree.get(x)) {
+                if (previous[y] == -2) {
+                    previous[y] = x;
+                    stack.add(y);
+                }
+            }
+        }
+        if (previous[v] == -2)
+            return null;
+        List<Integer> path = new ArrayList<>();
+        for (int x = v; x != -1; x = previous[x])
+            path.add(0, x);
+        return path;
+    }
+
+    private void printMST(int root, List<String> out) {
+        List<int[]> stack = new ArrayList<>(); // vertex, parent, depth
+        stack.add(new int[]{root, -1, 0});
+        while (!stack.isEmpty()) {
+            int[] top = stack.remove(stack.size() - 1);
+            out.add(". ".repeat(top[2]) + ids[top[0]]);
+            List<Integer> children = new ArrayList<>();
+            for (int y : tree.get(top[0])) {
+                if (y != top[1])
+                    children.add(y);
+            }
+            children.sort((a, b) -> ids[a].compareTo(ids[b]));
+            for (int k = children.size() - 1; k >= 0; k--)
+                stack.add(new int[]{children.get(k), top[0], top[2] + 1});
+        }
+    }
+
+    private String randomId() {
+        // now and then a vertex that does not exist
+        return random.nextInt(20) == 0 ? "missing" : ids[random.nextInt(ids.length)];
+    }
+
+    private String[] randomEdge() {
+        if (weights.isEmpty() || random.nextInt(5) == 0)
+            return new String[]{randomId(), randomId()};
+        Long[] keys = weights.keySet().toArray(new Long[0]);
+        long key = keys[random.nextInt(keys.length)];
+        String a = ids[(int) (key >>> 32)];
+        String b = ids[(int) key];
+        return random.nextBoolean() ? new String[]{a, b} : new String[]{b, a};
+    }
+
+    private Long existing(String u, String v) {
+        Integer a = index.get(u);
+        Integer b = index.get(v);
+        if (a == null || b == null)
+            return null;
+        long key = pairKey(a, b);
+        return weights.containsKey(key) ? key : null;
+    }
+
+    // Appends one random directive to script and what MSTProgram should print for
+    // it to expected, then brings the MST up to date
+    private void step(List<String> script, List<String> expected) {
+        int kind = random.nextInt(100);
+        if (kind < 10) {
+            String root = randomId();
+            script.add("print-mst " + root);
+            Integer r = index.get(root);
+            if (r != null) {
+                expected.add("Directive-----------------> print-mst " + root);
+                printMST(r, expected);
+            }
+        } else if (kind < 40) {
+            String u = randomId();
+            String v = randomId();
+            script.add("path " + u + " " + v);
+            expected.add("Directive-----------------> path " + u + " " + v);
+            Integer a = index.get(u);
+            Integer b = index.get(v);
+            List<Integer> path = a == null || b == null ? null : treePath(a, b);
+            if (path == null) {
+                expected.add(u + "," + v);
+            } else {
+                StringBuilder line = new StringBuilder();
+                for (int x : path)
+                    line.append(line.length() == 0 ? "" : ", ").append(ids[x]);
+                expected.add(line.toString());
+            }
+        } else if (kind < 60) {
+            String u = randomId();
+            String v = randomId();
+            if (u.equals(v))
+                return;
+            float w = freshWeight(0);
+            script.add("insert-edge " + u + " " + v + " " + (int) w);
+            expected.add("Directive-----------------> insert-edge " + u + " " + v + " " + w);
+            Integer a = index.get(u);
+            Integer b = index.get(v);
+            if (a == null || b == null || existing(u, v) != null)
+                expected.add("Invalid Operation");
+            else
+                weights.put(pairKey(a, b), w);
+        } else if (kind < 80) {
+            String[] e = randomEdge();
+            Long key = existing(e[0], e[1]);
+            float w = key == null ? 0 : lowerWeight(weights.get(key));
+            if (w < 0)
+                return;
+            float dw = key == null ? 1 + random.nextInt(100) : weights.get(key) - w;
+            script.add("decrease-weight " + e[0] + " " + e[1] + " " + (int) dw);
+            expected.add("Directive-----------------> decrease-weight " + e[0] + " " + e[1] + " " + dw);
+            if (key == null)
+                expected.add("Invalid Operation");
+            else
+                weights.put(key, w);
+        } else if (kind < 90) {
+            String[] e = randomEdge();
+            Long key = existing(e[0], e[1]);
+            float old = key == null ? 1 : weights.get(key);
+            float dw = freshWeight(old) - old;
+            script.add("increase-weight " + e[0] + " " + e[1] + " " + (int) dw);
+            expected.add("Directive-----------------> increase-weight " + e[0] + " " + e[1] + " " + dw);
+            if (key == null)
+                expected.add("Invalid Operation");
+            else
+                weights.put(key, old + dw);
+        } else {
+            String[] e = randomEdge();
+            Long key = existing(e[0], e[1]);
+            script.add("delete-edge " + e[0] + " " + e[1]);
+            expected.add("Directive-----------------> delete-edge " + e[0] + " " + e[1]);
+            if (key == null)
+                expected.add("Invalid Operation");
+            else
+                weights.remove(key);
+        }
+        rebuild();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: java bench.MSTOracle <scripts> <max vertices> [MSTProgram options]");
+            System.exit(1);
+        }
+        int scripts = Integer.parseInt(args[0]);
+        int maxVertices = Integer.parseInt(args[1]);
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("MSTProgram");
+        command.addAll(Arrays.asList(args).subList(2, args.length));
+
+        Path input = Files.createTempFile("mst-oracle", ".txt");
+        for (int seed = 0; seed < scripts; seed++) {
+            Random random = new Random(seed);
+            MSTData.Family family = MSTData.Family.values()[seed % MSTData.Family.values().length];
+            MSTData.Graph graph = MSTData.graph(family, 2 + random.nextInt(Math.max(1, maxVertices - 1)), seed);
+            MSTOracle oracle = new MSTOracle(graph, random);
+            List<String> script = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            while (script.size() < DIRECTIVES)
+                oracle.step(script, expected);
+            script.add("quit");
+            expected.add("Directive-----------------> quit");
+
+            try (BufferedWriter out = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+                MSTData.write(out, graph, script);
+            }
+            List<String> run = new ArrayList<>(command);
+            run.add(input.toString());
+            Process process = new ProcessBuilder(run).redirectErrorStream(true).start();
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            process.waitFor();
+            List<String> actual = Arrays.asList(output.split("\\R", -1));
+            if (!actual.isEmpty() && actual.get(actual.size() - 1).isEmpty())
+                actual = actual.subList(0, actual.size() - 1);
+
+            for (int line = 0; line < Math.max(actual.size(), expected.size()); line++) {
+                String want = line < expected.size() ? expected.get(line) : "<end of output>";
+                String got = line < actual.size() ? actual.get(line) : "<end of output>";
+                if (!want.equals(got)) {
+                    Path kept = Files.createTempFile("mst-oracle-" + seed + "-", ".txt");
+                    Files.copy(input, kept, StandardCopyOption.REPLACE_EXISTING);
+                    System.out.println("Script " + seed + " (" + family + "), line " + (line + 1) + ": expected \""
+                            + want + "\", got \"" + got + "\"; input kept in " + kept);
+                    System.exit(1);
+                }
+            }
+        }
+        Files.deleteIfExists(input);
+        System.out.println(scripts + " scripts, all outputs matched");
+    }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// MaxHeap<EarthquakeEvent> with `size` quakes in the window, plus query-topk
+// (MaxHeap.topK) against the naive copy-the-window-and-sort approach.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaxHeapBenchmark {
+
+    private static final int EXTRA = 1 << 10;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"10"})
+    public int k;
+
+    private NotificationCore core;
+    private Object heap;
+    private Object[] window;
+    private Object[] extra;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        core = NotificationCore.load();
+        double[][] p = BenchData.points(BenchData.Distribution.UNIFORM, size, 42);
+        double[] magnitudes = BenchData.magnitudes(size + EXTRA, 43);
+        heap = core.newMagnitudeHeap();
+        window = new Object[size];
+        for (int i = 0; i < size; i++) {
+            window[i] = core.newEarthquake(i, "q" + i, "place", p[0][i], p[1][i], magnitudes[i]);
+            core.heapInsert(heap, window[i]);
+        }
+        extra = new Object[EXTRA];
+        for (int i = 0; i < EXTRA; i++)
+            extra[i] = core.newEarthquake(size + i, "x" + i, "place", 0, 0, magnitudes[size + i]);
+    }
+
+    @Benchmark
+    public void insert() {
+        Object quake = extra[next++ & (EXTRA - 1)];
+        core.heapInsert(heap, quake);
+        core.heapRemove(heap, quake);
+    }
+
+    @Benchmark
+    public void remove() {
+        Object quake = window[(next++ & Integer.MAX_VALUE) % size];
+        core.heapRemove(heap, quake);
+        core.heapInsert(heap, quake);
+    }
+
+    @Benchmark
+    public Object peek() {
+        return core.heapPeek(heap);
+    }
+
+    @Benchmark
+    public int topK() {
+        return core.heapTopK(heap, k);
+    }
+
+    @Benchmark
+    public double[] copyAndSort() {
+        return core.sortedMagnitudes(window, k);
+    }
+}
@@ -0,0 +1,62 @@
+package bench;
+
+import java.io.IOException;
+
+// JMH refuses benchmark classes in the default package, and packaged code cannot
+// name the project's default-package classes. The benchmarks therefore talk to
+// the notification core through this interface; NotificationCoreBridge (default
+// package) implements it by delegating straight to the real classes. Handles are
+// passed around as Object and cast back inside the bridge.
+public interface NotificationCore {
+
+    static NotificationCore load() {
+        try {
+            return (NotificationCore) Class.forName("NotificationCoreBridge").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("NotificationCoreBridge is not on the classpath", e);
+        }
+    }
+
+    // KDTree2D, or OffHeapKDTree2D through newOffHeapWatcherTree
+    Object newWatcherTree();
+    Object newOffHeapWatcherTree();
+    Object newWatcher(double x, double y, String name);
+    void insertWatcher(Object tree, Object watcher);
+    void removeWatcher(Object tree, Object watcher);
+    boolean removeWatcherByName(Object tree, String name);
+    int rangeQueryCircular(Object tree, double x, double y, double radius);
+
+    // MaxHeap<EarthquakeEvent>, ordered the same way as in simulateEvents
+    Object newMagnitudeHeap();
+    Object newEarthquake(int time, String id, String place, double x, double y, double magnitude);
+    void heapInsert(Object heap, Object quake);
+    void heapRemove(Object heap, Object quake);
+    Object heapPeek(Object heap);
+    int heapTopK(Object heap, int k);
+    double[] sortedMagnitudes(Object[] quakes, int k);
+
+    // SimpleMap<String, Integer>
+    Object newSimpleMap();
+    Object mapGet(Object map, String key);
+    Object mapPut(Object map, String key, Integer value);
+
+    // EarthquakeNotification
+    Object newEventList(Object[] events);
+    Object newWatcherEvent(int time, double x, double y, String name);
+    void sortEventsByTime(Object events);
+    int readWatcherFile(String fileName);
+    int readEarthquakeFile(String fileName);
+
+    // EarthquakeNotification.simulateEvents over stores of `rounds` rounds and a
+    // steady population of `watchers`; output goes to a discarding stream until
+    // closeSimulation
+    Object newSimulation(int watchers, int rounds, long seed);
+    void simulate(Object simulation);
+    void closeSimulation(Object simulation);
+
+    // WatcherLog
+    Object openWatcherLog(String directory, long syncMillis) throws IOException;
+    void watcherLogAppend(Object log, Object watcherEvent) throws IOException;
+    void watcherLogSync(Object log) throws IOException;
+    void watcherLogClose(Object log) throws IOException;
+}
@@ -0,0 +1,66 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// readWatcherFile / readEarthquakeFile on generated files of `size` events.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class ReaderBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"UNIFORM", "CLUSTERED", "SORTED"})
+    public BenchData.Distribution distribution;
+
+    private NotificationCore core;
+    private Path directory;
+    private Path watcherFile;
+    private Path earthquakeFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        core = NotificationCore.load();
+        directory = Files.createTempDirectory("earthquake-bench");
+        watcherFile = BenchData.writeWatcherFile(directory.resolve("watchers"), distribution, size, 42);
+        earthquakeFile = BenchData.writeEarthquakeFile(directory.resolve("earthquakes"), distribution, size, 43);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(watcherFile);
+        Files.deleteIfExists(earthquakeFile);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int readWatcherFile() {
+        return core.readWatcherFile(watcherFile.toString());
+    }
+
+    @Benchmark
+    public int readEarthquakeFile() {
+        return core.readEarthquakeFile(earthquakeFile.toString());
+    }
+}
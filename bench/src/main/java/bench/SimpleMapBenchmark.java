@@ -0,0 +1,58 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// SimpleMap<String, Integer> get / put on a map of `size` keys.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleMapBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private NotificationCore core;
+    private Object map;
+    private String[] keys;
+    private Integer[] values;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        core = NotificationCore.load();
+        map = core.newSimpleMap();
+        keys = new String[size];
+        values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "key" + i;
+            values[i] = i;
+            core.mapPut(map, keys[i], values[i]);
+        }
+    }
+
+    @Benchmark
+    public Object get() {
+        return core.mapGet(map, keys[(next++ & Integer.MAX_VALUE) % size]);
+    }
+
+    @Benchmark
+    public Object put() {
+        int i = (next++ & Integer.MAX_VALUE) % size;
+        return core.mapPut(map, keys[i], values[i]);
+    }
+}
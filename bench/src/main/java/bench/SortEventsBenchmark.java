@@ -0,0 +1,76 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.annotations.Level;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// EarthquakeNotification.sortEventsByTime. MERGED is what main() hands it: the
+// watcher file followed by the earthquake file, each already in time order.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortEventsBenchmark {
+
+    public enum Order { SORTED, MERGED, SHUFFLED }
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"SORTED", "MERGED", "SHUFFLED"})
+    public Order order;
+
+    private NotificationCore core;
+    private Object[] events;
+    private Object list;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        core = NotificationCore.load();
+        int[] times = new int[size];
+        for (int i = 0; i < size; i++)
+            times[i] = i;
+        if (order == Order.MERGED) {
+            int half = size / 2;
+            for (int i = 0; i < size; i++)
+                times[i] = i < half ? 2 * i : 2 * (i - half) + 1;
+        } else if (order == Order.SHUFFLED) {
+            Random random = new Random(42);
+            for (int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = times[i];
+                times[i] = times[j];
+                times[j] = t;
+            }
+        }
+        events = new Object[size];
+        for (int i = 0; i < size; i++)
+            events[i] = core.newWatcherEvent(times[i], 0, 0, "w" + i);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        list = core.newEventList(events);
+    }
+
+    @Benchmark
+    public Object sortEventsByTime() {
+        core.sortEventsByTime(list);
+        return list;
+    }
+}
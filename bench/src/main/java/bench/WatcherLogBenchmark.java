@@ -0,0 +1,79 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Durable watcher registrations per second: each invocation appends BATCH add
+// records and then waits in sync() until they are on disk. The log lives in a
+// temp directory, so point java.io.tmpdir at the disk being measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WatcherLogBenchmark {
+
+    private static final int BATCH = 10000;
+
+    // durability window in ms; 0 syncs as soon as the previous fsync is done
+    @Param({"0", "10"})
+    public long syncMillis;
+
+    private NotificationCore core;
+    private Path directory;
+    private Object log;
+    private Object[] events;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        core = NotificationCore.load();
+        double[][] points = BenchData.points(BenchData.Distribution.UNIFORM, BATCH, 42);
+        events = new Object[BATCH];
+        for (int i = 0; i < BATCH; i++)
+            events[i] = core.newWatcherEvent(i, points[0][i], points[1][i], "w" + i);
+    }
+
+    @Setup(Level.Iteration)
+    public void openLog() throws IOException {
+        directory = Files.createTempDirectory("watcher-log-bench");
+        log = core.openWatcherLog(directory.toString(), syncMillis);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeLog() throws IOException {
+        core.watcherLogClose(log);
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files)
+                Files.delete(file.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void appendAndSync() throws IOException {
+        for (int i = 0; i < BATCH; i++)
+            core.watcherLogAppend(log, events[i]);
+        core.watcherLogSync(log);
+    }
+}
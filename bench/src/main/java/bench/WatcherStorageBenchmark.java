@@ -0,0 +1,78 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// KDTree2D against OffHeapKDTree2D holding `size` watchers. fullGc times a
+// System.gc() with the tree live, which is the pause the heap tree's tens of
+// millions of nodes and Point2Ds cost; rangeQueryCircular checks what reading
+// nodes through direct buffers costs in return. The default is the 50M-watcher
+// population (about 7 GB of heap for HEAP); use -p size=1000000,10000000 to see
+// how the pause grows.
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xss512m", "-Xmx16g", "-XX:MaxDirectMemorySize=8g"})
+public class WatcherStorageBenchmark {
+
+    public enum Storage {
+        HEAP,
+        OFF_HEAP
+    }
+
+    private static final int QUERIES = 1 << 12;
+
+    @Param({"50000000"})
+    public int size;
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public Storage storage;
+
+    private NotificationCore core;
+    private Object tree;
+    private double[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        core = NotificationCore.load();
+        tree = storage == Storage.HEAP ? core.newWatcherTree() : core.newOffHeapWatcherTree();
+        // points are drawn on the fly so that only the tree stays live
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            double x = random.nextDouble() * 360.0 - 180.0;
+            double y = random.nextDouble() * 180.0 - 90.0;
+            core.insertWatcher(tree, core.newWatcher(x, y, "w" + i));
+        }
+        queries = BenchData.points(BenchData.Distribution.UNIFORM, QUERIES, 9);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public void fullGc() {
+        System.gc();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public int rangeQueryCircular() {
+        int i = next++ & (QUERIES - 1);
+        return core.rangeQueryCircular(tree, queries[0][i], queries[1][i], 2.0);
+    }
+}
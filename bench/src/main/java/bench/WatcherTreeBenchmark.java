@@ -0,0 +1,86 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// KDTree2D insert / removeByName / rangeQueryCircular on a tree of `size` watchers.
+// The tree is built by plain insertion, so SORTED degrades it to a list: use
+// -p size=1000000,10000000 -p distribution=UNIFORM,CLUSTERED for the large runs.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xss512m", "-Xmx8g"})
+public class WatcherTreeBenchmark {
+
+    private static final int EXTRA = 1 << 12;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"UNIFORM", "CLUSTERED", "SORTED"})
+    public BenchData.Distribution distribution;
+
+    // 2 * 1^3 and 2 * 2^3: small and typical notification radii
+    @Param({"2.0", "16.0"})
+    public double radius;
+
+    private NotificationCore core;
+    private Object tree;
+    private Object[] extraWatchers;
+    private double[][] queries;
+    private String[] names;
+    private double[][] points;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        core = NotificationCore.load();
+        points = BenchData.points(distribution, size, 42);
+        tree = core.newWatcherTree();
+        names = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = "w" + i;
+            core.insertWatcher(tree, core.newWatcher(points[0][i], points[1][i], names[i]));
+        }
+
+        double[][] extra = BenchData.points(BenchData.Distribution.UNIFORM, EXTRA, 7);
+        extraWatchers = new Object[EXTRA];
+        for (int i = 0; i < EXTRA; i++)
+            extraWatchers[i] = core.newWatcher(extra[0][i], extra[1][i], "extra" + i);
+        queries = BenchData.points(distribution == BenchData.Distribution.SORTED ? BenchData.Distribution.UNIFORM : distribution, EXTRA, 9);
+    }
+
+    @Benchmark
+    public void insert() {
+        Object watcher = extraWatchers[next++ & (EXTRA - 1)];
+        core.insertWatcher(tree, watcher);
+        core.removeWatcher(tree, watcher);
+    }
+
+    @Benchmark
+    public boolean removeByName() {
+        int i = (next++ & Integer.MAX_VALUE) % size;
+        boolean removed = core.removeWatcherByName(tree, names[i]);
+        core.insertWatcher(tree, core.newWatcher(points[0][i], points[1][i], names[i]));
+        return removed;
+    }
+
+    @Benchmark
+    public int rangeQueryCircular() {
+        int i = next++ & (EXTRA - 1);
+        return core.rangeQueryCircular(tree, queries[0][i], queries[1][i], radius);
+    }
+}
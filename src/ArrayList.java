@@ -1,3 +1,4 @@
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -36,12 +37,18 @@ public class ArrayList<E> implements List<E> {
         return temp;
     }
 
+    // Appends in amortized O(1), without the index check of add(size(), e).
+    public void add(E e) {
+        if (size == data.length)
+            resize(newCapacity(size + 1));
+        data[size++] = e;
+    }
+
     public void add(int i, E e) throws IndexOutOfBoundsException {
         checkIndex(i, size + 1);
         if (size == data.length)
-            resize(2 * data.length);
-        for (int k = size - 1; k >= i; k--)
-            data[k + 1] = data[k];
+            resize(newCapacity(size + 1));
+        System.arraycopy(data, i, data, i + 1, size - i);
         data[i] = e;
         size++;
     }
@@ -49,24 +56,38 @@ public class ArrayList<E> implements List<E> {
     public E remove(int i) throws IndexOutOfBoundsException {
         checkIndex(i, size);
         E temp = data[i];
-        for (int k = i; k < size - 1; k++)
-            data[k] = data[k + 1];
-        data[size - 1] = null;
-        size--;
+        System.arraycopy(data, i + 1, data, i, size - i - 1);
+        data[--size] = null;
         return temp;
     }
 
+    // Empties the list but keeps the backing array for reuse.
+    public void clear() {
+        Arrays.fill(data, 0, size, null);
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length)
+            resize(newCapacity(capacity));
+    }
+
+    public void trimToSize() {
+        if (size < data.length)
+            resize(size);
+    }
+
+    private int newCapacity(int minCapacity) {
+        return Math.max(minCapacity, Math.max(2 * data.length, CAPACITY));
+    }
+
     protected void checkIndex(int i, int n) throws IndexOutOfBoundsException {
         if (i < 0 || i >= n)
             throw new IndexOutOfBoundsException("Illegal index: " + i);
     }
 
-    @SuppressWarnings({"unchecked"})
     protected void resize(int capacity) {
-        E[] temp = (E[]) new Object[capacity];
-        for (int k = 0; k < size; k++)
-            temp[k] = data[k];
-        data = temp;
+        data = Arrays.copyOf(data, capacity);
     }
 
     private class ArrayIterator implements Iterator<E> {
@@ -0,0 +1,148 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+
+// PrintStream that copies strings straight into its own byte buffer. The stock
+// PrintStream goes through a writer and a charset encoder and allocates on
+// every print; here ASCII text (all of the simulator's output, as long as the
+// input names are ASCII) is written without allocating, and anything else is
+// encoded with the default charset, as PrintStream would. Ints are written
+// digit by digit, and the text of recently printed doubles is cached, since the
+// simulator prints the same few magnitudes over and over. Nothing is flushed
+// until the buffer fills or flush() is called.
+public class BufferedPrintStream extends PrintStream {
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes();
+    private static final int DOUBLE_CACHE_SIZE = 256;
+
+    private final OutputStream target;
+    private final Charset charset = Charset.defaultCharset();
+    private final byte[] buffer;
+    private int count;
+    private final byte[] digits = new byte[11];
+    private final long[] cachedBits = new long[DOUBLE_CACHE_SIZE];
+    private final String[] cachedText = new String[DOUBLE_CACHE_SIZE];
+
+    public BufferedPrintStream(OutputStream target, int bufferSize) {
+        super(target, false);
+        this.target = target;
+        buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public synchronized void print(String s) {
+        if (s == null)
+            s = "null";
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) >= 0x80) {
+                byte[] encoded = s.getBytes(charset);
+                write(encoded, 0, encoded.length);
+                return;
+            }
+        }
+        int i = 0;
+        while (i < length) {
+            if (count == buffer.length)
+                drain();
+            int n = Math.min(length - i, buffer.length - count);
+            for (int j = 0; j < n; j++)
+                buffer[count + j] = (byte) s.charAt(i + j);
+            count += n;
+            i += n;
+        }
+    }
+
+    @Override
+    public synchronized void print(int i) {
+        if (i == Integer.MIN_VALUE) {
+            print(Integer.toString(i));
+            return;
+        }
+        if (i < 0) {
+            write('-');
+            i = -i;
+        }
+        int n = digits.length;
+        do {
+            digits[--n] = (byte) ('0' + i % 10);
+            i /= 10;
+        } while (i != 0);
+        write(digits, n, digits.length - n);
+    }
+
+    @Override
+    public synchronized void print(double d) {
+        long bits = Double.doubleToRawLongBits(d);
+        int slot = (int) (bits ^ (bits >>> 29) ^ (bits >>> 47)) & (DOUBLE_CACHE_SIZE - 1);
+        String text = cachedText[slot];
+        if (text == null || cachedBits[slot] != bits) {
+            text = String.valueOf(d);
+            cachedText[slot] = text;
+            cachedBits[slot] = bits;
+        }
+        print(text);
+    }
+
+    @Override
+    public synchronized void println(String s) {
+        print(s);
+        println();
+    }
+
+    @Override
+    public synchronized void println() {
+        write(NEWLINE, 0, NEWLINE.length);
+    }
+
+    // PrintStream's other print methods end up here after encoding.
+    @Override
+    public synchronized void write(int b) {
+        if (count == buffer.length)
+            drain();
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        if (len > buffer.length - count)
+            drain();
+        if (len > buffer.length) {
+            try {
+                target.write(b, off, len);
+            } catch (IOException e) {
+                setError();
+            }
+            return;
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    @Override
+    public synchronized void flush() {
+        drain();
+        try {
+            target.flush();
+        } catch (IOException e) {
+            setError();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        super.close();
+    }
+
+    private void drain() {
+        if (count == 0)
+            return;
+        try {
+            target.write(buffer, 0, count);
+        } catch (IOException e) {
+            setError();
+        }
+        count = 0;
+    }
+}
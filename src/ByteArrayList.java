@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+// ArrayList specialised for byte values: no boxing, and the backing array is
+// copied with System.arraycopy / Arrays.copyOf.
+public class ByteArrayList {
+    public static final int CAPACITY = 16;
+
+    private byte[] data;
+    private int size = 0;
+
+    public ByteArrayList(int capacity) {
+        data = new byte[capacity];
+    }
+
+    public ByteArrayList() {
+        this(CAPACITY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public byte get(int i) throws IndexOutOfBoundsException {
+        checkIndex(i, size);
+        return data[i];
+    }
+
+    public byte set(int i, byte value) throws IndexOutOfBoundsException {
+        checkIndex(i, size);
+        byte temp = data[i];
+        data[i] = value;
+        return temp;
+    }
+
+    public void add(byte value) {
+        if (size == data.length)
+            resize(newCapacity(size + 1));
+        data[size++] = value;
+    }
+
+    public void add(int i, byte value) throws IndexOutOfBoundsException {
+        checkIndex(i, size + 1);
+        if (size == data.length)
+            resize(newCapacity(size + 1));
+        System.arraycopy(data, i, data, i + 1, size - i);
+        data[i] = value;
+        size++;
+    }
+
+    public byte remove(int i) throws IndexOutOfBoundsException {
+        checkIndex(i, size);
+        byte temp = data[i];
+        System.arraycopy(data, i + 1, data, i, size - i - 1);
+        size--;
+        return temp;
+    }
+
+    public byte removeLast() throws IndexOutOfBoundsException {
+        checkIndex(size - 1, size);
+        return data[--size];
+    }
+
+    // Empties the list but keeps the backing array for reuse.
+    public void clear() {
+        size = 0;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > data.length)
+            resize(newCapacity(capacity));
+    }
+
+    public void trimToSize() {
+        if (size < data.length)
+            resize(size);
+    }
+
+    public byte[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    protected void checkIndex(int i, int n) throws IndexOutOfBoundsException {
+        if (i < 0 || i >= n)
+            throw new IndexOutOfBoundsException("Illegal index: " + i);
+    }
+
+    private int newCapacity(int minCapacity) {
+        return Math.max(minCapacity, Math.max(2 * data.length, CAPACITY));
+    }
+
+    private void resize(int capacity) {
+        data = Arrays.copyOf(data, capacity);
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("(");
+        for (int j = 0; j < size; j++) {
+            if (j > 0)
+                sb.append(", ");
+            sb.append(data[j]);
+        }
+        sb.append(")");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,69 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Writes snapshots on a background thread so the simulation only pays for
+// SimulationSnapshot.capture(). There is a single pending slot: if the writer is
+// still busy when the next snapshot arrives, the older unwritten one is dropped.
+// Every snapshot is released once it has been written or dropped.
+public class Checkpointer {
+    private static final SimulationSnapshot STOP = new SimulationSnapshot();
+
+    private final File file;
+    private final ArrayBlockingQueue<SimulationSnapshot> pending = new ArrayBlockingQueue<>(1);
+    private final Thread writer;
+
+    public Checkpointer(File file) {
+        this.file = file;
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void submit(SimulationSnapshot snapshot) {
+        while (!pending.offer(snapshot))
+            release(pending.poll());
+    }
+
+    // Writes the final snapshot and waits for the writer to finish.
+    public void close(SimulationSnapshot last) {
+        try {
+            release(pending.poll());
+            pending.put(last);
+            pending.put(STOP);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            SimulationSnapshot snapshot;
+            try {
+                snapshot = pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (snapshot == STOP)
+                return;
+            try {
+                snapshot.write(file);
+            } catch (IOException e) {
+                System.err.println("Error writing checkpoint: " + e.getMessage());
+            } finally {
+                snapshot.release();
+            }
+        }
+    }
+
+    private static void release(SimulationSnapshot snapshot) {
+        if (snapshot != null)
+            snapshot.release();
+    }
+}
@@ -0,0 +1,52 @@
+import java.util.Arrays;
+
+// ChunkedIntArray for object references.
+public class ChunkedArray<E> {
+    private static final int SHIFT = ChunkedIntArray.SHIFT;
+    private static final int CHUNK = ChunkedIntArray.CHUNK;
+    private static final int MASK = ChunkedIntArray.MASK;
+
+    private final int length;
+    private final Object[][] chunks;
+    // false once the chunk is shared with a copy; it is copied before the next write
+    private final boolean[] owned;
+
+    public ChunkedArray(int length) {
+        this.length = length;
+        chunks = new Object[(length + MASK) >>> SHIFT][];
+        owned = new boolean[chunks.length];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = new Object[Math.min(CHUNK, length - (c << SHIFT))];
+            owned[c] = true;
+        }
+    }
+
+    private ChunkedArray(ChunkedArray<E> other) {
+        length = other.length;
+        chunks = other.chunks.clone();
+        owned = new boolean[chunks.length];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    @SuppressWarnings({"unchecked"})
+    public E get(int i) {
+        return (E) chunks[i >>> SHIFT][i & MASK];
+    }
+
+    public void set(int i, E e) {
+        int c = i >>> SHIFT;
+        if (!owned[c]) {
+            chunks[c] = chunks[c].clone();
+            owned[c] = true;
+        }
+        chunks[c][i & MASK] = e;
+    }
+
+    public ChunkedArray<E> copy() {
+        Arrays.fill(owned, false);
+        return new ChunkedArray<>(this);
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.Arrays;
+
+// ChunkedIntArray specialised for double values.
+public class ChunkedDoubleArray {
+    private static final int SHIFT = ChunkedIntArray.SHIFT;
+    private static final int CHUNK = ChunkedIntArray.CHUNK;
+    private static final int MASK = ChunkedIntArray.MASK;
+
+    private final int length;
+    private final double[][] chunks;
+    // false once the chunk is shared with a copy; it is copied before the next write
+    private final boolean[] owned;
+
+    public ChunkedDoubleArray(int length) {
+        this.length = length;
+        chunks = new double[(length + MASK) >>> SHIFT][];
+        owned = new boolean[chunks.length];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = new double[Math.min(CHUNK, length - (c << SHIFT))];
+            owned[c] = true;
+        }
+    }
+
+    private ChunkedDoubleArray(ChunkedDoubleArray other) {
+        length = other.length;
+        chunks = other.chunks.clone();
+        owned = new boolean[chunks.length];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public double get(int i) {
+        return chunks[i >>> SHIFT][i & MASK];
+    }
+
+    public void set(int i, double value) {
+        int c = i >>> SHIFT;
+        if (!owned[c]) {
+            chunks[c] = chunks[c].clone();
+            owned[c] = true;
+        }
+        chunks[c][i & MASK] = value;
+    }
+
+    public ChunkedDoubleArray copy() {
+        Arrays.fill(owned, false);
+        return new ChunkedDoubleArray(this);
+    }
+}
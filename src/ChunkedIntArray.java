@@ -0,0 +1,65 @@
+import java.util.Arrays;
+
+// Fixed-length int array kept in chunks of 1024, so copying it is cheap:
+// copy() shares every chunk, which costs O(length / 1024), and afterwards
+// whichever side writes to a shared chunk first copies just that chunk. A
+// copy that is only read may be handed to another thread while the original
+// keeps being written.
+public class ChunkedIntArray {
+    static final int SHIFT = 10;
+    static final int CHUNK = 1 << SHIFT;
+    static final int MASK = CHUNK - 1;
+
+    private final int length;
+    private final int[][] chunks;
+    // false once the chunk is shared with a copy; it is copied before the next write
+    private final boolean[] owned;
+
+    public ChunkedIntArray(int length) {
+        this.length = length;
+        chunks = new int[(length + MASK) >>> SHIFT][];
+        owned = new boolean[chunks.length];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = new int[Math.min(CHUNK, length - (c << SHIFT))];
+            owned[c] = true;
+        }
+    }
+
+    private ChunkedIntArray(ChunkedIntArray other) {
+        length = other.length;
+        chunks = other.chunks.clone();
+        owned = new boolean[chunks.length];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int get(int i) {
+        return chunks[i >>> SHIFT][i & MASK];
+    }
+
+    public void set(int i, int value) {
+        int c = i >>> SHIFT;
+        if (!owned[c]) {
+            chunks[c] = chunks[c].clone();
+            owned[c] = true;
+        }
+        chunks[c][i & MASK] = value;
+    }
+
+    public void fill(int value) {
+        for (int c = 0; c < chunks.length; c++) {
+            if (!owned[c]) {
+                chunks[c] = new int[chunks[c].length];
+                owned[c] = true;
+            }
+            Arrays.fill(chunks[c], value);
+        }
+    }
+
+    public ChunkedIntArray copy() {
+        Arrays.fill(owned, false);
+        return new ChunkedIntArray(this);
+    }
+}
@@ -0,0 +1,71 @@
+// FIFO queue in a ring of ChunkedArray slots. copy() costs O(size / 1024)
+// and gives a queue that shares the chunks until either side writes to them,
+// so a snapshot of the queue can be read on another thread while this one
+// keeps changing.
+public class ChunkedQueue<E> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private ChunkedArray<E> items;
+    private int head;
+    private int size;
+
+    public ChunkedQueue() {
+        items = new ChunkedArray<>(INITIAL_CAPACITY);
+    }
+
+    private ChunkedQueue(ChunkedArray<E> items, int head, int size) {
+        this.items = items;
+        this.head = head;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(E e) {
+        if (size == items.length())
+            grow();
+        items.set((head + size) & (items.length() - 1), e);
+        size++;
+    }
+
+    // The oldest element, or null if the queue is empty.
+    public E peek() {
+        return size == 0 ? null : items.get(head);
+    }
+
+    // Removes and returns the oldest element, or null if the queue is empty.
+    public E poll() {
+        if (size == 0)
+            return null;
+        E e = items.get(head);
+        items.set(head, null);
+        head = (head + 1) & (items.length() - 1);
+        size--;
+        return e;
+    }
+
+    // The i-th element, counting from the oldest.
+    public E get(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Illegal index: " + i);
+        return items.get((head + i) & (items.length() - 1));
+    }
+
+    public ChunkedQueue<E> copy() {
+        return new ChunkedQueue<>(items.copy(), head, size);
+    }
+
+    private void grow() {
+        ChunkedArray<E> grown = new ChunkedArray<>(2 * items.length());
+        for (int i = 0; i < size; i++)
+            grown.set(i, items.get((head + i) & (items.length() - 1)));
+        items = grown;
+        head = 0;
+    }
+}
@@ -0,0 +1,75 @@
+// Column of doubles kept as int multiples of 1e-6 while every value round-trips
+// through that to the exact same double, which covers coordinates, magnitudes
+// and depths as most input files write them. The first value that does not
+// (more digits, huge values, NaN) turns the column into plain doubles, so a
+// lookup is always a single array read. A column that has only ever held zeros
+// (depth and radius in a watcher file) takes no array at all.
+public class DecimalColumn {
+    private static final double SCALE = 1e6;
+
+    private final int capacity;
+    private IntArrayList scaled;
+    private DoubleArrayList doubles;
+    private int zeros;
+
+    public DecimalColumn(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int size() {
+        if (doubles != null)
+            return doubles.size();
+        return scaled == null ? zeros : scaled.size();
+    }
+
+    public void add(double value) {
+        if (doubles != null) {
+            doubles.add(value);
+            return;
+        }
+        if (scaled == null) {
+            if (Double.doubleToLongBits(value) == 0) {
+                zeros++;
+                return;
+            }
+            scaled = new IntArrayList(Math.max(capacity, zeros + 1));
+            for (int i = 0; i < zeros; i++)
+                scaled.add(0);
+        }
+
+        long k = Math.round(value * SCALE);
+        if (k >= Integer.MIN_VALUE && k <= Integer.MAX_VALUE
+                && Double.doubleToLongBits(k / SCALE) == Double.doubleToLongBits(value)) {
+            scaled.add((int) k);
+        } else {
+            widen();
+            doubles.add(value);
+        }
+    }
+
+    public double get(int row) {
+        if (doubles != null)
+            return doubles.get(row);
+        if (scaled == null) {
+            if (row < 0 || row >= zeros)
+                throw new IndexOutOfBoundsException("Illegal index: " + row);
+            return 0;
+        }
+        return scaled.get(row) / SCALE;
+    }
+
+    public void trimToSize() {
+        if (scaled != null)
+            scaled.trimToSize();
+        if (doubles != null)
+            doubles.trimToSize();
+    }
+
+    private void widen() {
+        int size = scaled.size();
+        doubles = new DoubleArrayList(Math.max(capacity, size + 1));
+        for (int row = 0; row < size; row++)
+            doubles.add(scaled.get(row) / SCALE);
+        scaled = null;
+    }
+}
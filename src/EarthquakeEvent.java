@@ -2,12 +2,20 @@ import java.util.Objects;
 
 public class EarthquakeEvent implements Event {
     public int time;
+    // null for a quake read from an EventStore, which leaves the id in idCode
+    // as it stores it; getId decodes that only when the text is needed
     public String id;
+    public int idCode = EventStore.NO_ID;
     public String place;
+    // the place's id in the simulator's StringDictionary (EarthquakeHistory.NO_PLACE
+    // for none); set by EventStore.getEarthquake
+    public int placeId = EarthquakeHistory.NO_PLACE;
     public double latitude;
     public double longitude;
     public double depth;
     public double magnitude;
+    // byte offset just past this event's record in the earthquake file
+    public long endOffset;
 
     public EarthquakeEvent() {}
 
@@ -21,6 +29,12 @@ public class EarthquakeEvent implements Event {
         this.magnitude = magnitude;
     }
 
+    // The id, decoding idCode against the dictionary of the store the quake was
+    // read from.
+    public String getId(StringDictionary.View strings) {
+        return id != null ? id : EventStore.decodeId(idCode, strings);
+    }
+
     @Override
     public int getTime() {
         return this.time;
@@ -33,11 +47,12 @@ public class EarthquakeEvent implements Event {
         if (!(obj instanceof EarthquakeEvent))
             return false;
         EarthquakeEvent other = (EarthquakeEvent) obj;
-        return Objects.equals(this.id, other.id);
+        // quakes from the same store compare by code
+        return Objects.equals(this.id, other.id) && this.idCode == other.idCode;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Objects.hash(id, idCode);
     }
 }
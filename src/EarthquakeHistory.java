@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+// Append-only record of every earthquake seen, in arrival (time) order.
+// Times, magnitudes and places live in primitive arrays, a place as its id in
+// the simulator's StringDictionary, so an entry holds no object and the text is
+// only decoded for the query-range-largest answer that prints it. A bottom-up
+// segment tree of argmax positions over the magnitudes answers range-max in
+// O(log n), and range-count is the distance between two binary searches on time.
+public class EarthquakeHistory {
+    public static final int NO_PLACE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final StringDictionary strings;
+    private int[] times;
+    private double[] magnitudes;
+    private int[] places;
+    private int size;
+
+    // tree[capacity + i] is leaf i; internal nodes hold the index of their max leaf
+    private int[] tree;
+    private int capacity;
+
+    public EarthquakeHistory(StringDictionary strings) {
+        this.strings = strings;
+        capacity = INITIAL_CAPACITY;
+        times = new int[capacity];
+        magnitudes = new double[capacity];
+        places = new int[capacity];
+        tree = new int[2 * capacity];
+        Arrays.fill(tree, -1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTime(int i) {
+        return times[i];
+    }
+
+    public double getMagnitude(int i) {
+        return magnitudes[i];
+    }
+
+    public String getPlace(int i) {
+        return places[i] == NO_PLACE ? null : strings.get(places[i]);
+    }
+
+    // Read-only view of the current entries. Slots below size are never written
+    // again and grow() copies into fresh arrays, so the view stays valid, and may
+    // be read from another thread, while appends continue.
+    public View view() {
+        return new View(times, magnitudes, places, size, strings.view());
+    }
+
+    public static class View {
+        private final int[] times;
+        private final double[] magnitudes;
+        private final int[] places;
+        private final int size;
+        private final StringDictionary.View strings;
+
+        private View(int[] times, double[] magnitudes, int[] places, int size, StringDictionary.View strings) {
+            this.times = times;
+            this.magnitudes = magnitudes;
+            this.places = places;
+            this.size = size;
+            this.strings = strings;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getTime(int i) {
+            return times[i];
+        }
+
+        public double getMagnitude(int i) {
+            return magnitudes[i];
+        }
+
+        // The place's id in getStrings(), or NO_PLACE.
+        public int getPlaceId(int i) {
+            return places[i];
+        }
+
+        public StringDictionary.View getStrings() {
+            return strings;
+        }
+
+        public String getPlace(int i) {
+            return places[i] == NO_PLACE ? null : strings.get(places[i]);
+        }
+    }
+
+    // Appends a place given as text, interning it; the simulator appends ids.
+    public void append(int time, double magnitude, String place) {
+        append(time, magnitude, place == null ? NO_PLACE : strings.intern(place));
+    }
+
+    // The place is an id in the dictionary this history was created with, or NO_PLACE.
+    public void append(int time, double magnitude, int place) {
+        if (size > 0 && time < times[size - 1])
+            throw new IllegalArgumentException("History must be appended in time order: " + time);
+        if (size == capacity)
+            grow();
+
+        times[size] = time;
+        magnitudes[size] = magnitude;
+        places[size] = place;
+
+        int node = capacity + size;
+        tree[node] = size;
+        size++;
+        for (node >>= 1; node >= 1; node >>= 1) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    // Number of earthquakes with from <= time <= to.
+    public int countBetween(int from, int to) {
+        if (from > to)
+            return 0;
+        return upperBound(to) - lowerBound(from);
+    }
+
+    // Index of the largest earthquake with from <= time <= to, or -1 if none.
+    // Ties go to the earliest one.
+    public int largestBetween(int from, int to) {
+        if (from > to)
+            return -1;
+        int lo = lowerBound(from) + capacity;
+        int hi = upperBound(to) + capacity;
+        int best = -1;
+        while (lo < hi) {
+            if ((lo & 1) == 1)
+                best = better(best, tree[lo++]);
+            if ((hi & 1) == 1)
+                best = better(best, tree[--hi]);
+            lo >>= 1;
+            hi >>= 1;
+        }
+        return best;
+    }
+
+    private int better(int i, int j) {
+        if (i < 0)
+            return j;
+        if (j < 0)
+            return i;
+        if (magnitudes[j] > magnitudes[i] || (magnitudes[j] == magnitudes[i] && j < i))
+            return j;
+        return i;
+    }
+
+    // first index whose time is >= t
+    private int lowerBound(int t) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] < t)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    // first index whose time is > t
+    private int upperBound(int t) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= t)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    private void grow() {
+        capacity *= 2;
+        times = Arrays.copyOf(times, capacity);
+        magnitudes = Arrays.copyOf(magnitudes, capacity);
+        places = Arrays.copyOf(places, capacity);
+
+        tree = new int[2 * capacity];
+        Arrays.fill(tree, -1);
+        for (int i = 0; i < size; i++)
+            tree[capacity + i] = i;
+        for (int node = capacity - 1; node >= 1; node--)
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+    }
+}
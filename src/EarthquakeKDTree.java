@@ -0,0 +1,366 @@
+import java.util.Comparator;
+
+// 2-d tree over the earthquakes currently in the window. Every node carries the
+// largest magnitude in its subtree, so a "largest quake within R" query can skip
+// subtrees that cannot beat the best match found so far.
+// Removals only mark the node; the tree is rebuilt once half of it is dead.
+// Nodes keep their own copy of the coordinates and drop the quake when it is
+// removed, so an expired EarthquakeEvent can be reused for a later quake.
+// Nodes and the rebuild's work arrays are recycled as well.
+// freeze() starts a new epoch: from then on a node made in an earlier epoch
+// is copied instead of changed, and never recycled, since a frozen tree may
+// still reach it.
+public class EarthquakeKDTree {
+    private static final Comparator<EarthquakeEvent> BY_LONGITUDE = new Comparator<EarthquakeEvent>() {
+        @Override
+        public int compare(EarthquakeEvent o1, EarthquakeEvent o2) {
+            return o1.longitude < o2.longitude ? -1 : (o1.longitude > o2.longitude ? 1 : 0);
+        }
+    };
+    private static final Comparator<EarthquakeEvent> BY_LATITUDE = new Comparator<EarthquakeEvent>() {
+        @Override
+        public int compare(EarthquakeEvent o1, EarthquakeEvent o2) {
+            return o1.latitude < o2.latitude ? -1 : (o1.latitude > o2.latitude ? 1 : 0);
+        }
+    };
+
+    private Node root;
+    private int liveCount;
+    private int removedCount;
+    private int epoch;
+    // set by removeRecursive once it has marked the quake's node
+    private boolean found;
+    // recycled nodes, chained through left
+    private Node freeNodes;
+    private EarthquakeEvent[] live = new EarthquakeEvent[16];
+    private EarthquakeEvent[] sortBuffer = new EarthquakeEvent[16];
+
+    private static class Node {
+        EarthquakeEvent quake;
+        double x;
+        double y;
+        Node left;
+        Node right;
+        boolean removed;
+        double maxMagnitude;
+        int epoch;
+    }
+
+    // The tree as it was at freeze(); safe to read from another thread.
+    public static class Frozen {
+        private final Node root;
+        private final int nodeCount;
+
+        private Frozen(Node root, int nodeCount) {
+            this.root = root;
+            this.nodeCount = nodeCount;
+        }
+
+        // Number of nodes, live or removed.
+        public int nodeCount() {
+            return nodeCount;
+        }
+
+        // Copies the node layout in preorder: the quake (for a removed node, a
+        // stand-in carrying only its coordinates), whether it was removed, and
+        // shape bits (1 = has left child, 2 = has right child).
+        public void copyPreorder(EarthquakeEvent[] quakes, boolean[] removed, byte[] shape) {
+            if (root != null)
+                copyPreorderRecursive(root, quakes, removed, shape, 0);
+        }
+
+        private static int copyPreorderRecursive(Node current, EarthquakeEvent[] quakes, boolean[] removed, byte[] shape, int index) {
+            if (current.removed) {
+                EarthquakeEvent placeholder = new EarthquakeEvent();
+                placeholder.longitude = current.x;
+                placeholder.latitude = current.y;
+                quakes[index] = placeholder;
+            } else {
+                quakes[index] = current.quake;
+            }
+            removed[index] = current.removed;
+            shape[index] = (byte) ((current.left != null ? 1 : 0) | (current.right != null ? 2 : 0));
+            int next = index + 1;
+            if (current.left != null)
+                next = copyPreorderRecursive(current.left, quakes, removed, shape, next);
+            if (current.right != null)
+                next = copyPreorderRecursive(current.right, quakes, removed, shape, next);
+            return next;
+        }
+    }
+
+    public EarthquakeKDTree() {
+        root = null;
+    }
+
+    public int size() {
+        return liveCount;
+    }
+
+    public void insert(EarthquakeEvent quake) {
+        root = insertRecursive(root, quake, 0);
+        liveCount++;
+    }
+
+    private Node insertRecursive(Node current, EarthquakeEvent quake, int depth) {
+        if (current == null) {
+            return newNode(quake);
+        }
+
+        // an insert changes every node on its path
+        current = writable(current);
+        if (quake.magnitude > current.maxMagnitude) {
+            current.maxMagnitude = quake.magnitude;
+        }
+
+        if (getCoordinate(quake, depth % 2) < getCoordinate(current, depth % 2)) {
+            current.left = insertRecursive(current.left, quake, depth + 1);
+        } else {
+            current.right = insertRecursive(current.right, quake, depth + 1);
+        }
+        return current;
+    }
+
+    public boolean remove(EarthquakeEvent quake) {
+        found = false;
+        root = removeRecursive(root, quake, 0);
+        if (found) {
+            liveCount--;
+            removedCount++;
+            if (removedCount > liveCount) {
+                rebuild();
+            }
+        }
+        return found;
+    }
+
+    private Node removeRecursive(Node current, EarthquakeEvent quake, int depth) {
+        if (current == null)
+            return null;
+
+        if (current.quake == quake && !current.removed) {
+            current = writable(current);
+            current.removed = true;
+            current.quake = null;
+            found = true;
+        } else if (getCoordinate(quake, depth % 2) < getCoordinate(current, depth % 2)) {
+            Node left = removeRecursive(current.left, quake, depth + 1);
+            if (!found)
+                return current;
+            current = writable(current);
+            current.left = left;
+        } else {
+            Node right = removeRecursive(current.right, quake, depth + 1);
+            if (!found)
+                return current;
+            current = writable(current);
+            current.right = right;
+        }
+
+        updateMaxMagnitude(current);
+        return current;
+    }
+
+    private void updateMaxMagnitude(Node node) {
+        double max = node.removed ? Double.NEGATIVE_INFINITY : node.quake.magnitude;
+        if (node.left != null && node.left.maxMagnitude > max)
+            max = node.left.maxMagnitude;
+        if (node.right != null && node.right.maxMagnitude > max)
+            max = node.right.maxMagnitude;
+        node.maxMagnitude = max;
+    }
+
+    // Largest quake strictly closer than radius to (x, y), or null if none.
+    public EarthquakeEvent largestWithin(double x, double y, double radius) {
+        Node best = largestWithinRecursive(root, x, y, radius, 0, null);
+        return best == null ? null : best.quake;
+    }
+
+    private Node largestWithinRecursive(Node current, double x, double y, double radius, int depth, Node best) {
+        if (current == null)
+            return best;
+        if (best != null && current.maxMagnitude <= best.quake.magnitude)
+            return best;
+
+        if (!current.removed && (best == null || current.quake.magnitude > best.quake.magnitude)) {
+            double distance = Math.sqrt(Math.pow(current.x - x, 2) + Math.pow(current.y - y, 2));
+            if (distance < radius) {
+                best = current;
+            }
+        }
+
+        int axis = depth % 2;
+        double currentCoord = getCoordinate(current, axis);
+        double pointCoord = (axis == 0) ? x : y;
+
+        // visit the side holding the query point first so the bound tightens early
+        if (pointCoord < currentCoord) {
+            best = largestWithinRecursive(current.left, x, y, radius, depth + 1, best);
+            if (pointCoord + radius >= currentCoord) {
+                best = largestWithinRecursive(current.right, x, y, radius, depth + 1, best);
+            }
+        } else {
+            best = largestWithinRecursive(current.right, x, y, radius, depth + 1, best);
+            if (pointCoord - radius < currentCoord) {
+                best = largestWithinRecursive(current.left, x, y, radius, depth + 1, best);
+            }
+        }
+        return best;
+    }
+
+    // Number of nodes, live or removed.
+    public int nodeCount() {
+        return liveCount + removedCount;
+    }
+
+    // The tree as it is now, in O(1).
+    public Frozen freeze() {
+        Frozen frozen = new Frozen(root, liveCount + removedCount);
+        epoch++;
+        return frozen;
+    }
+
+    // Rebuilds exactly the layout Frozen.copyPreorder described, replacing the contents.
+    public void restorePreorder(EarthquakeEvent[] quakes, boolean[] removed, byte[] shape, int count) {
+        root = null;
+        liveCount = 0;
+        removedCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (removed[i])
+                removedCount++;
+            else
+                liveCount++;
+        }
+        if (count > 0)
+            root = restorePreorderRecursive(quakes, removed, shape, new int[1]);
+    }
+
+    private Node restorePreorderRecursive(EarthquakeEvent[] quakes, boolean[] removed, byte[] shape, int[] next) {
+        int index = next[0]++;
+        Node node = newNode(quakes[index]);
+        if (removed[index]) {
+            node.removed = true;
+            node.quake = null;
+        }
+        if ((shape[index] & 1) != 0)
+            node.left = restorePreorderRecursive(quakes, removed, shape, next);
+        if ((shape[index] & 2) != 0)
+            node.right = restorePreorderRecursive(quakes, removed, shape, next);
+        updateMaxMagnitude(node);
+        return node;
+    }
+
+    private void rebuild() {
+        if (live.length < liveCount) {
+            live = new EarthquakeEvent[Math.max(liveCount, 2 * live.length)];
+            sortBuffer = new EarthquakeEvent[live.length];
+        }
+        int count = collectLive(root, live, 0);
+        root = build(live, 0, count, 0);
+        removedCount = 0;
+    }
+
+    // Collects the live quakes in preorder and recycles every node of this epoch.
+    private int collectLive(Node current, EarthquakeEvent[] out, int count) {
+        if (current == null)
+            return count;
+        if (!current.removed)
+            out[count++] = current.quake;
+        Node left = current.left;
+        Node right = current.right;
+        if (current.epoch == epoch) {
+            current.quake = null;
+            current.right = null;
+            current.left = freeNodes;
+            freeNodes = current;
+        }
+        count = collectLive(left, out, count);
+        return collectLive(right, out, count);
+    }
+
+    // Balanced rebuild: the median on the current axis becomes the subtree root.
+    private Node build(EarthquakeEvent[] quakes, int from, int to, int depth) {
+        if (from >= to)
+            return null;
+
+        int axis = depth % 2;
+        sort(quakes, from, to, axis == 0 ? BY_LONGITUDE : BY_LATITUDE);
+        int mid = (from + to) >>> 1;
+        // equal coordinates must go right, as they do on insert
+        while (mid > from && getCoordinate(quakes[mid - 1], axis) == getCoordinate(quakes[mid], axis))
+            mid--;
+
+        Node node = newNode(quakes[mid]);
+        node.left = build(quakes, from, mid, depth + 1);
+        node.right = build(quakes, mid + 1, to, depth + 1);
+        updateMaxMagnitude(node);
+        return node;
+    }
+
+    // Stable merge sort into the reused buffer; being stable, it orders exactly
+    // as Arrays.sort would.
+    private void sort(EarthquakeEvent[] quakes, int from, int to, Comparator<EarthquakeEvent> comparator) {
+        if (to - from < 2)
+            return;
+        int mid = (from + to) >>> 1;
+        sort(quakes, from, mid, comparator);
+        sort(quakes, mid, to, comparator);
+        if (comparator.compare(quakes[mid - 1], quakes[mid]) <= 0)
+            return;
+        System.arraycopy(quakes, from, sortBuffer, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && comparator.compare(sortBuffer[i], sortBuffer[j]) <= 0))
+                quakes[k] = sortBuffer[i++];
+            else
+                quakes[k] = sortBuffer[j++];
+        }
+    }
+
+    private Node newNode(EarthquakeEvent quake) {
+        Node node = allocateNode();
+        node.left = null;
+        node.right = null;
+        node.removed = false;
+        node.quake = quake;
+        node.x = quake.longitude;
+        node.y = quake.latitude;
+        node.maxMagnitude = quake.magnitude;
+        return node;
+    }
+
+    // The node itself if it was made in this epoch, otherwise a copy that the
+    // caller links in its place.
+    private Node writable(Node node) {
+        if (node.epoch == epoch)
+            return node;
+        Node copy = allocateNode();
+        copy.quake = node.quake;
+        copy.x = node.x;
+        copy.y = node.y;
+        copy.left = node.left;
+        copy.right = node.right;
+        copy.removed = node.removed;
+        copy.maxMagnitude = node.maxMagnitude;
+        return copy;
+    }
+
+    private Node allocateNode() {
+        Node node = freeNodes;
+        if (node == null)
+            node = new Node();
+        else
+            freeNodes = node.left;
+        node.epoch = epoch;
+        return node;
+    }
+
+    private static double getCoordinate(Node node, int dimension) {
+        return (dimension == 0) ? node.x : node.y;
+    }
+
+    private static double getCoordinate(EarthquakeEvent quake, int dimension) {
+        return (dimension == 0) ? quake.longitude : quake.latitude;
+    }
+}
@@ -1,51 +1,209 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.LinkedList;
 import java.util.Comparator;
 
 public class EarthquakeNotification {
 
-    public static void main(String[] args) {
-        if (args.length < 2 || args.length > 3) {
-            System.out.println("Usage: java EarthquakeNotification [--all] <watcherFile> <earthquakeFile>");
-            return;
-        }
+    public static final int EARTHQUAKE_WINDOW = 6;
 
+    // Scratch lists reused by the process methods, which run on one thread.
+    private static final ArrayList<Point2D> nearbyWatchers = new ArrayList<>();
+    private static final ArrayList<EarthquakeEvent> largestEarthquakes = new ArrayList<>();
+
+    private static final String USAGE = "Usage: java EarthquakeNotification [--all] [--cooldown <hours>] [--metrics] [--metrics-json <file>] [--metrics-interval <ms>] [--checkpoint <file>] [--checkpoint-interval <events>] [--wal <dir>] [--wal-sync <ms>] [--off-heap] <watcherFile> <earthquakeFile>";
+
+    public static void main(String[] args) {
         boolean printAll = false;
-        String watcherFileName;
-        String earthquakeFileName;
+        int cooldown = 0;
+        boolean metrics = false;
+        String metricsJsonFileName = null;
+        long metricsInterval = 1000;
+        String checkpointFileName = null;
+        int checkpointInterval = 100000;
+        String watcherLogDirectory = null;
+        long watcherLogSyncMillis = 10;
+        boolean offHeap = false;
 
-        if (args.length == 3) {
-            if (args[0].equals("--all")) {
+        int argIndex = 0;
+        while (argIndex < args.length && args[argIndex].startsWith("--")) {
+            if (args[argIndex].equals("--all")) {
                 printAll = true;
-                watcherFileName = args[1];
-                earthquakeFileName = args[2];
+            } else if (args[argIndex].equals("--off-heap")) {
+                offHeap = true;
+            } else if (args[argIndex].equals("--metrics")) {
+                metrics = true;
+            } else if (args[argIndex].equals("--metrics-json") && argIndex + 1 < args.length) {
+                metrics = true;
+                metricsJsonFileName = args[++argIndex];
+            } else if (args[argIndex].equals("--metrics-interval") && argIndex + 1 < args.length) {
+                try {
+                    metricsInterval = Long.parseLong(args[++argIndex]);
+                } catch (NumberFormatException e) {
+                    metricsInterval = -1;
+                }
+                if (metricsInterval <= 0) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            } else if (args[argIndex].equals("--checkpoint") && argIndex + 1 < args.length) {
+                checkpointFileName = args[++argIndex];
+            } else if (args[argIndex].equals("--checkpoint-interval") && argIndex + 1 < args.length) {
+                try {
+                    checkpointInterval = Integer.parseInt(args[++argIndex]);
+                } catch (NumberFormatException e) {
+                    checkpointInterval = -1;
+                }
+                if (checkpointInterval <= 0) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            } else if (args[argIndex].equals("--wal") && argIndex + 1 < args.length) {
+                watcherLogDirectory = args[++argIndex];
+            } else if (args[argIndex].equals("--wal-sync") && argIndex + 1 < args.length) {
+                try {
+                    watcherLogSyncMillis = Long.parseLong(args[++argIndex]);
+                } catch (NumberFormatException e) {
+                    watcherLogSyncMillis = -1;
+                }
+                if (watcherLogSyncMillis < 0) {
+                    System.out.println(USAGE);
+                    return;
+                }
+            } else if (args[argIndex].equals("--cooldown") && argIndex + 1 < args.length) {
+                try {
+                    cooldown = Integer.parseInt(args[++argIndex]);
+                } catch (NumberFormatException e) {
+                    cooldown = -1;
+                }
+                if (cooldown <= 0) {
+                    System.out.println(USAGE);
+                    return;
+                }
             } else {
-                System.out.println("Usage: java EarthquakeNotification [--all] <watcherFile> <earthquakeFile>");
+                System.out.println(USAGE);
                 return;
             }
-        } else {
-            watcherFileName = args[0];
-            earthquakeFileName = args[1];
+            argIndex++;
         }
 
-        List<WatcherEvent> watcherEvents = readWatcherFile(watcherFileName);
-        List<EarthquakeEvent> earthquakeEvents = readEarthquakeFile(earthquakeFileName);
+        // a checkpoint already holds the watcher tree and the input offsets
+        if (args.length - argIndex != 2 || (checkpointFileName != null && watcherLogDirectory != null)) {
+            System.out.println(USAGE);
+            return;
+        }
+        String watcherFileName = args[argIndex];
+        String earthquakeFileName = args[argIndex + 1];
 
-        List<Event> events = new ArrayList<>();
+        // Output is buffered in full rather than flushed per line; the hook
+        // flushes it on every exit, including the System.exit error paths.
+        if (!metrics)
+            System.setOut(new BufferedPrintStream(new FileOutputStream(FileDescriptor.out), 1 << 16));
+        else
+            Metrics.countOutputBytes();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                System.out.flush();
+            }
+        }));
 
-        for (int i = 0; i < watcherEvents.size(); i++) {
-            events.add(events.size(), watcherEvents.get(i));
+        if (metrics) {
+            Metrics.enabled = true;
+            if (metricsJsonFileName != null) {
+                try {
+                    Metrics.startSnapshots(metricsJsonFileName, metricsInterval);
+                } catch (IOException e) {
+                    System.out.println("Error opening metrics file: " + e.getMessage());
+                    System.exit(1);
+                }
+            }
         }
 
-        for (int i = 0; i < earthquakeEvents.size(); i++) {
-            events.add(events.size(), earthquakeEvents.get(i));
+        // With --checkpoint, an existing snapshot is loaded and only the input
+        // after the offsets it recorded is read and replayed, less the events
+        // past them the snapshot had applied already (see InputProgress).
+        SimulationSnapshot resume = null;
+        Checkpointer checkpointer = null;
+        if (checkpointFileName != null) {
+            File checkpointFile = new File(checkpointFileName);
+            if (checkpointFile.exists()) {
+                try {
+                    resume = SimulationSnapshot.read(checkpointFile);
+                } catch (IOException e) {
+                    System.out.println("Error reading checkpoint file: " + e.getMessage());
+                    System.exit(1);
+                }
+            }
+            checkpointer = new Checkpointer(checkpointFile);
+        }
+
+        // both files share one dictionary for names and places
+        StringDictionary strings = new StringDictionary();
+        // off-heap nodes refer to watcher names by their id in the shared dictionary
+        WatcherTree watcherTree = offHeap ? new OffHeapKDTree2D(strings) : new KDTree2D();
+        WatcherTierIndex watcherIndex = new WatcherTierIndex();
+
+        // With --wal, the watchers are recovered from the log, which also
+        // records how much of the watcher file they cover, the same way a
+        // checkpoint does; only the rest of the file is read.
+        WatcherLog watcherLog = null;
+        if (watcherLogDirectory != null) {
+            watcherLog = new WatcherLog(new File(watcherLogDirectory), watcherLogSyncMillis);
+            try {
+                watcherLog.recover(watcherTree, watcherIndex);
+            } catch (IOException e) {
+                System.out.println("Error opening watcher log: " + e.getMessage());
+                System.exit(1);
+            }
         }
 
-        sortEventsByTime(events);
+        long watcherOffset = 0;
+        int watcherEventsRead = 0;
+        int watcherSkip = 0;
+        long earthquakeOffset = 0;
+        int earthquakeEventsRead = 0;
+        int earthquakeSkip = 0;
+        if (resume != null) {
+            watcherOffset = resume.watcherOffset;
+            watcherEventsRead = resume.watcherEventsRead;
+            watcherSkip = resume.watcherSkip;
+            earthquakeOffset = resume.earthquakeOffset;
+            earthquakeEventsRead = resume.earthquakeEventsRead;
+            earthquakeSkip = resume.earthquakeSkip;
+        } else if (watcherLog != null) {
+            watcherOffset = watcherLog.getWatcherOffset();
+            watcherEventsRead = watcherLog.getWatcherEventsRead();
+            watcherSkip = watcherLog.getWatcherSkip();
+        }
+        EventStore watcherEvents = readWatcherStore(watcherFileName, watcherOffset, watcherEventsRead, strings).sortedByTime();
+        EventStore earthquakeEvents = readEarthquakeStore(earthquakeFileName, earthquakeOffset, strings).sortedByTime();
+        strings.trimToSize();
+        InputProgress watcherInput = null;
+        InputProgress earthquakeInput = null;
+        try {
+            watcherInput = new InputProgress(watcherEvents, watcherOffset, watcherEventsRead, watcherSkip);
+            earthquakeInput = new InputProgress(earthquakeEvents, earthquakeOffset, earthquakeEventsRead, earthquakeSkip);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error resuming the input files: " + e.getMessage());
+            System.exit(1);
+        }
+
+        NotificationThrottle throttle = null;
+        if (cooldown > 0) {
+            if (resume != null && resume.throttle != null && resume.throttle.getCooldown() == cooldown)
+                throttle = resume.throttle;
+            else
+                throttle = new NotificationThrottle(cooldown);
+        }
+        simulateEvents(watcherInput, earthquakeInput, watcherTree, watcherIndex, printAll, throttle, resume, checkpointer, checkpointInterval, watcherLog);
 
-        simulateEvents(events, printAll);
+        if (metrics) {
+            System.out.flush();
+            Metrics.stopSnapshots();
+            Metrics.printSummary(System.err);
+        }
     }
 
     public static void sortEventsByTime(List<Event> events) {
@@ -62,45 +220,91 @@ public class EarthquakeNotification {
     }
 
     public static List<WatcherEvent> readWatcherFile(String fileName) {
-        List<WatcherEvent> watcherEvents = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+        EventStore store = readWatcherStore(fileName, 0, 0, new StringDictionary());
+        List<WatcherEvent> watcherEvents = new ArrayList<>(Math.max(1, store.size()));
+        for (int i = 0; i < store.size(); i++)
+            watcherEvents.add((WatcherEvent) store.get(i));
+        return watcherEvents;
+    }
+
+    // Reads the watcher file from a byte offset; firstIndex is the number of
+    // watcher events before that offset, which keeps watcher ids stable on resume.
+    public static EventStore readWatcherStore(String fileName, long startOffset, int firstIndex, StringDictionary strings) {
+        EventStore watcherEvents = new EventStore(strings);
+        long start = System.nanoTime();
+        long lines = 0;
+        try (OffsetLineReader br = new OffsetLineReader(fileName, startOffset)) {
             String line;
             while ((line = br.readLine()) != null) {
+                lines++;
                 line = line.trim().replaceAll("\\s+", " ");
                 if (line.isEmpty()) continue;
 
                 String[] parts = line.split(" ");
                 int time = Integer.parseInt(parts[0]);
                 String action = parts[1];
+                WatcherEvent watcherEvent = null;
 
                 if (action.equals("add")) {
                     double longitude = Double.parseDouble(parts[2]);
                     double latitude = Double.parseDouble(parts[3]);
                     String name = parts[4];
-                    watcherEvents.add(watcherEvents.size(), new WatcherEvent(time, action, longitude, latitude, name));
+                    WatcherEvent addEvent = new WatcherEvent(time, action, longitude, latitude, name);
+                    addEvent.watcherId = firstIndex + watcherEvents.size();
+                    watcherEvent = addEvent;
                 } else if (action.equals("delete")) {
                     String name = parts[2];
-                    watcherEvents.add(watcherEvents.size(), new WatcherEvent(time, action, name));
+                    watcherEvent = new WatcherEvent(time, action, name);
                 } else if (action.equals("query-largest")) {
-                    watcherEvents.add(watcherEvents.size(), new WatcherEvent(time, action));
+                    watcherEvent = new WatcherEvent(time, action);
+                } else if (action.equals("query-topk")) {
+                    int count = Integer.parseInt(parts[2]);
+                    watcherEvent = new WatcherEvent(time, action, count);
+                } else if (action.equals("query-largest-near")) {
+                    double longitude = Double.parseDouble(parts[2]);
+                    double latitude = Double.parseDouble(parts[3]);
+                    double radius = Double.parseDouble(parts[4]);
+                    watcherEvent = new WatcherEvent(time, action, longitude, latitude, radius);
+                } else if (action.equals("query-range-largest") || action.equals("query-range-count")) {
+                    int fromTime = Integer.parseInt(parts[2]);
+                    int toTime = Integer.parseInt(parts[3]);
+                    watcherEvent = new WatcherEvent(time, action, fromTime, toTime);
                 } else {
                     System.out.println("Unknown action: " + action);
                 }
+                if (watcherEvent != null) {
+                    watcherEvent.endOffset = br.getOffset();
+                    watcherEvents.add(watcherEvent);
+                }
             }
         } catch (IOException e) {
             System.out.println("Error reading watcher file: " + e.getMessage());
             System.exit(1);
         }
+        if (Metrics.enabled)
+            Metrics.recordParse(lines, new File(fileName).length() - startOffset, System.nanoTime() - start);
 
+        watcherEvents.trimToSize();
         return watcherEvents;
     }
 
     public static List<EarthquakeEvent> readEarthquakeFile(String fileName) {
-        List<EarthquakeEvent> earthquakeEvents = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
+        EventStore store = readEarthquakeStore(fileName, 0, new StringDictionary());
+        List<EarthquakeEvent> earthquakeEvents = new ArrayList<>(Math.max(1, store.size()));
+        for (int i = 0; i < store.size(); i++)
+            earthquakeEvents.add(store.getEarthquake(i));
+        return earthquakeEvents;
+    }
+
+    public static EventStore readEarthquakeStore(String fileName, long startOffset, StringDictionary strings) {
+        EventStore earthquakeEvents = new EventStore(strings);
+        long start = System.nanoTime();
+        long lines = 0;
+        try (OffsetLineReader br = new OffsetLineReader(fileName, startOffset)) {
             String line;
             EarthquakeEvent currentEvent = null;
             while ((line = br.readLine()) != null) {
+                lines++;
                 line = line.trim();
                 if (line.startsWith("<earthquake>")) {
                     currentEvent = new EarthquakeEvent();
@@ -129,7 +333,8 @@ public class EarthquakeNotification {
                     currentEvent.magnitude = magnitude;
                 } else if (line.startsWith("</earthquake>")) {
                     if (currentEvent != null) {
-                        earthquakeEvents.add(earthquakeEvents.size(), currentEvent);
+                        currentEvent.endOffset = br.getOffset();
+                        earthquakeEvents.add(currentEvent);
                         currentEvent = null;
                     }
                 }
@@ -138,58 +343,195 @@ public class EarthquakeNotification {
             System.out.println("Error reading earthquake file: " + e.getMessage());
             System.exit(1);
         }
+        if (Metrics.enabled)
+            Metrics.recordParse(lines, new File(fileName).length() - startOffset, System.nanoTime() - start);
+        earthquakeEvents.trimToSize();
         return earthquakeEvents;
     }
 
     public static void simulateEvents(List<Event> events, boolean printAll) {
-        KDTree2D watcherTree = new KDTree2D();
+        simulateEvents(events, printAll, null);
+    }
+
+    // Runs the events in list order.
+    public static void simulateEvents(List<Event> events, boolean printAll, NotificationThrottle throttle) {
+        StringDictionary strings = new StringDictionary();
+        EventStore store = new EventStore(strings, Math.max(1, events.size()));
+        for (int i = 0; i < events.size(); i++)
+            store.add(events.get(i));
+        simulateEvents(new InputProgress(store, 0, 0, 0), new InputProgress(new EventStore(strings), 0, 0, 0), new KDTree2D(), new WatcherTierIndex(),
+                printAll, throttle, null, null, 0, null);
+    }
 
-        LinkedList<EarthquakeEvent> earthquakeQueue = new LinkedList<>();
+    // Runs the rest of two time-sorted event stores merged by time, taking
+    // watchers first on equal times (the order a stable sort of both files would
+    // give), from the rows each InputProgress has not applied yet and on top of
+    // the resumed state (if any), with watchers kept in the given tree and
+    // index. Those are empty, or hold what the (already recovered) watcher log
+    // replayed. Every checkpointInterval events a snapshot is captured between two
+    // events and handed to the checkpointer; a final one is taken at the end.
+    // With a watcher log, every watcher command is logged after it has been applied.
+    public static void simulateEvents(InputProgress watcherInput, InputProgress earthquakeInput, WatcherTree watcherTree, WatcherTierIndex watcherIndex, boolean printAll,
+                                      NotificationThrottle throttle, SimulationSnapshot resume, Checkpointer checkpointer, int checkpointInterval,
+                                      WatcherLog watcherLog) {
+        EarthquakeKDTree earthquakeTree = new EarthquakeKDTree();
+        EarthquakeHistory history = new EarthquakeHistory(earthquakeInput.getStore().getStrings());
+
+        ChunkedQueue<EarthquakeEvent> earthquakeQueue = new ChunkedQueue<>();
+        // expired quakes, reused for later ones; not when checkpointing, as a
+        // captured snapshot still refers to the quakes it saw in the window
+        ArrayList<EarthquakeEvent> freeEarthquakes = checkpointer == null ? new ArrayList<>() : null;
         MaxHeap<EarthquakeEvent> magnitudeHeap = new MaxHeap<>(new Comparator<EarthquakeEvent>() {
             @Override
             public int compare(EarthquakeEvent o1, EarthquakeEvent o2) {
-                return Double.compare(o2.magnitude, o1.magnitude);
+                return Double.compare(o1.magnitude, o2.magnitude);
             }
         });
 
         int currentTime = 0;
+        if (resume != null) {
+            resume.restore(watcherTree, watcherIndex, earthquakeQueue, magnitudeHeap, earthquakeTree, history);
+            currentTime = resume.currentTime;
+        }
+        // watcher commands are not retained, so one flyweight serves them all
+        WatcherEvent watcherEvent = new WatcherEvent();
+        EventStore first = watcherInput.getStore();
+        EventStore second = earthquakeInput.getStore();
+        int firstRow = watcherInput.getApplied();
+        int secondRow = earthquakeInput.getApplied();
+        int total = first.size() - firstRow + second.size() - secondRow;
+        for (int i = 0; i < total; i++) {
+            EventStore store;
+            int row;
+            if (secondRow == second.size() || (firstRow < first.size() && first.getTime(firstRow) <= second.getTime(secondRow))) {
+                store = first;
+                row = firstRow++;
+            } else {
+                store = second;
+                row = secondRow++;
+            }
+            // simulateEvents(List) keeps both kinds in the first store
+            InputProgress input = store == first ? watcherInput : earthquakeInput;
+            boolean isEarthquake = store.getKind(row) == EventStore.EARTHQUAKE;
+            long start = Metrics.enabled ? System.nanoTime() : 0;
+            boolean newTick = i == 0 || store.getTime(row) != currentTime;
+            currentTime = store.getTime(row);
 
-        for (int i = 0; i < events.size(); i++) {
-            Event event = events.get(i);
-            currentTime = event.getTime();
+            int expired = removeOldEarthquakes(earthquakeQueue, magnitudeHeap, earthquakeTree, currentTime, freeEarthquakes);
+            if (throttle != null)
+                throttle.expire(currentTime);
 
-            removeOldEarthquakes(earthquakeQueue, magnitudeHeap, currentTime);
+            if (!isEarthquake) {
+                store.getWatcherEvent(row, watcherEvent);
+                processWatcherEvent(watcherEvent, watcherTree, watcherIndex, magnitudeHeap, earthquakeTree, history, throttle);
+                input.apply(row);
+                if (watcherLog != null)
+                    logWatcherEvent(watcherEvent, input, watcherLog, watcherTree);
+            } else {
+                EarthquakeEvent earthquakeEvent = freeEarthquakes == null || freeEarthquakes.isEmpty()
+                        ? store.getEarthquake(row)
+                        : store.getEarthquake(row, freeEarthquakes.remove(freeEarthquakes.size() - 1));
+                processEarthquakeEvent(earthquakeEvent, watcherTree, watcherIndex, earthquakeQueue, magnitudeHeap, earthquakeTree, history, printAll, throttle);
+                input.apply(row);
+            }
+
+            // output is flushed before each snapshot, so a resumed run may repeat
+            // the lines printed after the last snapshot but never loses any
+            if (checkpointer != null && (i + 1) % checkpointInterval == 0) {
+                System.out.flush();
+                checkpointer.submit(SimulationSnapshot.capture(currentTime, watcherInput, earthquakeInput,
+                        watcherTree, earthquakeQueue, magnitudeHeap, earthquakeTree, history, throttle));
+            }
 
-            if (event instanceof WatcherEvent) {
-                processWatcherEvent((WatcherEvent) event, watcherTree, magnitudeHeap);
-            } else if (event instanceof EarthquakeEvent) {
-                processEarthquakeEvent((EarthquakeEvent) event, watcherTree, earthquakeQueue, magnitudeHeap, printAll);
+            if (Metrics.enabled) {
+                Metrics.simulateNanos.record(System.nanoTime() - start);
+                if (isEarthquake)
+                    Metrics.earthquakeEvents.increment();
+                else
+                    Metrics.watcherEvents.increment();
+                Metrics.heapSize.record(magnitudeHeap.size());
+                if (newTick)
+                    Metrics.expiriesPerTick.record(expired);
             }
         }
+
+        if (watcherLog != null) {
+            try {
+                watcherLog.close();
+            } catch (IOException e) {
+                System.out.println("Error writing watcher log: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        if (checkpointer != null) {
+            System.out.flush();
+            checkpointer.close(SimulationSnapshot.capture(currentTime, watcherInput, earthquakeInput,
+                    watcherTree, earthquakeQueue, magnitudeHeap, earthquakeTree, history, throttle));
+        }
+    }
+
+    private static void logWatcherEvent(WatcherEvent event, InputProgress input, WatcherLog watcherLog, WatcherTree watcherTree) {
+        try {
+            watcherLog.append(event, input);
+            if (watcherLog.shouldCompact())
+                watcherLog.compact(watcherTree);
+        } catch (IOException e) {
+            System.out.println("Error writing watcher log: " + e.getMessage());
+            System.exit(1);
+        }
     }
 
-    public static void removeOldEarthquakes(LinkedList<EarthquakeEvent> earthquakeQueue, MaxHeap<EarthquakeEvent> magnitudeHeap, int currentTime) {
+    public static int removeOldEarthquakes(ChunkedQueue<EarthquakeEvent> earthquakeQueue, MaxHeap<EarthquakeEvent> magnitudeHeap, EarthquakeKDTree earthquakeTree, int currentTime) {
+        return removeOldEarthquakes(earthquakeQueue, magnitudeHeap, earthquakeTree, currentTime, null);
+    }
+
+    // Same as above; expired quakes are also added to recycled when it is not null.
+    public static int removeOldEarthquakes(ChunkedQueue<EarthquakeEvent> earthquakeQueue, MaxHeap<EarthquakeEvent> magnitudeHeap, EarthquakeKDTree earthquakeTree, int currentTime,
+                                           List<EarthquakeEvent> recycled) {
+        WindowExpiryEvent event = new WindowExpiryEvent();
+        event.begin();
+        int expired = 0;
         while (!earthquakeQueue.isEmpty()) {
             EarthquakeEvent eq = earthquakeQueue.peek();
-            if (currentTime - eq.time >= 6) {
+            if (currentTime - eq.time >= EARTHQUAKE_WINDOW) {
                 earthquakeQueue.poll();
                 magnitudeHeap.remove(eq);
+                earthquakeTree.remove(eq);
+                if (recycled != null)
+                    recycled.add(eq);
+                expired++;
             } else {
                 break;
             }
         }
+        if (Metrics.enabled)
+            Metrics.expiredEarthquakes.add(expired);
+        if (expired > 0 && event.shouldCommit()) {
+            event.time = currentTime;
+            event.expired = expired;
+            event.remaining = earthquakeQueue.size();
+            event.commit();
+        }
+        return expired;
     }
 
-    public static void processWatcherEvent(WatcherEvent event, KDTree2D watcherTree, MaxHeap<EarthquakeEvent> magnitudeHeap) {
+    public static void processWatcherEvent(WatcherEvent event, WatcherTree watcherTree, WatcherTierIndex watcherIndex, MaxHeap<EarthquakeEvent> magnitudeHeap, EarthquakeKDTree earthquakeTree, EarthquakeHistory history, NotificationThrottle throttle) {
+        // the frequent lines are printed piece by piece, which allocates nothing
         if (event.action.equals("add")) {
-            Point2D point = new Point2D(event.longitude, event.latitude, event.name);
-            watcherTree.insert(point);
-            System.out.println(event.name + " is added to the watcher-tree");
+            watcherTree.insert(event.longitude, event.latitude, event.name, event.watcherId);
+            watcherIndex.add(event.longitude, event.latitude);
+            System.out.print(event.name);
+            System.out.println(" is added to the watcher-tree");
             System.out.println(); // <-- Boş satır eklendi
         } else if (event.action.equals("delete")) {
-            boolean removed = watcherTree.removeByName(event.name);
-            if (removed) {
-                System.out.println(event.name + " is removed from the watcher-tree");
+            Point2D point = watcherTree.searchByName(event.name);
+            if (point != null) {
+                watcherTree.remove(point);
+                watcherIndex.remove(point.getX(), point.getY());
+                if (throttle != null)
+                    throttle.remove(point.getId());
+                System.out.print(event.name);
+                System.out.println(" is removed from the watcher-tree");
                 System.out.println(); // <-- Boş satır eklendi
             }
         } else if (event.action.equals("query-largest")) {
@@ -198,32 +540,112 @@ public class EarthquakeNotification {
             } else {
                 EarthquakeEvent largestEq = magnitudeHeap.peek();
                 System.out.println("Largest earthquake in the past 6 hours:");
-                System.out.println("Magnitude " + largestEq.magnitude + " at " + largestEq.place );
+                printMagnitudeLine(largestEq);
             }
             System.out.println(); // <-- Boş satır eklendi
+        } else if (event.action.equals("query-topk")) {
+            List<EarthquakeEvent> largest = largestEarthquakes;
+            magnitudeHeap.topK(event.count, largest);
+            if (largest.isEmpty()) {
+                System.out.println("No records");
+            } else {
+                System.out.print("Largest ");
+                System.out.print(largest.size());
+                System.out.println(" earthquakes in the past 6 hours:");
+                for (int i = 0; i < largest.size(); i++)
+                    printMagnitudeLine(largest.get(i));
+            }
+            System.out.println();
+        } else if (event.action.equals("query-largest-near")) {
+            EarthquakeEvent largestEq = earthquakeTree.largestWithin(event.longitude, event.latitude, event.radius);
+            if (largestEq == null) {
+                System.out.println("No records");
+            } else {
+                System.out.println("Largest earthquake within " + event.radius + " of (" + event.longitude + ", " + event.latitude + ") in the past 6 hours:");
+                System.out.println("Magnitude " + largestEq.magnitude + " at " + largestEq.place);
+            }
+            System.out.println();
+        } else if (event.action.equals("query-range-largest")) {
+            int largest = history.largestBetween(event.fromTime, event.toTime);
+            if (largest < 0) {
+                System.out.println("No records");
+            } else {
+                System.out.println("Largest earthquake between " + event.fromTime + " and " + event.toTime + ":");
+                System.out.println("Magnitude " + history.getMagnitude(largest) + " at " + history.getPlace(largest));
+            }
+            System.out.println();
+        } else if (event.action.equals("query-range-count")) {
+            int count = history.countBetween(event.fromTime, event.toTime);
+            System.out.println(count + " earthquakes between " + event.fromTime + " and " + event.toTime);
+            System.out.println();
         }
     }
 
-    public static void processEarthquakeEvent(EarthquakeEvent event, KDTree2D watcherTree, LinkedList<EarthquakeEvent> earthquakeQueue, MaxHeap<EarthquakeEvent> magnitudeHeap, boolean printAll) {
+    private static void printMagnitudeLine(EarthquakeEvent eq) {
+        System.out.print("Magnitude ");
+        System.out.print(eq.magnitude);
+        System.out.print(" at ");
+        System.out.println(eq.place);
+    }
+
+    public static void processEarthquakeEvent(EarthquakeEvent event, WatcherTree watcherTree, WatcherTierIndex watcherIndex, ChunkedQueue<EarthquakeEvent> earthquakeQueue, MaxHeap<EarthquakeEvent> magnitudeHeap, EarthquakeKDTree earthquakeTree, EarthquakeHistory history, boolean printAll, NotificationThrottle throttle) {
+        QuakeProcessedEvent processed = new QuakeProcessedEvent();
+        processed.begin();
+
         earthquakeQueue.add(event);
         magnitudeHeap.insert(event);
+        earthquakeTree.insert(event);
+        history.append(event.time, event.magnitude, event.placeId);
 
         if (printAll) {
-            System.out.println("Earthquake " + event.place + " is inserted into the earthquake-queue");
+            System.out.print("Earthquake ");
+            System.out.print(event.place);
+            System.out.println(" is inserted into the earthquake-queue");
             System.out.println(); // <-- Boş satır eklendi
         }
 
-        double notificationDistance = 2 * Math.pow(event.magnitude, 3);
-        List<Point2D> nearbyWatchers = (List<Point2D>) watcherTree.rangeQueryCircular(event.longitude, event.latitude, notificationDistance);
+        double notificationDistance = WatcherTierIndex.notificationDistance(event.magnitude);
+        if (!watcherIndex.mayHaveWatchersWithin(event.longitude, event.latitude, event.magnitude)) {
+            if (Metrics.enabled)
+                Metrics.prunedEarthquakes.increment();
+            if (processed.shouldCommit()) {
+                processed.time = event.time;
+                processed.magnitude = event.magnitude;
+                processed.radius = notificationDistance;
+                processed.pruned = true;
+                processed.commit();
+            }
+            return;
+        }
+
+        watcherTree.rangeQueryCircular(event.longitude, event.latitude, notificationDistance, nearbyWatchers);
+        if (Metrics.enabled)
+            Metrics.recordRangeQuery(watcherTree.getLastNodesVisited(), nearbyWatchers.size());
 
+        int notified = 0;
         for (int i = 0; i < nearbyWatchers.size(); i++) {
             Point2D watcher = nearbyWatchers.get(i);
             double distance = Math.sqrt(Math.pow(watcher.getX() - event.longitude, 2) + Math.pow(watcher.getY() - event.latitude, 2));
-            if (distance < notificationDistance) {
-                System.out.println("Earthquake " + event.place + " is close to " + watcher.getName());
+            if (distance < notificationDistance && (throttle == null || throttle.shouldNotify(watcher.getId(), event.time, event.magnitude))) {
+                System.out.print("Earthquake ");
+                System.out.print(event.place);
+                System.out.print(" is close to ");
+                System.out.println(watcher.getName());
+                notified++;
                 System.out.println(); // <-- Boş satır eklendi
             }
         }
+        if (Metrics.enabled)
+            Metrics.notifications.add(notified);
+
+        if (processed.shouldCommit()) {
+            processed.time = event.time;
+            processed.magnitude = event.magnitude;
+            processed.radius = notificationDistance;
+            processed.nodesVisited = watcherTree.getLastNodesVisited();
+            processed.watchersNotified = notified;
+            processed.commit();
+        }
     }
 
 }
@@ -0,0 +1,306 @@
+// Columnar store for parsed events: one row per event in parallel primitive
+// columns, with names and places interned in a shared StringDictionary. The
+// simulator walks rows by index and only materialises what it keeps: an
+// EarthquakeEvent per quake while it is in the window, and a single reused
+// WatcherEvent for watcher commands.
+//
+// A row usually takes at most 33 bytes: kind (1), time (4), x / y / value /
+// depth as scaled decimals (4 each), ref (4), arg (4) and the end offset in the
+// input file (4). A decimal column that meets a value with more digits holds
+// plain doubles (8) instead. Watcher files never fill depth, and fill value
+// only for query-largest-near, so their rows usually take 25.
+// What ref, arg and value hold depends on the kind:
+//   EARTHQUAKE           ref = place, arg = numeric id (or ~dictionary id), value = magnitude
+//   WATCHER_ADD          ref = name, arg = watcher id
+//   WATCHER_DELETE       ref = name
+//   QUERY_TOPK           arg = count
+//   QUERY_LARGEST_NEAR   value = radius
+//   QUERY_RANGE_*        arg = from time, ref = to time
+// A store sorted out of file order keeps, per row, the row it had in file
+// order, and shares the end offsets of the unsorted store, which stay in file
+// order; InputProgress needs both to tell how much of the file has been applied.
+public class EventStore {
+    public static final byte EARTHQUAKE = 0;
+    public static final byte WATCHER_ADD = 1;
+    public static final byte WATCHER_DELETE = 2;
+    public static final byte QUERY_LARGEST = 3;
+    public static final byte QUERY_TOPK = 4;
+    public static final byte QUERY_LARGEST_NEAR = 5;
+    public static final byte QUERY_RANGE_LARGEST = 6;
+    public static final byte QUERY_RANGE_COUNT = 7;
+    public static final int NO_ID = Integer.MIN_VALUE;
+
+    private static final String[] ACTIONS = {
+            null, "add", "delete", "query-largest", "query-topk", "query-largest-near", "query-range-largest", "query-range-count"
+    };
+    private static final int NO_STRING = -1;
+
+    private final StringDictionary strings;
+    private final ByteArrayList kinds;
+    private final IntArrayList times;
+    private final DecimalColumn xs;
+    private final DecimalColumn ys;
+    private final DecimalColumn values;
+    private final DecimalColumn depths;
+    private final IntArrayList refs;
+    private final IntArrayList args;
+    private final OffsetColumn endOffsets;
+    // null while the rows are in file order
+    private final int[] fileRows;
+
+    public EventStore(StringDictionary strings) {
+        this(strings, ArrayList.CAPACITY);
+    }
+
+    public EventStore(StringDictionary strings, int capacity) {
+        this(strings, capacity, new OffsetColumn(capacity), null);
+    }
+
+    private EventStore(StringDictionary strings, int capacity, OffsetColumn endOffsets, int[] fileRows) {
+        this.strings = strings;
+        kinds = new ByteArrayList(capacity);
+        times = new IntArrayList(capacity);
+        xs = new DecimalColumn(capacity);
+        ys = new DecimalColumn(capacity);
+        values = new DecimalColumn(capacity);
+        depths = new DecimalColumn(capacity);
+        refs = new IntArrayList(capacity);
+        args = new IntArrayList(capacity);
+        this.endOffsets = endOffsets;
+        this.fileRows = fileRows;
+    }
+
+    public StringDictionary getStrings() {
+        return strings;
+    }
+
+    public int size() {
+        return kinds.size();
+    }
+
+    public boolean isEmpty() {
+        return kinds.isEmpty();
+    }
+
+    public byte getKind(int row) {
+        return kinds.get(row);
+    }
+
+    public int getTime(int row) {
+        return times.get(row);
+    }
+
+    public long getEndOffset(int row) {
+        return endOffsets.get(getFileRow(row));
+    }
+
+    // The row's position in the file, counting from the first row read.
+    public int getFileRow(int row) {
+        if (fileRows == null) {
+            if (row < 0 || row >= kinds.size())
+                throw new IndexOutOfBoundsException("Illegal index: " + row);
+            return row;
+        }
+        return fileRows[row];
+    }
+
+    // End offset of the event at the given file row.
+    public long getFileEndOffset(int fileRow) {
+        return endOffsets.get(fileRow);
+    }
+
+    public void add(Event event) {
+        if (event instanceof EarthquakeEvent) {
+            EarthquakeEvent quake = (EarthquakeEvent) event;
+            addRow(EARTHQUAKE, quake.time, quake.longitude, quake.latitude, quake.magnitude, quake.depth,
+                    intern(quake.place), encodeId(quake.id), quake.endOffset);
+            return;
+        }
+
+        WatcherEvent watcher = (WatcherEvent) event;
+        byte kind = kindOf(watcher.action);
+        if (kind == WATCHER_ADD)
+            addRow(kind, watcher.time, watcher.longitude, watcher.latitude, 0, 0, intern(watcher.name), watcher.watcherId, watcher.endOffset);
+        else if (kind == WATCHER_DELETE)
+            addRow(kind, watcher.time, 0, 0, 0, 0, intern(watcher.name), 0, watcher.endOffset);
+        else if (kind == QUERY_TOPK)
+            addRow(kind, watcher.time, 0, 0, 0, 0, NO_STRING, watcher.count, watcher.endOffset);
+        else if (kind == QUERY_LARGEST_NEAR)
+            addRow(kind, watcher.time, watcher.longitude, watcher.latitude, watcher.radius, 0, NO_STRING, 0, watcher.endOffset);
+        else if (kind == QUERY_RANGE_LARGEST || kind == QUERY_RANGE_COUNT)
+            addRow(kind, watcher.time, 0, 0, 0, 0, watcher.toTime, watcher.fromTime, watcher.endOffset);
+        else
+            addRow(kind, watcher.time, 0, 0, 0, 0, NO_STRING, 0, watcher.endOffset);
+    }
+
+    private void addRow(byte kind, int time, double x, double y, double value, double depth, int ref, int arg, long endOffset) {
+        addColumns(kind, time, x, y, value, depth, ref, arg);
+        endOffsets.add(endOffset);
+    }
+
+    private void addColumns(byte kind, int time, double x, double y, double value, double depth, int ref, int arg) {
+        kinds.add(kind);
+        times.add(time);
+        xs.add(x);
+        ys.add(y);
+        values.add(value);
+        depths.add(depth);
+        refs.add(ref);
+        args.add(arg);
+    }
+
+    public EarthquakeEvent getEarthquake(int row) {
+        return getEarthquake(row, new EarthquakeEvent());
+    }
+
+    // Overwrites every field of the given event with this row; the simulator
+    // passes in events recycled from the window. The id is left encoded in
+    // idCode, as decoding it would build a string per quake that only a
+    // snapshot ever reads.
+    public EarthquakeEvent getEarthquake(int row, EarthquakeEvent into) {
+        into.time = times.get(row);
+        into.id = null;
+        into.idCode = args.get(row);
+        into.placeId = refs.get(row);
+        into.place = string(into.placeId);
+        into.longitude = xs.get(row);
+        into.latitude = ys.get(row);
+        into.depth = depths.get(row);
+        into.magnitude = values.get(row);
+        into.endOffset = getEndOffset(row);
+        return into;
+    }
+
+    // Overwrites every field of the given flyweight with this row.
+    public void getWatcherEvent(int row, WatcherEvent into) {
+        byte kind = kinds.get(row);
+        into.time = times.get(row);
+        into.action = ACTIONS[kind];
+        into.longitude = xs.get(row);
+        into.latitude = ys.get(row);
+        into.radius = values.get(row);
+        into.endOffset = getEndOffset(row);
+        boolean range = kind == QUERY_RANGE_LARGEST || kind == QUERY_RANGE_COUNT;
+        into.name = range ? null : string(refs.get(row));
+        into.watcherId = kind == WATCHER_ADD ? args.get(row) : 0;
+        into.count = kind == QUERY_TOPK ? args.get(row) : 0;
+        into.fromTime = range ? args.get(row) : 0;
+        into.toTime = range ? refs.get(row) : 0;
+    }
+
+    public Event get(int row) {
+        if (kinds.get(row) == EARTHQUAKE)
+            return getEarthquake(row);
+        WatcherEvent watcher = new WatcherEvent();
+        getWatcherEvent(row, watcher);
+        return watcher;
+    }
+
+    public boolean isSortedByTime() {
+        for (int row = 1; row < times.size(); row++) {
+            if (times.get(row) < times.get(row - 1))
+                return false;
+        }
+        return true;
+    }
+
+    // Stable sort by time, so equal times keep their input order, as with
+    // EarthquakeNotification.sortEventsByTime. Returns this if already sorted.
+    public EventStore sortedByTime() {
+        if (isSortedByTime())
+            return this;
+
+        int n = size();
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        mergeSort(order, new int[n], 0, n);
+
+        EventStore sorted = new EventStore(strings, Math.max(1, n), endOffsets, order);
+        for (int i = 0; i < n; i++) {
+            int row = order[i];
+            sorted.addColumns(kinds.get(row), times.get(row), xs.get(row), ys.get(row), values.get(row), depths.get(row),
+                    refs.get(row), args.get(row));
+        }
+        return sorted;
+    }
+
+    public void trimToSize() {
+        kinds.trimToSize();
+        times.trimToSize();
+        xs.trimToSize();
+        ys.trimToSize();
+        values.trimToSize();
+        depths.trimToSize();
+        refs.trimToSize();
+        args.trimToSize();
+        endOffsets.trimToSize();
+    }
+
+    private void mergeSort(int[] order, int[] buffer, int from, int to) {
+        if (to - from < 2)
+            return;
+        int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, from, mid);
+        mergeSort(order, buffer, mid, to);
+        if (times.get(order[mid - 1]) <= times.get(order[mid]))
+            return;
+        System.arraycopy(order, from, buffer, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && times.get(buffer[i]) <= times.get(buffer[j])))
+                order[k] = buffer[i++];
+            else
+                order[k] = buffer[j++];
+        }
+    }
+
+    private static byte kindOf(String action) {
+        for (byte kind = 1; kind < ACTIONS.length; kind++) {
+            if (ACTIONS[kind].equals(action))
+                return kind;
+        }
+        throw new IllegalArgumentException("Unknown action: " + action);
+    }
+
+    private int intern(String s) {
+        return s == null ? NO_STRING : strings.intern(s);
+    }
+
+    private String string(int ref) {
+        return ref == NO_STRING ? null : strings.get(ref);
+    }
+
+    // Plain non-negative integer ids are stored as themselves; anything else is
+    // interned and stored as the complement of its dictionary id.
+    private int encodeId(String id) {
+        if (id == null)
+            return NO_ID;
+        int numeric = parseCanonicalInt(id);
+        return numeric >= 0 ? numeric : ~strings.intern(id);
+    }
+
+    // The id that arg encodes, given a view of the store's dictionary.
+    public static String decodeId(int arg, StringDictionary.View strings) {
+        if (arg == NO_ID)
+            return null;
+        return arg >= 0 ? Integer.toString(arg) : strings.get(~arg);
+    }
+
+    // The value of s if it is written exactly as Integer.toString would write a
+    // non-negative int, otherwise -1.
+    private static int parseCanonicalInt(String s) {
+        int length = s.length();
+        if (length == 0 || length > 10 || (length > 1 && s.charAt(0) == '0'))
+            return -1;
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = 10 * value + (c - '0');
+        }
+        return value <= Integer.MAX_VALUE ? (int) value : -1;
+    }
+}
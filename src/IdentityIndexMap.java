@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+// Map from objects (by identity) to non-negative ints, for MaxHeap positions.
+// Open addressing with linear probing; removal shifts the following entries
+// back instead of leaving tombstones, so puts and removes never allocate once
+// the table is large enough.
+public class IdentityIndexMap<K> {
+    public static final int ABSENT = -1;
+
+    private Object[] keys;
+    private int[] values;
+    private int size;
+
+    public IdentityIndexMap() {
+        keys = new Object[16];
+        values = new int[16];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(K key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key)
+                return values[slot];
+        }
+        return ABSENT;
+    }
+
+    public void put(K key, int value) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (2 * ++size > keys.length)
+            resize(2 * keys.length);
+    }
+
+    public int remove(K key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != key) {
+            if (keys[slot] == null)
+                return ABSENT;
+            slot = (slot + 1) & mask;
+        }
+        int value = values[slot];
+        size--;
+
+        // move back any later entry of the run that may no longer be reachable
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = null;
+        return value;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    private void resize(int capacity) {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new Object[capacity];
+        values = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null)
+                continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (keys[slot] != null)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = System.identityHashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,76 @@
+// How much of one input file has been applied. The simulator runs a file's
+// events in time order, which need not be file order, so the end offset of the
+// last event applied says nothing about the events before it in the file.
+// What is kept instead is the longest prefix of the file whose events have all
+// been applied (its end offset and its number of events) and how many events
+// after it have been applied as well. The events applied are always the first
+// ones of the file in (stable) time order, so those are the first ones of the
+// rest of the file in time order too: a resumed run reads the file from the
+// offset, sorts it and skips that many. Checkpoints and the watcher log both
+// record this.
+public class InputProgress {
+    private final EventStore store;
+    private final long startOffset;
+    private final int firstIndex;
+    // the leading file rows of the store, all applied
+    private int prefix;
+    // rows of the store applied, in row order
+    private int applied;
+    // file rows applied past the prefix, one bit each; only needed, and only
+    // allocated, once the store is out of file order
+    private long[] done;
+
+    // The store holds the file read from startOffset, which firstIndex events
+    // precede, sorted by time; its first skip rows were applied before.
+    public InputProgress(EventStore store, long startOffset, int firstIndex, int skip) {
+        if (skip < 0 || skip > store.size())
+            throw new IllegalArgumentException("Cannot skip " + skip + " of " + store.size() + " events");
+        this.store = store;
+        this.startOffset = startOffset;
+        this.firstIndex = firstIndex;
+        for (int row = 0; row < skip; row++)
+            apply(row);
+    }
+
+    public EventStore getStore() {
+        return store;
+    }
+
+    // Rows of the store applied so far; the next one to apply is this row.
+    public int getApplied() {
+        return applied;
+    }
+
+    // Records that the given row, which must be the next one, has been applied.
+    public void apply(int row) {
+        if (row != applied)
+            throw new IllegalArgumentException("Row " + row + " applied out of order, expected " + applied);
+        applied++;
+        int fileRow = store.getFileRow(row);
+        if (fileRow != prefix) {
+            if (done == null)
+                done = new long[(store.size() + 63) >>> 6];
+            done[fileRow >>> 6] |= 1L << fileRow;
+            return;
+        }
+        prefix++;
+        while (prefix < store.size() && done != null && (done[prefix >>> 6] & (1L << prefix)) != 0)
+            prefix++;
+    }
+
+    // Events in the file before getOffset(): those before the store and its
+    // applied prefix.
+    public int getEventsRead() {
+        return firstIndex + prefix;
+    }
+
+    // File offset just past the applied prefix.
+    public long getOffset() {
+        return prefix == 0 ? startOffset : store.getFileEndOffset(prefix - 1);
+    }
+
+    // Events past getOffset() that have been applied.
+    public int getSkip() {
+        return applied - prefix;
+    }
+}
@@ -1,46 +1,177 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.io.DataOutput;
+import java.io.IOException;
 
-public class KDTree2D {
+// The tree owns its Point2D objects: insert copies the given watcher, and the
+// node and point of a removed watcher are kept for reuse by later inserts. A
+// point returned by searchByName or rangeQueryCircular is therefore only valid
+// until the next insert.
+// Every node and point remembers the epoch it was made in; freeze() starts a
+// new epoch, and from then on anything older is copied instead of changed, and
+// left to the collector instead of reused, since a frozen tree may still see it.
+public class KDTree2D implements WatcherTree {
     private Node root;
+    private int size;
+    private int lastNodesVisited;
+    private int lastDepth;
+    private int epoch;
+    // recycled nodes, chained through left, and recycled points
+    private Node freeNodes;
+    private final ArrayList<Point2D> freePoints = new ArrayList<>();
+    private Point2D removedPoint;
+    private int removedPointEpoch;
 
     private static class Node {
         Point2D point;
         Node left;
         Node right;
+        int epoch;
+        int pointEpoch;
 
         public Node(Point2D point) {
             this.point = point;
         }
     }
 
+    private static class FrozenTree implements Frozen {
+        private final Node root;
+        private final int size;
+
+        FrozenTree(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void writePreorder(DataOutput out) throws IOException {
+            if (root != null)
+                writePreorder(root, out);
+        }
+
+        private static void writePreorder(Node current, DataOutput out) throws IOException {
+            Point2D point = current.point;
+            out.writeByte((current.left != null ? 1 : 0) | (current.right != null ? 2 : 0));
+            out.writeDouble(point.getX());
+            out.writeDouble(point.getY());
+            out.writeUTF(point.getName());
+            out.writeInt(point.getId());
+            if (current.left != null)
+                writePreorder(current.left, out);
+            if (current.right != null)
+                writePreorder(current.right, out);
+        }
+
+        // nodes only a frozen tree holds are left to the collector
+        @Override
+        public void release() {
+        }
+    }
+
     public KDTree2D() {
         root = null;
     }
 
     public void insert(Point2D point) {
-        root = insertRecursive(root, point, 0);
+        insert(point.getX(), point.getY(), point.getName(), point.getId());
     }
 
-    private Node insertRecursive(Node current, Point2D point, int depth) {
+    public void insert(double x, double y, String name, int id) {
+        WatcherTreeEvent event = new WatcherTreeEvent();
+        event.begin();
+        lastDepth = 0;
+        root = insertRecursive(root, x, y, name, id, 0);
+        if (event.shouldCommit()) {
+            event.operation = "add";
+            event.name = name;
+            event.depth = lastDepth;
+            event.commit();
+        }
+    }
+
+    private Node insertRecursive(Node current, double x, double y, String name, int id, int depth) {
+        if (depth > lastDepth)
+            lastDepth = depth;
         if (current == null) {
-            return new Node(point);
+            size++;
+            return newNode(x, y, name, id);
         }
 
         int axis = depth % 2;
         double currentCoord = (axis == 0) ? current.point.getX() : current.point.getY();
-        double pointCoord = (axis == 0) ? point.getX() : point.getY();
+        double pointCoord = (axis == 0) ? x : y;
 
-        if (current.point.equals(point)) {
-            current.point.setName(point.getName());
+        if (Double.compare(current.point.getX(), x) == 0 && Double.compare(current.point.getY(), y) == 0) {
+            current = writable(current);
+            if (current.pointEpoch == epoch) {
+                current.point.setName(name);
+                current.point.setId(id);
+            } else {
+                current.point = newPoint(x, y, name, id);
+                current.pointEpoch = epoch;
+            }
         } else if (pointCoord < currentCoord) {
-            current.left = insertRecursive(current.left, point, depth + 1);
+            Node left = insertRecursive(current.left, x, y, name, id, depth + 1);
+            if (left != current.left) {
+                current = writable(current);
+                current.left = left;
+            }
         } else {
-            current.right = insertRecursive(current.right, point, depth + 1);
+            Node right = insertRecursive(current.right, x, y, name, id, depth + 1);
+            if (right != current.right) {
+                current = writable(current);
+                current.right = right;
+            }
         }
         return current;
     }
 
+    private Node newNode(double x, double y, String name, int id) {
+        Node node = allocateNode();
+        node.point = newPoint(x, y, name, id);
+        node.pointEpoch = epoch;
+        node.left = null;
+        node.right = null;
+        return node;
+    }
+
+    // The node itself if it was made in this epoch, otherwise a copy that the
+    // caller links in its place.
+    private Node writable(Node node) {
+        if (node.epoch == epoch)
+            return node;
+        Node copy = allocateNode();
+        copy.point = node.point;
+        copy.pointEpoch = node.pointEpoch;
+        copy.left = node.left;
+        copy.right = node.right;
+        return copy;
+    }
+
+    private Node allocateNode() {
+        Node node = freeNodes;
+        if (node == null)
+            node = new Node(null);
+        else
+            freeNodes = node.left;
+        node.epoch = epoch;
+        return node;
+    }
+
+    private Point2D newPoint(double x, double y, String name, int id) {
+        if (freePoints.isEmpty())
+            return new Point2D(x, y, name, id);
+        Point2D point = freePoints.remove(freePoints.size() - 1);
+        point.setX(x);
+        point.setY(y);
+        point.setName(name);
+        point.setId(id);
+        return point;
+    }
+
     public Point2D searchByName(String name) {
         return searchByNameRecursive(root, name);
     }
@@ -57,7 +188,20 @@ public class KDTree2D {
     }
 
     public void remove(Point2D point) {
+        WatcherTreeEvent event = new WatcherTreeEvent();
+        event.begin();
+        lastDepth = 0;
+        removedPoint = null;
         root = removeRecursive(root, point, 0);
+        // the first match is the removed watcher's own point; later ones were moved up
+        if (removedPoint != null && removedPointEpoch == epoch)
+            freePoints.add(removedPoint);
+        if (event.shouldCommit()) {
+            event.operation = "delete";
+            event.name = point.getName();
+            event.depth = lastDepth;
+            event.commit();
+        }
     }
 
     public boolean removeByName(String name) {
@@ -70,21 +214,37 @@ public class KDTree2D {
     }
 
     private Node removeRecursive(Node current, Point2D point, int depth) {
+        if (depth > lastDepth)
+            lastDepth = depth;
         if (current == null)
             return null;
         int axis = depth % 2;
 
         if (current.point.equals(point)) {
+            if (removedPoint == null) {
+                removedPoint = current.point;
+                removedPointEpoch = current.pointEpoch;
+            }
             if (current.right != null) {
                 Node minNode = findMinNode(current.right, axis, depth + 1);
+                current = writable(current);
                 current.point = minNode.point;
+                current.pointEpoch = minNode.pointEpoch;
                 current.right = removeRecursive(current.right, minNode.point, depth + 1);
             } else if (current.left != null) {
                 Node minNode = findMinNode(current.left, axis, depth + 1);
+                current = writable(current);
                 current.point = minNode.point;
+                current.pointEpoch = minNode.pointEpoch;
                 current.right = removeRecursive(current.left, minNode.point, depth + 1);
                 current.left = null;
             } else {
+                size--;
+                if (current.epoch == epoch) {
+                    current.point = null;
+                    current.left = freeNodes;
+                    freeNodes = current;
+                }
                 return null;
             }
         } else {
@@ -92,15 +252,25 @@ public class KDTree2D {
             double pointCoord = (axis == 0) ? point.getX() : point.getY();
 
             if (pointCoord < currentCoord) {
-                current.left = removeRecursive(current.left, point, depth + 1);
+                Node left = removeRecursive(current.left, point, depth + 1);
+                if (left != current.left) {
+                    current = writable(current);
+                    current.left = left;
+                }
             } else {
-                current.right = removeRecursive(current.right, point, depth + 1);
+                Node right = removeRecursive(current.right, point, depth + 1);
+                if (right != current.right) {
+                    current = writable(current);
+                    current.right = right;
+                }
             }
         }
         return current;
     }
 
     private Node findMinNode(Node current, int dimension, int depth) {
+        if (depth > lastDepth)
+            lastDepth = depth;
         if (current == null)
             return null;
         int axis = depth % 2;
@@ -124,24 +294,67 @@ public class KDTree2D {
         return min;
     }
 
+    public int size() {
+        return size;
+    }
+
+    public Frozen freeze() {
+        Frozen frozen = new FrozenTree(root, size);
+        epoch++;
+        return frozen;
+    }
+
+    // Rebuilds exactly the tree Frozen.writePreorder described, replacing the contents.
+    public void restorePreorder(Point2D[] points, byte[] shape, int count) {
+        root = null;
+        size = count;
+        if (count > 0)
+            root = restorePreorderRecursive(points, shape, new int[1]);
+    }
+
+    private Node restorePreorderRecursive(Point2D[] points, byte[] shape, int[] next) {
+        int index = next[0]++;
+        Node node = new Node(points[index]);
+        node.epoch = epoch;
+        node.pointEpoch = epoch;
+        if ((shape[index] & 1) != 0)
+            node.left = restorePreorderRecursive(points, shape, next);
+        if ((shape[index] & 2) != 0)
+            node.right = restorePreorderRecursive(points, shape, next);
+        return node;
+    }
+
     private double getCoordinate(Point2D point, int dimension) {
         return (dimension == 0) ? point.getX() : point.getY();
     }
 
     public List<Point2D> rangeQueryCircular(double x, double y, double radius) {
         List<Point2D> result = new ArrayList<>();
-        rangeQueryCircularRecursive(root, x, y, radius, 0, result);
+        rangeQueryCircular(x, y, radius, result);
         return result;
     }
 
+    // Same as above, but clears and fills the given list.
+    public void rangeQueryCircular(double x, double y, double radius, List<Point2D> result) {
+        result.clear();
+        lastNodesVisited = 0;
+        rangeQueryCircularRecursive(root, x, y, radius, 0, result);
+    }
+
+    // Number of nodes the last rangeQueryCircular call looked at.
+    public int getLastNodesVisited() {
+        return lastNodesVisited;
+    }
+
     private void rangeQueryCircularRecursive(Node current, double x, double y, double radius, int depth, List<Point2D> result) {
         if (current == null)
             return;
+        lastNodesVisited++;
 
         double distance = Math.sqrt(Math.pow(current.point.getX() - x, 2) + Math.pow(current.point.getY() - y, 2));
         // Değiştirildi: <= yerine < kullanılıyor
         if (distance < radius) {
-            result.add(result.size(), current.point);
+            result.add(current.point);
         }
 
         int axis = depth % 2;
@@ -5,7 +5,9 @@ public interface List<E> extends Iterable<E> {
     boolean isEmpty();
     E get(int i) throws IndexOutOfBoundsException;
     E set(int i, E e) throws IndexOutOfBoundsException;
+    void add(E e);
     void add(int i, E e) throws IndexOutOfBoundsException;
     E remove(int i) throws IndexOutOfBoundsException;
+    void clear();
     Iterator<E> iterator();
 }
@@ -1,38 +1,56 @@
 import java.util.Comparator;
 
+// Items are tracked by identity: remove() takes the object that was inserted.
+// The heap array is a ChunkedArray, so items() can hand out the layout without
+// copying it.
 public class MaxHeap<T> {
-    private List<T> heap;
-    private Map<T, Integer> indices;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private ChunkedArray<T> heap;
+    private int size;
+    // positions by identity, so no two items are confused and no Integer is boxed
+    private IdentityIndexMap<T> indices;
     private Comparator<T> comparator;
+    // reused by topK
+    private int[] candidates = new int[16];
 
     public MaxHeap(Comparator<T> comparator) {
-        heap = new ArrayList<>();
-        indices = new SimpleMap<>();
+        heap = new ChunkedArray<>(INITIAL_CAPACITY);
+        indices = new IdentityIndexMap<>();
         this.comparator = comparator;
     }
 
     public void insert(T item) {
-        heap.add(heap.size(), item);
-        int index = heap.size() - 1;
+        if (size == heap.length())
+            grow();
+        int index = size++;
+        heap.set(index, item);
         indices.put(item, index);
         heapifyUp(index);
     }
 
     public T peek() {
-        if (heap.isEmpty())
-            return null;
-        return heap.get(0);
+        QueryLargestEvent event = new QueryLargestEvent();
+        event.begin();
+        T top = size == 0 ? null : heap.get(0);
+        if (event.shouldCommit()) {
+            event.heapSize = size;
+            event.requested = 1;
+            event.commit();
+        }
+        return top;
     }
 
     public void remove(T item) {
-        Integer index = indices.get(item);
-        if (index == null)
+        int index = indices.get(item);
+        if (index == IdentityIndexMap.ABSENT)
             return;
 
-        T lastItem = heap.remove(heap.size() - 1);
+        T lastItem = heap.get(--size);
+        heap.set(size, null);
         indices.remove(item);
 
-        if (index < heap.size()) {
+        if (index < size) {
             heap.set(index, lastItem);
             indices.put(lastItem, index);
             if (comparator.compare(lastItem, item) > 0) {
@@ -44,7 +62,113 @@ public class MaxHeap<T> {
     }
 
     public boolean isEmpty() {
-        return heap.isEmpty();
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Items in heap-array order, positions 0 to size() - 1; restore() rebuilds
+    // the same heap from them. The array shares its chunks with the heap, so
+    // this costs O(size / 1024), and later changes to the heap leave it as it is.
+    public ChunkedArray<T> items() {
+        return heap.copy();
+    }
+
+    // Replaces the contents with the first count items, already in heap order.
+    public void restore(ChunkedArray<T> items, int count) {
+        heap = new ChunkedArray<>(Math.max(INITIAL_CAPACITY, count));
+        size = count;
+        indices = new IdentityIndexMap<>();
+        for (int i = 0; i < count; i++) {
+            heap.set(i, items.get(i));
+            indices.put(items.get(i), i);
+        }
+    }
+
+    // Returns the k largest items, largest first, without disturbing the heap.
+    // Only the top of the heap is explored: a small side heap of candidate
+    // positions holds the frontier, so this runs in O(k log k).
+    public List<T> topK(int k) {
+        // k comes from the input, so the list grows with what is found instead
+        List<T> result = new ArrayList<>();
+        topK(k, result);
+        return result;
+    }
+
+    // Same as topK(k), but clears and fills the given list.
+    public void topK(int k, List<T> result) {
+        QueryLargestEvent event = new QueryLargestEvent();
+        event.begin();
+        result.clear();
+        if (k > 0 && size > 0)
+            collectTopK(Math.min(k, size), result);
+        if (event.shouldCommit()) {
+            event.heapSize = size;
+            event.requested = k;
+            event.commit();
+        }
+    }
+
+    private void collectTopK(int k, List<T> result) {
+        // the frontier never holds more than one candidate per heap item
+        int needed = (int) Math.min(2L * k + 1, size);
+        if (candidates.length < needed)
+            candidates = new int[Math.max(needed, 2 * candidates.length)];
+        int[] candidates = this.candidates;
+        int candidateCount = 0;
+        candidates[candidateCount++] = 0;
+
+        while (candidateCount > 0 && result.size() < k) {
+            int best = candidates[0];
+            candidates[0] = candidates[--candidateCount];
+            siftDownCandidate(candidates, candidateCount, 0);
+            result.add(heap.get(best));
+
+            int left = 2 * best + 1;
+            if (left < size)
+                candidateCount = pushCandidate(candidates, candidateCount, left);
+            if (left + 1 < size)
+                candidateCount = pushCandidate(candidates, candidateCount, left + 1);
+        }
+    }
+
+    private int pushCandidate(int[] candidates, int count, int heapIndex) {
+        int index = count;
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            if (comparator.compare(heap.get(heapIndex), heap.get(candidates[parentIndex])) > 0) {
+                candidates[index] = candidates[parentIndex];
+                index = parentIndex;
+            } else {
+                break;
+            }
+        }
+        candidates[index] = heapIndex;
+        return count + 1;
+    }
+
+    private void siftDownCandidate(int[] candidates, int count, int index) {
+        if (count == 0)
+            return;
+        int heapIndex = candidates[index];
+        while (true) {
+            int leftChildIdx = 2 * index + 1;
+            int rightChildIdx = 2 * index + 2;
+            int largestIdx = leftChildIdx;
+            if (leftChildIdx >= count)
+                break;
+            if (rightChildIdx < count && comparator.compare(heap.get(candidates[rightChildIdx]), heap.get(candidates[leftChildIdx])) > 0)
+                largestIdx = rightChildIdx;
+            if (comparator.compare(heap.get(candidates[largestIdx]), heap.get(heapIndex)) > 0) {
+                candidates[index] = candidates[largestIdx];
+                index = largestIdx;
+            } else {
+                break;
+            }
+        }
+        candidates[index] = heapIndex;
     }
 
     private void heapifyUp(int index) {
@@ -65,17 +189,18 @@ public class MaxHeap<T> {
     }
 
     private void heapifyDown(int index) {
-        int size = heap.size();
         T item = heap.get(index);
         while (true) {
             int leftChildIdx = 2 * index + 1;
             int rightChildIdx = 2 * index + 2;
             int largestIdx = index;
+            T largest = item;
 
-            if (leftChildIdx < size && comparator.compare(heap.get(leftChildIdx), heap.get(largestIdx)) > 0) {
+            if (leftChildIdx < size && comparator.compare(heap.get(leftChildIdx), largest) > 0) {
                 largestIdx = leftChildIdx;
+                largest = heap.get(leftChildIdx);
             }
-            if (rightChildIdx < size && comparator.compare(heap.get(rightChildIdx), heap.get(largestIdx)) > 0) {
+            if (rightChildIdx < size && comparator.compare(heap.get(rightChildIdx), largest) > 0) {
                 largestIdx = rightChildIdx;
             }
 
@@ -92,4 +217,11 @@ public class MaxHeap<T> {
         heap.set(index, item);
         indices.put(item, index);
     }
+
+    private void grow() {
+        ChunkedArray<T> grown = new ChunkedArray<>(2 * heap.length());
+        for (int i = 0; i < size; i++)
+            grown.set(i, heap.get(i));
+        heap = grown;
+    }
 }
@@ -0,0 +1,164 @@
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hot-path counters and histograms for a simulation run. Everything is guarded
+// by the static `enabled` flag, so the disabled cost is a field read per call
+// site; when enabled, recording is lock-free (LongAdder / atomic buckets) and a
+// background thread may take JSON-lines snapshots concurrently.
+public class Metrics {
+    public static boolean enabled = false;
+
+    public static final LongAdder watcherEvents = new LongAdder();
+    public static final LongAdder earthquakeEvents = new LongAdder();
+    public static final LongAdder notifications = new LongAdder();
+    public static final LongAdder prunedEarthquakes = new LongAdder();
+    public static final LongAdder rangeQueries = new LongAdder();
+    public static final LongAdder rangeQueryNodesVisited = new LongAdder();
+    public static final LongAdder rangeQueryHits = new LongAdder();
+    public static final LongAdder expiredEarthquakes = new LongAdder();
+    public static final LongAdder parsedLines = new LongAdder();
+    public static final LongAdder parsedBytes = new LongAdder();
+    public static final LongAdder parseNanos = new LongAdder();
+    public static final LongAdder outputBytes = new LongAdder();
+    public static final LongAdder watcherLogRecords = new LongAdder();
+    public static final LongAdder watcherLogSyncs = new LongAdder();
+
+    public static final LatencyHistogram simulateNanos = new LatencyHistogram();
+    public static final LatencyHistogram nodesVisitedPerQuery = new LatencyHistogram();
+    public static final LatencyHistogram hitsPerQuery = new LatencyHistogram();
+    public static final LatencyHistogram heapSize = new LatencyHistogram();
+    public static final LatencyHistogram expiriesPerTick = new LatencyHistogram();
+    public static final LatencyHistogram recordsPerWatcherLogSync = new LatencyHistogram();
+
+    private static ScheduledExecutorService snapshotter;
+    private static PrintWriter snapshotOut;
+
+    private Metrics() {
+    }
+
+    public static void recordRangeQuery(int nodesVisited, int hits) {
+        rangeQueries.increment();
+        rangeQueryNodesVisited.add(nodesVisited);
+        rangeQueryHits.add(hits);
+        nodesVisitedPerQuery.record(nodesVisited);
+        hitsPerQuery.record(hits);
+    }
+
+    public static void recordWatcherLogSync(long records) {
+        watcherLogSyncs.increment();
+        watcherLogRecords.add(records);
+        recordsPerWatcherLogSync.record(records);
+    }
+
+    public static void recordParse(long lines, long bytes, long nanos) {
+        parsedLines.add(lines);
+        parsedBytes.add(bytes);
+        parseNanos.add(nanos);
+    }
+
+    // Replaces System.out with a buffered stream that counts the bytes written
+    // to stdout. The caller must flush System.out before exiting.
+    public static void countOutputBytes() {
+        OutputStream counting = new FilterOutputStream(new FileOutputStream(FileDescriptor.out)) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                outputBytes.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                outputBytes.add(len);
+            }
+        };
+        System.setOut(new BufferedPrintStream(counting, 1 << 16));
+    }
+
+    public static void startSnapshots(String fileName, long intervalMillis) throws IOException {
+        snapshotOut = new PrintWriter(new FileWriter(fileName), true);
+        snapshotter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "metrics-snapshots");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        snapshotter.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                snapshotOut.println(toJson());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static void stopSnapshots() {
+        if (snapshotter == null)
+            return;
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotOut.println(toJson());
+        snapshotOut.close();
+        snapshotter = null;
+    }
+
+    public static String toJson() {
+        return "{\"timeMillis\":" + System.currentTimeMillis()
+                + ",\"watcherEvents\":" + watcherEvents.sum()
+                + ",\"earthquakeEvents\":" + earthquakeEvents.sum()
+                + ",\"notifications\":" + notifications.sum()
+                + ",\"prunedEarthquakes\":" + prunedEarthquakes.sum()
+                + ",\"rangeQueries\":" + rangeQueries.sum()
+                + ",\"rangeQueryNodesVisited\":" + rangeQueryNodesVisited.sum()
+                + ",\"rangeQueryHits\":" + rangeQueryHits.sum()
+                + ",\"expiredEarthquakes\":" + expiredEarthquakes.sum()
+                + ",\"parsedLines\":" + parsedLines.sum()
+                + ",\"parsedBytes\":" + parsedBytes.sum()
+                + ",\"parseNanos\":" + parseNanos.sum()
+                + ",\"outputBytes\":" + outputBytes.sum()
+                + ",\"watcherLogRecords\":" + watcherLogRecords.sum()
+                + ",\"watcherLogSyncs\":" + watcherLogSyncs.sum()
+                + ",\"simulateNanos\":" + simulateNanos.toJson()
+                + ",\"nodesVisitedPerQuery\":" + nodesVisitedPerQuery.toJson()
+                + ",\"hitsPerQuery\":" + hitsPerQuery.toJson()
+                + ",\"heapSize\":" + heapSize.toJson()
+                + ",\"expiriesPerTick\":" + expiriesPerTick.toJson()
+                + ",\"recordsPerWatcherLogSync\":" + recordsPerWatcherLogSync.toJson()
+                + "}";
+    }
+
+    public static void printSummary(PrintStream out) {
+        long parseNs = parseNanos.sum();
+        double parseSeconds = parseNs / 1e9;
+        out.println("---- metrics ----");
+        out.println("events: watcher=" + watcherEvents.sum() + " earthquake=" + earthquakeEvents.sum());
+        out.println("simulate ns/event: " + simulateNanos.toSummary());
+        out.println("notifications: " + notifications.sum() + ", quakes pruned by tier index: " + prunedEarthquakes.sum());
+        out.println("range queries: " + rangeQueries.sum() + ", nodes visited: " + rangeQueryNodesVisited.sum() + ", hits: " + rangeQueryHits.sum());
+        out.println("nodes visited/query: " + nodesVisitedPerQuery.toSummary());
+        out.println("hits/query: " + hitsPerQuery.toSummary());
+        out.println("heap size: " + heapSize.toSummary());
+        out.println("expiries/tick: " + expiriesPerTick.toSummary() + " (total " + expiredEarthquakes.sum() + ")");
+        out.println("parse: " + parsedLines.sum() + " lines, " + parsedBytes.sum() + " bytes in " + (parseNs / 1000000) + " ms"
+                + (parseSeconds > 0 ? String.format(" (%.1f MB/s)", parsedBytes.sum() / 1e6 / parseSeconds) : ""));
+        out.println("output: " + outputBytes.sum() + " bytes");
+        if (watcherLogSyncs.sum() > 0)
+            out.println("watcher log: " + watcherLogRecords.sum() + " records in " + watcherLogSyncs.sum() + " fsyncs, records/fsync: " + recordsPerWatcherLogSync.toSummary());
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Per-watcher notification state (watcher id -> last notified time/magnitude)
+// kept in parallel primitive arrays with linear probing. A watcher is notified
+// again within the cooldown only when the quake is larger than the last one it
+// was told about. Entries expire on the earthquake-window clock.
+// The arrays are chunked so that copy() shares them instead of cloning them.
+public class NotificationThrottle {
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int cooldown;
+
+    private ChunkedIntArray keys;
+    private ChunkedIntArray lastTimes;
+    private ChunkedDoubleArray lastMagnitudes;
+    private int size;
+
+    // FIFO of (watcher id, notify time), in time order, used for expiry
+    private ChunkedIntArray expiryIds;
+    private ChunkedIntArray expiryTimes;
+    private int expiryHead;
+    private int expiryCount;
+
+    public NotificationThrottle(int cooldown) {
+        if (cooldown <= 0)
+            throw new IllegalArgumentException("Cooldown must be positive: " + cooldown);
+        this.cooldown = cooldown;
+        keys = newKeys(INITIAL_CAPACITY);
+        lastTimes = new ChunkedIntArray(INITIAL_CAPACITY);
+        lastMagnitudes = new ChunkedDoubleArray(INITIAL_CAPACITY);
+        expiryIds = new ChunkedIntArray(INITIAL_CAPACITY);
+        expiryTimes = new ChunkedIntArray(INITIAL_CAPACITY);
+    }
+
+    public int getCooldown() {
+        return cooldown;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Decides whether the watcher should be notified and records it if so.
+    public boolean shouldNotify(int watcherId, int time, double magnitude) {
+        int slot = find(watcherId);
+        if (slot >= 0 && time - lastTimes.get(slot) < cooldown && magnitude <= lastMagnitudes.get(slot))
+            return false;
+
+        if (slot < 0) {
+            if (2 * (size + 1) > keys.length())
+                rehash(2 * keys.length());
+            slot = insertionSlot(watcherId);
+            keys.set(slot, watcherId);
+            size++;
+        }
+        lastTimes.set(slot, time);
+        lastMagnitudes.set(slot, magnitude);
+        enqueueExpiry(watcherId, time);
+        return true;
+    }
+
+    public void expire(int currentTime) {
+        while (expiryCount > 0 && currentTime - expiryTimes.get(expiryHead) >= cooldown) {
+            int watcherId = expiryIds.get(expiryHead);
+            int time = expiryTimes.get(expiryHead);
+            expiryHead = (expiryHead + 1) % expiryIds.length();
+            expiryCount--;
+
+            // a later notification for the same watcher keeps the entry alive
+            int slot = find(watcherId);
+            if (slot >= 0 && lastTimes.get(slot) == time)
+                removeSlot(slot);
+        }
+    }
+
+    public void remove(int watcherId) {
+        int slot = find(watcherId);
+        if (slot >= 0)
+            removeSlot(slot);
+    }
+
+    // Independent copy in O(capacity / 1024): the copy shares every chunk, and
+    // a chunk is only copied when one side first writes to it.
+    public NotificationThrottle copy() {
+        NotificationThrottle copy = new NotificationThrottle(cooldown);
+        copy.keys = keys.copy();
+        copy.lastTimes = lastTimes.copy();
+        copy.lastMagnitudes = lastMagnitudes.copy();
+        copy.size = size;
+        copy.expiryIds = expiryIds.copy();
+        copy.expiryTimes = expiryTimes.copy();
+        copy.expiryHead = expiryHead;
+        copy.expiryCount = expiryCount;
+        return copy;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(cooldown);
+        out.writeInt(size);
+        for (int i = 0; i < keys.length(); i++) {
+            if (keys.get(i) != EMPTY) {
+                out.writeInt(keys.get(i));
+                out.writeInt(lastTimes.get(i));
+                out.writeDouble(lastMagnitudes.get(i));
+            }
+        }
+        out.writeInt(expiryCount);
+        for (int k = 0; k < expiryCount; k++) {
+            int from = (expiryHead + k) % expiryIds.length();
+            out.writeInt(expiryIds.get(from));
+            out.writeInt(expiryTimes.get(from));
+        }
+    }
+
+    public static NotificationThrottle readFrom(DataInput in) throws IOException {
+        NotificationThrottle throttle = new NotificationThrottle(in.readInt());
+        int entries = in.readInt();
+        for (int i = 0; i < entries; i++) {
+            int watcherId = in.readInt();
+            if (2 * (throttle.size + 1) > throttle.keys.length())
+                throttle.rehash(2 * throttle.keys.length());
+            int slot = throttle.insertionSlot(watcherId);
+            throttle.keys.set(slot, watcherId);
+            throttle.lastTimes.set(slot, in.readInt());
+            throttle.lastMagnitudes.set(slot, in.readDouble());
+            throttle.size++;
+        }
+        int expiries = in.readInt();
+        for (int k = 0; k < expiries; k++) {
+            int watcherId = in.readInt();
+            throttle.enqueueExpiry(watcherId, in.readInt());
+        }
+        return throttle;
+    }
+
+    private int find(int key) {
+        int mask = keys.length() - 1;
+        int slot = hash(key) & mask;
+        while (keys.get(slot) != EMPTY) {
+            if (keys.get(slot) == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int insertionSlot(int key) {
+        int mask = keys.length() - 1;
+        int slot = hash(key) & mask;
+        while (keys.get(slot) != EMPTY)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    // Backward-shift deletion keeps probe chains intact without tombstones.
+    private void removeSlot(int slot) {
+        int mask = keys.length() - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys.get(next) != EMPTY) {
+            int home = hash(keys.get(next)) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys.set(hole, keys.get(next));
+                lastTimes.set(hole, lastTimes.get(next));
+                lastMagnitudes.set(hole, lastMagnitudes.get(next));
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys.set(hole, EMPTY);
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        ChunkedIntArray oldKeys = keys;
+        ChunkedIntArray oldTimes = lastTimes;
+        ChunkedDoubleArray oldMagnitudes = lastMagnitudes;
+        keys = newKeys(capacity);
+        lastTimes = new ChunkedIntArray(capacity);
+        lastMagnitudes = new ChunkedDoubleArray(capacity);
+        for (int i = 0; i < oldKeys.length(); i++) {
+            if (oldKeys.get(i) != EMPTY) {
+                int slot = insertionSlot(oldKeys.get(i));
+                keys.set(slot, oldKeys.get(i));
+                lastTimes.set(slot, oldTimes.get(i));
+                lastMagnitudes.set(slot, oldMagnitudes.get(i));
+            }
+        }
+    }
+
+    private void enqueueExpiry(int watcherId, int time) {
+        if (expiryCount == expiryIds.length()) {
+            ChunkedIntArray ids = new ChunkedIntArray(2 * expiryIds.length());
+            ChunkedIntArray times = new ChunkedIntArray(2 * expiryIds.length());
+            for (int k = 0; k < expiryCount; k++) {
+                int from = (expiryHead + k) % expiryIds.length();
+                ids.set(k, expiryIds.get(from));
+                times.set(k, expiryTimes.get(from));
+            }
+            expiryIds = ids;
+            expiryTimes = times;
+            expiryHead = 0;
+        }
+        int tail = (expiryHead + expiryCount) % expiryIds.length();
+        expiryIds.set(tail, watcherId);
+        expiryTimes.set(tail, time);
+        expiryCount++;
+    }
+
+    private static ChunkedIntArray newKeys(int capacity) {
+        ChunkedIntArray keys = new ChunkedIntArray(capacity);
+        keys.fill(EMPTY);
+        return keys;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
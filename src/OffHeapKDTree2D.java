@@ -0,0 +1,508 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// The same tree as KDTree2D, with the same shape after the same sequence of
+// operations, but every node lives in direct ByteBuffers outside the Java
+// heap, so tens of millions of watchers add nothing for the collector to trace.
+// A node is 36 bytes: x and y (8 each), the name as a StringDictionary id, the
+// watcher id, the left and right child as node indices (-1 for none), and the
+// epoch the node was made in. Freed nodes are chained through their left link
+// and reused. What the API returns is written into a small set of reused
+// Point2D objects.
+// freeze() starts a new epoch. A node from an earlier one may be part of a
+// frozen tree, so it is copied instead of changed, and when it is freed it is
+// retired rather than reused until every frozen tree that could reach it has
+// been released.
+public class OffHeapKDTree2D implements WatcherTree {
+    private static final int NODE_BYTES = 36;
+    private static final int X = 0;
+    private static final int Y = 8;
+    private static final int NAME = 16;
+    private static final int ID = 20;
+    private static final int LEFT = 24;
+    private static final int RIGHT = 28;
+    private static final int EPOCH = 32;
+    private static final int NONE = -1;
+
+    // 2^20 nodes (36 MB) per buffer
+    private static final int CHUNK_SHIFT = 20;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private final StringDictionary names;
+    private ByteBuffer[] chunks = new ByteBuffer[4];
+    private int chunkCount;
+    private int allocated;
+    private int free = NONE;
+    private int root = NONE;
+    private int size;
+    private int lastNodesVisited;
+    private int lastDepth;
+    // returned by searchByName and rangeQueryCircular, overwritten by the next call
+    private final Point2D found = new Point2D(0, 0, null);
+    private final ArrayList<Point2D> results = new ArrayList<>();
+
+    private int epoch;
+    // frozen trees not yet known to be released
+    private final ArrayList<FrozenTree> frozen = new ArrayList<>();
+    // freed nodes a frozen tree may still reach, with the epoch each was freed
+    // in, oldest first; retiredHead is the first one not yet reused
+    private final IntArrayList retired = new IntArrayList();
+    private final IntArrayList retiredEpochs = new IntArrayList();
+    private int retiredHead;
+
+    private static class FrozenTree implements Frozen {
+        private final ByteBuffer[] chunks;
+        private final int root;
+        private final int size;
+        private final int epoch;
+        private final StringDictionary.View names;
+        private volatile boolean released;
+
+        FrozenTree(ByteBuffer[] chunks, int root, int size, int epoch, StringDictionary.View names) {
+            this.chunks = chunks;
+            this.root = root;
+            this.size = size;
+            this.epoch = epoch;
+            this.names = names;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void writePreorder(DataOutput out) throws IOException {
+            if (root != NONE)
+                writePreorder(root, out);
+        }
+
+        private void writePreorder(int current, DataOutput out) throws IOException {
+            ByteBuffer chunk = chunks[current >>> CHUNK_SHIFT];
+            int base = (current & CHUNK_MASK) * NODE_BYTES;
+            int left = chunk.getInt(base + LEFT);
+            int right = chunk.getInt(base + RIGHT);
+            out.writeByte((left != NONE ? 1 : 0) | (right != NONE ? 2 : 0));
+            out.writeDouble(chunk.getDouble(base + X));
+            out.writeDouble(chunk.getDouble(base + Y));
+            out.writeUTF(names.get(chunk.getInt(base + NAME)));
+            out.writeInt(chunk.getInt(base + ID));
+            if (left != NONE)
+                writePreorder(left, out);
+            if (right != NONE)
+                writePreorder(right, out);
+        }
+
+        @Override
+        public void release() {
+            released = true;
+        }
+    }
+
+    public OffHeapKDTree2D() {
+        this(new StringDictionary());
+    }
+
+    public OffHeapKDTree2D(StringDictionary names) {
+        this.names = names;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void insert(Point2D point) {
+        insert(point.getX(), point.getY(), point.getName(), point.getId());
+    }
+
+    @Override
+    public void insert(double x, double y, String name, int id) {
+        WatcherTreeEvent event = new WatcherTreeEvent();
+        event.begin();
+        lastDepth = 0;
+        root = insertRecursive(root, x, y, names.intern(name), id, 0);
+        if (event.shouldCommit()) {
+            event.operation = "add";
+            event.name = name;
+            event.depth = lastDepth;
+            event.commit();
+        }
+    }
+
+    private int insertRecursive(int current, double x, double y, int name, int id, int depth) {
+        if (depth > lastDepth)
+            lastDepth = depth;
+        if (current == NONE) {
+            size++;
+            return newNode(x, y, name, id);
+        }
+
+        int axis = depth % 2;
+        double currentCoord = (axis == 0) ? getX(current) : getY(current);
+        double pointCoord = (axis == 0) ? x : y;
+
+        if (samePosition(current, x, y)) {
+            current = writable(current);
+            setInt(current, NAME, name);
+            setInt(current, ID, id);
+        } else if (pointCoord < currentCoord) {
+            int left = getInt(current, LEFT);
+            int child = insertRecursive(left, x, y, name, id, depth + 1);
+            if (child != left) {
+                current = writable(current);
+                setInt(current, LEFT, child);
+            }
+        } else {
+            int right = getInt(current, RIGHT);
+            int child = insertRecursive(right, x, y, name, id, depth + 1);
+            if (child != right) {
+                current = writable(current);
+                setInt(current, RIGHT, child);
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public Point2D searchByName(String name) {
+        int id = names.find(name);
+        if (id == NONE)
+            return null;
+        int node = searchByNameRecursive(root, id);
+        return node == NONE ? null : readPoint(node, found);
+    }
+
+    private int searchByNameRecursive(int current, int name) {
+        if (current == NONE)
+            return NONE;
+        if (getInt(current, NAME) == name)
+            return current;
+        int found = searchByNameRecursive(getInt(current, LEFT), name);
+        if (found != NONE)
+            return found;
+        return searchByNameRecursive(getInt(current, RIGHT), name);
+    }
+
+    @Override
+    public void remove(Point2D point) {
+        WatcherTreeEvent event = new WatcherTreeEvent();
+        event.begin();
+        lastDepth = 0;
+        root = removeRecursive(root, point.getX(), point.getY(), 0);
+        if (event.shouldCommit()) {
+            event.operation = "delete";
+            event.name = point.getName();
+            event.depth = lastDepth;
+            event.commit();
+        }
+    }
+
+    @Override
+    public boolean removeByName(String name) {
+        Point2D point = searchByName(name);
+        if (point != null) {
+            remove(point);
+            return true;
+        }
+        return false;
+    }
+
+    private int removeRecursive(int current, double x, double y, int depth) {
+        if (depth > lastDepth)
+            lastDepth = depth;
+        if (current == NONE)
+            return NONE;
+        int axis = depth % 2;
+
+        if (samePosition(current, x, y)) {
+            int left = getInt(current, LEFT);
+            int right = getInt(current, RIGHT);
+            if (right != NONE) {
+                int minNode = findMinNode(right, axis, depth + 1);
+                current = writable(current);
+                copyPoint(minNode, current);
+                setInt(current, RIGHT, removeRecursive(right, getX(minNode), getY(minNode), depth + 1));
+            } else if (left != NONE) {
+                int minNode = findMinNode(left, axis, depth + 1);
+                current = writable(current);
+                copyPoint(minNode, current);
+                setInt(current, RIGHT, removeRecursive(left, getX(minNode), getY(minNode), depth + 1));
+                setInt(current, LEFT, NONE);
+            } else {
+                size--;
+                freeNode(current);
+                return NONE;
+            }
+        } else {
+            double currentCoord = (axis == 0) ? getX(current) : getY(current);
+            double pointCoord = (axis == 0) ? x : y;
+
+            if (pointCoord < currentCoord) {
+                int left = getInt(current, LEFT);
+                int child = removeRecursive(left, x, y, depth + 1);
+                if (child != left) {
+                    current = writable(current);
+                    setInt(current, LEFT, child);
+                }
+            } else {
+                int right = getInt(current, RIGHT);
+                int child = removeRecursive(right, x, y, depth + 1);
+                if (child != right) {
+                    current = writable(current);
+                    setInt(current, RIGHT, child);
+                }
+            }
+        }
+        return current;
+    }
+
+    private int findMinNode(int current, int dimension, int depth) {
+        if (depth > lastDepth)
+            lastDepth = depth;
+        if (current == NONE)
+            return NONE;
+        int axis = depth % 2;
+
+        if (axis == dimension) {
+            if (getInt(current, LEFT) == NONE)
+                return current;
+            return findMinNode(getInt(current, LEFT), dimension, depth + 1);
+        }
+
+        int leftMin = findMinNode(getInt(current, LEFT), dimension, depth + 1);
+        int rightMin = findMinNode(getInt(current, RIGHT), dimension, depth + 1);
+
+        int min = current;
+        if (leftMin != NONE && getCoordinate(leftMin, dimension) < getCoordinate(min, dimension)) {
+            min = leftMin;
+        }
+        if (rightMin != NONE && getCoordinate(rightMin, dimension) < getCoordinate(min, dimension)) {
+            min = rightMin;
+        }
+        return min;
+    }
+
+    @Override
+    public List<Point2D> rangeQueryCircular(double x, double y, double radius) {
+        List<Point2D> result = new ArrayList<>();
+        rangeQueryCircular(x, y, radius, result);
+        return result;
+    }
+
+    @Override
+    public void rangeQueryCircular(double x, double y, double radius, List<Point2D> result) {
+        result.clear();
+        lastNodesVisited = 0;
+        rangeQueryCircularRecursive(root, x, y, radius, 0, result);
+    }
+
+    @Override
+    public int getLastNodesVisited() {
+        return lastNodesVisited;
+    }
+
+    private void rangeQueryCircularRecursive(int current, double x, double y, double radius, int depth, List<Point2D> result) {
+        if (current == NONE)
+            return;
+        lastNodesVisited++;
+
+        double currentX = getX(current);
+        double currentY = getY(current);
+        double distance = Math.sqrt(Math.pow(currentX - x, 2) + Math.pow(currentY - y, 2));
+        if (distance < radius) {
+            int n = result.size();
+            if (n == results.size())
+                results.add(new Point2D(0, 0, null));
+            result.add(readPoint(current, results.get(n)));
+        }
+
+        int axis = depth % 2;
+        double currentCoord = (axis == 0) ? currentX : currentY;
+        double pointCoord = (axis == 0) ? x : y;
+
+        if (pointCoord - radius < currentCoord) {
+            rangeQueryCircularRecursive(getInt(current, LEFT), x, y, radius, depth + 1, result);
+        }
+        if (pointCoord + radius >= currentCoord) {
+            rangeQueryCircularRecursive(getInt(current, RIGHT), x, y, radius, depth + 1, result);
+        }
+    }
+
+    // Writes the same preorder as KDTree2D's frozen tree.
+    @Override
+    public Frozen freeze() {
+        // drops the released trees, so they do not pile up between reuses
+        oldestFrozenEpoch();
+        FrozenTree tree = new FrozenTree(chunks, root, size, epoch, names.view());
+        frozen.add(tree);
+        epoch++;
+        return tree;
+    }
+
+    @Override
+    public void restorePreorder(Point2D[] points, byte[] shape, int count) {
+        root = NONE;
+        free = NONE;
+        allocated = 0;
+        retired.clear();
+        retiredEpochs.clear();
+        retiredHead = 0;
+        size = count;
+        if (count > 0)
+            root = restorePreorderRecursive(points, shape, new int[1]);
+    }
+
+    private int restorePreorderRecursive(Point2D[] points, byte[] shape, int[] next) {
+        int index = next[0]++;
+        Point2D point = points[index];
+        int node = newNode(point.getX(), point.getY(), names.intern(point.getName()), point.getId());
+        if ((shape[index] & 1) != 0)
+            setInt(node, LEFT, restorePreorderRecursive(points, shape, next));
+        if ((shape[index] & 2) != 0)
+            setInt(node, RIGHT, restorePreorderRecursive(points, shape, next));
+        return node;
+    }
+
+    private int newNode(double x, double y, int name, int id) {
+        return newNode(x, y, name, id, NONE, NONE);
+    }
+
+    private int newNode(double x, double y, int name, int id, int left, int right) {
+        int node;
+        if (free != NONE) {
+            node = free;
+            free = getInt(node, LEFT);
+        } else if (retiredHead < retired.size() && retiredEpochs.get(retiredHead) <= oldestFrozenEpoch()) {
+            node = reuseRetired();
+        } else {
+            if (allocated >>> CHUNK_SHIFT == chunkCount)
+                addChunk();
+            node = allocated++;
+        }
+        ByteBuffer chunk = chunks[node >>> CHUNK_SHIFT];
+        int base = (node & CHUNK_MASK) * NODE_BYTES;
+        chunk.putDouble(base + X, x);
+        chunk.putDouble(base + Y, y);
+        chunk.putInt(base + NAME, name);
+        chunk.putInt(base + ID, id);
+        chunk.putInt(base + LEFT, left);
+        chunk.putInt(base + RIGHT, right);
+        chunk.putInt(base + EPOCH, epoch);
+        return node;
+    }
+
+    // The node itself if it was made in this epoch, otherwise a copy that the
+    // caller links in its place; the original is retired.
+    private int writable(int node) {
+        if (getInt(node, EPOCH) == epoch)
+            return node;
+        int copy = newNode(getX(node), getY(node), getInt(node, NAME), getInt(node, ID), getInt(node, LEFT), getInt(node, RIGHT));
+        freeNode(node);
+        return copy;
+    }
+
+    private void freeNode(int node) {
+        if (getInt(node, EPOCH) == epoch) {
+            setInt(node, LEFT, free);
+            free = node;
+        } else {
+            // its links must stay intact for the frozen trees
+            retired.add(node);
+            retiredEpochs.add(epoch);
+        }
+    }
+
+    // The epoch of the oldest frozen tree not yet released, dropping the
+    // released ones. A node retired in epoch e is reachable only from trees
+    // frozen before e, so it can be reused once e <= this.
+    private int oldestFrozenEpoch() {
+        int oldest = Integer.MAX_VALUE;
+        for (int i = frozen.size() - 1; i >= 0; i--) {
+            FrozenTree tree = frozen.get(i);
+            if (tree.released) {
+                frozen.set(i, frozen.get(frozen.size() - 1));
+                frozen.remove(frozen.size() - 1);
+            } else if (tree.epoch < oldest) {
+                oldest = tree.epoch;
+            }
+        }
+        return oldest;
+    }
+
+    // Takes the oldest retired node, one per allocation, so no single call
+    // walks the whole list; the taken prefix is dropped once it is half of it.
+    private int reuseRetired() {
+        int node = retired.get(retiredHead++);
+        if (2 * retiredHead >= retired.size()) {
+            int remaining = retired.size() - retiredHead;
+            for (int i = 0; i < remaining; i++) {
+                retired.set(i, retired.get(retiredHead + i));
+                retiredEpochs.set(i, retiredEpochs.get(retiredHead + i));
+            }
+            while (retired.size() > remaining) {
+                retired.removeLast();
+                retiredEpochs.removeLast();
+            }
+            retiredHead = 0;
+        }
+        return node;
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length) {
+            ByteBuffer[] grown = new ByteBuffer[2 * chunks.length];
+            System.arraycopy(chunks, 0, grown, 0, chunkCount);
+            chunks = grown;
+        }
+        chunks[chunkCount++] = ByteBuffer.allocateDirect((CHUNK_MASK + 1) * NODE_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    private Point2D readPoint(int node, Point2D point) {
+        point.setX(getX(node));
+        point.setY(getY(node));
+        point.setName(names.get(getInt(node, NAME)));
+        point.setId(getInt(node, ID));
+        return point;
+    }
+
+    // Moves the watcher stored at from into to, leaving to's children alone.
+    private void copyPoint(int from, int to) {
+        setDouble(to, X, getX(from));
+        setDouble(to, Y, getY(from));
+        setInt(to, NAME, getInt(from, NAME));
+        setInt(to, ID, getInt(from, ID));
+    }
+
+    // Point2D.equals compares coordinates with Double.compare.
+    private boolean samePosition(int node, double x, double y) {
+        return Double.compare(getX(node), x) == 0 && Double.compare(getY(node), y) == 0;
+    }
+
+    private double getCoordinate(int node, int dimension) {
+        return (dimension == 0) ? getX(node) : getY(node);
+    }
+
+    private double getX(int node) {
+        return chunks[node >>> CHUNK_SHIFT].getDouble((node & CHUNK_MASK) * NODE_BYTES + X);
+    }
+
+    private double getY(int node) {
+        return chunks[node >>> CHUNK_SHIFT].getDouble((node & CHUNK_MASK) * NODE_BYTES + Y);
+    }
+
+    private int getInt(int node, int field) {
+        return chunks[node >>> CHUNK_SHIFT].getInt((node & CHUNK_MASK) * NODE_BYTES + field);
+    }
+
+    private void setInt(int node, int field, int value) {
+        chunks[node >>> CHUNK_SHIFT].putInt((node & CHUNK_MASK) * NODE_BYTES + field, value);
+    }
+
+    private void setDouble(int node, int field, double value) {
+        chunks[node >>> CHUNK_SHIFT].putDouble((node & CHUNK_MASK) * NODE_BYTES + field, value);
+    }
+}
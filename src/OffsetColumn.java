@@ -0,0 +1,65 @@
+// Column of file offsets kept as an int delta from a long base, one base per
+// block of 1024 rows. The readers append rows in file order, so the offsets in
+// a block lie close together and every delta fits, however large the file. If
+// one ever does not (rows sorted far out of file order), the column turns into
+// plain longs, so a lookup is always a single array read.
+public class OffsetColumn {
+    private static final int BLOCK_SHIFT = 10;
+    private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+    private final int capacity;
+    private IntArrayList deltas;
+    private final LongArrayList bases = new LongArrayList();
+    private LongArrayList offsets;
+
+    public OffsetColumn(int capacity) {
+        this.capacity = capacity;
+        deltas = new IntArrayList(capacity);
+    }
+
+    public int size() {
+        return offsets != null ? offsets.size() : deltas.size();
+    }
+
+    public void add(long offset) {
+        if (offsets != null) {
+            offsets.add(offset);
+            return;
+        }
+
+        int row = deltas.size();
+        if ((row & BLOCK_MASK) == 0)
+            bases.add(offset);
+        long delta = offset - bases.get(row >>> BLOCK_SHIFT);
+        if (delta == (int) delta) {
+            deltas.add((int) delta);
+        } else {
+            widen();
+            offsets.add(offset);
+        }
+    }
+
+    public long get(int row) {
+        if (offsets != null)
+            return offsets.get(row);
+        return bases.get(row >>> BLOCK_SHIFT) + deltas.get(row);
+    }
+
+    public void trimToSize() {
+        if (offsets != null) {
+            offsets.trimToSize();
+        } else {
+            deltas.trimToSize();
+            bases.trimToSize();
+        }
+    }
+
+    private void widen() {
+        int size = deltas.size();
+        offsets = new LongArrayList(Math.max(capacity, size + 1));
+        for (int row = 0; row < size; row++)
+            offsets.add(bases.get(row >>> BLOCK_SHIFT) + deltas.get(row));
+        deltas = null;
+        bases.clear();
+    }
+}
@@ -0,0 +1,71 @@
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Buffered line reader that knows the byte offset of the next unread line, so
+// a resumed run can start reading right after the last checkpointed record.
+// Lines end at \n, \r or \r\n, as with BufferedReader.
+public class OffsetLineReader implements Closeable {
+    private final FileInputStream in;
+    private final byte[] buffer = new byte[1 << 16];
+    private int position;
+    private int limit;
+    private long offset;
+    private byte[] line = new byte[256];
+
+    public OffsetLineReader(String fileName) throws IOException {
+        this(fileName, 0);
+    }
+
+    public OffsetLineReader(String fileName, long startOffset) throws IOException {
+        in = new FileInputStream(fileName);
+        if (startOffset > 0)
+            in.getChannel().position(startOffset);
+        offset = startOffset;
+    }
+
+    // File offset of the first byte not yet returned by readLine.
+    public long getOffset() {
+        return offset;
+    }
+
+    public String readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (position == limit && !fill())
+                return length == 0 ? null : decode(length);
+            byte b = buffer[position++];
+            offset++;
+            if (b == '\n')
+                return decode(length);
+            if (b == '\r') {
+                if ((position < limit || fill()) && buffer[position] == '\n') {
+                    position++;
+                    offset++;
+                }
+                return decode(length);
+            }
+            if (length == line.length)
+                line = Arrays.copyOf(line, 2 * length);
+            line[length++] = b;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(buffer);
+        position = 0;
+        limit = Math.max(n, 0);
+        return limit > 0;
+    }
+
+    private String decode(int length) {
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
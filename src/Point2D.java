@@ -4,6 +4,7 @@ public class Point2D {
     public double x;
     public double y;
     public String name;
+    public int id;
 
     public Point2D(double x, double y, String name) {
         this.x = x;
@@ -11,13 +12,20 @@ public class Point2D {
         this.name = name;
     }
 
+    public Point2D(double x, double y, String name, int id) {
+        this(x, y, name);
+        this.id = id;
+    }
+
     public double getX() { return x; }
     public double getY() { return y; }
     public String getName() { return name; }
+    public int getId() { return id; }
 
     public void setX(double x) { this.x = x; }
     public void setY(double y) { this.y = y; }
     public void setName(String name) { this.name = name; }
+    public void setId(int id) { this.id = id; }
 
     @Override
     public boolean equals(Object obj) {
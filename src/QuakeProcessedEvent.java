@@ -0,0 +1,29 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("earthquake.QuakeProcessed")
+@Label("Quake Processed")
+@Category("Earthquake Notification")
+@Description("One earthquake event handled by the simulation")
+public class QuakeProcessedEvent extends jdk.jfr.Event {
+    @Label("Time")
+    public int time;
+
+    @Label("Magnitude")
+    public double magnitude;
+
+    @Label("Notification Radius")
+    public double radius;
+
+    @Label("Pruned")
+    @Description("Rejected by the tier index without a tree walk")
+    public boolean pruned;
+
+    @Label("Nodes Visited")
+    public int nodesVisited;
+
+    @Label("Watchers Notified")
+    public int watchersNotified;
+}
@@ -0,0 +1,17 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("earthquake.QueryLargest")
+@Label("Query Largest")
+@Category("Earthquake Notification")
+@Description("A largest-in-window lookup on the magnitude heap")
+public class QueryLargestEvent extends jdk.jfr.Event {
+    @Label("Heap Size")
+    public int heapSize;
+
+    @Label("Requested")
+    @Description("1 for query-largest, K for query-topk")
+    public int requested;
+}
@@ -38,7 +38,7 @@ public class SimpleMap<K, V> implements Map<K, V> {
                 return oldValue;
             }
         }
-        entries.add(entries.size(), new MapEntry<>(key, value));
+        entries.add(new MapEntry<>(key, value));
         return null;
     }
 
@@ -59,7 +59,7 @@ public class SimpleMap<K, V> implements Map<K, V> {
     public Iterable<K> keySet() {
         List<K> keys = new ArrayList<>();
         for (int i = 0; i < entries.size(); i++) {
-            keys.add(keys.size(), entries.get(i).getKey());
+            keys.add(entries.get(i).getKey());
         }
         return keys;
     }
@@ -68,7 +68,7 @@ public class SimpleMap<K, V> implements Map<K, V> {
     public Iterable<V> values() {
         List<V> values = new ArrayList<>();
         for (int i = 0; i < entries.size(); i++) {
-            values.add(values.size(), entries.get(i).getValue());
+            values.add(entries.get(i).getValue());
         }
         return values;
     }
@@ -0,0 +1,289 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+// Simulation state at an event boundary: the watcher tree, the live window (with
+// the exact heap and quake-tree layouts, so ties resolve the same way after a
+// restart), the range-query history, the throttle, and how far each input file
+// has been consumed.
+// capture() does not copy that state. The trees are frozen in O(1) and copy a
+// node before its first change afterwards (path copying); the window, heap and
+// throttle are chunked arrays that capture() shares in O(size / 1024), and a
+// chunk is copied before its first write afterwards; the history is append-only.
+// The simulation thus pays for a snapshot a little at a time, as it changes
+// what was captured. The window's quakes are shared as well, so the simulator
+// does not recycle expired quakes while checkpointing. All encoding and I/O
+// happens in write(), which is safe to run on another thread.
+// A snapshot loaded by read() holds plain arrays instead and is only restored.
+public class SimulationSnapshot {
+    private static final int MAGIC = 0x45515350;
+    // version 2 added the skip counts, version 3 the history's place table
+    private static final int VERSION = 3;
+
+    // how much of each input file has been applied, as InputProgress keeps it
+    public int currentTime;
+    public int watcherEventsRead;
+    public long watcherOffset;
+    public int watcherSkip;
+    public int earthquakeEventsRead;
+    public long earthquakeOffset;
+    public int earthquakeSkip;
+    public NotificationThrottle throttle;
+
+    private ChunkedQueue<EarthquakeEvent> window;
+    private ChunkedArray<EarthquakeEvent> heapOrder;
+    private int heapSize;
+    private EarthquakeHistory.View history;
+    // captured
+    private WatcherTree.Frozen frozenWatchers;
+    private EarthquakeKDTree.Frozen frozenQuakes;
+    // decodes the ids that window quakes keep encoded (EarthquakeEvent.idCode)
+    private StringDictionary.View strings;
+    // read
+    private Point2D[] watchers;
+    private byte[] watcherShape;
+    private EarthquakeEvent[] quakeNodes;
+    private boolean[] quakeRemoved;
+    private byte[] quakeShape;
+
+    public static SimulationSnapshot capture(int currentTime, InputProgress watcherInput, InputProgress earthquakeInput,
+                                             WatcherTree watcherTree, ChunkedQueue<EarthquakeEvent> earthquakeQueue, MaxHeap<EarthquakeEvent> magnitudeHeap,
+                                             EarthquakeKDTree earthquakeTree, EarthquakeHistory history, NotificationThrottle throttle) {
+        SimulationSnapshot snapshot = new SimulationSnapshot();
+        snapshot.currentTime = currentTime;
+        snapshot.watcherEventsRead = watcherInput.getEventsRead();
+        snapshot.watcherOffset = watcherInput.getOffset();
+        snapshot.watcherSkip = watcherInput.getSkip();
+        snapshot.earthquakeEventsRead = earthquakeInput.getEventsRead();
+        snapshot.earthquakeOffset = earthquakeInput.getOffset();
+        snapshot.earthquakeSkip = earthquakeInput.getSkip();
+        snapshot.strings = earthquakeInput.getStore().getStrings().view();
+        snapshot.frozenWatchers = watcherTree.freeze();
+        snapshot.window = earthquakeQueue.copy();
+        snapshot.heapOrder = magnitudeHeap.items();
+        snapshot.heapSize = magnitudeHeap.size();
+        snapshot.frozenQuakes = earthquakeTree.freeze();
+        snapshot.history = history.view();
+        snapshot.throttle = throttle == null ? null : throttle.copy();
+        return snapshot;
+    }
+
+    // Lets the watcher tree reuse the nodes that only this snapshot still
+    // holds; called once the snapshot has been written or dropped.
+    public void release() {
+        if (frozenWatchers != null)
+            frozenWatchers.release();
+    }
+
+    // Loads the state read from a file into freshly created, empty structures.
+    public void restore(WatcherTree watcherTree, WatcherTierIndex watcherIndex, ChunkedQueue<EarthquakeEvent> earthquakeQueue,
+                        MaxHeap<EarthquakeEvent> magnitudeHeap, EarthquakeKDTree earthquakeTree, EarthquakeHistory history) {
+        watcherTree.restorePreorder(watchers, watcherShape, watchers.length);
+        for (int i = 0; i < watchers.length; i++)
+            watcherIndex.add(watchers[i].getX(), watchers[i].getY());
+        for (int i = 0; i < window.size(); i++)
+            earthquakeQueue.add(window.get(i));
+        magnitudeHeap.restore(heapOrder, heapSize);
+        earthquakeTree.restorePreorder(quakeNodes, quakeRemoved, quakeShape, quakeNodes.length);
+        for (int i = 0; i < this.history.size(); i++)
+            history.append(this.history.getTime(i), this.history.getMagnitude(i), this.history.getPlace(i));
+    }
+
+    // Writes to a temporary file, syncs it and renames it over the target, so a
+    // crash mid-write leaves the previous snapshot intact.
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            writeTo(out);
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(currentTime);
+        out.writeInt(watcherEventsRead);
+        out.writeLong(watcherOffset);
+        out.writeInt(watcherSkip);
+        out.writeInt(earthquakeEventsRead);
+        out.writeLong(earthquakeOffset);
+        out.writeInt(earthquakeSkip);
+
+        out.writeInt(frozenWatchers.size());
+        frozenWatchers.writePreorder(out);
+
+        IdentityHashMap<EarthquakeEvent, Integer> windowIndex = new IdentityHashMap<>();
+        out.writeInt(window.size());
+        for (int i = 0; i < window.size(); i++) {
+            EarthquakeEvent quake = window.get(i);
+            windowIndex.put(quake, i);
+            writeString(out, quake.getId(strings));
+            out.writeInt(quake.time);
+            writeString(out, quake.place);
+            out.writeDouble(quake.longitude);
+            out.writeDouble(quake.latitude);
+            out.writeDouble(quake.depth);
+            out.writeDouble(quake.magnitude);
+        }
+
+        out.writeInt(heapSize);
+        for (int i = 0; i < heapSize; i++)
+            out.writeInt(windowIndex.get(heapOrder.get(i)));
+
+        int nodes = frozenQuakes.nodeCount();
+        EarthquakeEvent[] quakeNodes = new EarthquakeEvent[nodes];
+        boolean[] quakeRemoved = new boolean[nodes];
+        byte[] quakeShape = new byte[nodes];
+        frozenQuakes.copyPreorder(quakeNodes, quakeRemoved, quakeShape);
+        // removed nodes only steer searches, so their coordinates are all that is kept
+        out.writeInt(nodes);
+        for (int i = 0; i < quakeNodes.length; i++) {
+            out.writeByte(quakeShape[i]);
+            if (quakeRemoved[i]) {
+                out.writeInt(-1);
+                out.writeDouble(quakeNodes[i].longitude);
+                out.writeDouble(quakeNodes[i].latitude);
+            } else {
+                out.writeInt(windowIndex.get(quakeNodes[i]));
+            }
+        }
+
+        // the places in use once each, in order of first use, then every entry
+        // with its place as an index into that table (or -1 for none)
+        int[] placeIndex = new int[history.getStrings().size()];
+        Arrays.fill(placeIndex, -1);
+        IntArrayList places = new IntArrayList();
+        for (int i = 0; i < history.size(); i++) {
+            int place = history.getPlaceId(i);
+            if (place != EarthquakeHistory.NO_PLACE && placeIndex[place] < 0) {
+                placeIndex[place] = places.size();
+                places.add(place);
+            }
+        }
+        out.writeInt(places.size());
+        for (int i = 0; i < places.size(); i++)
+            out.writeUTF(history.getStrings().get(places.get(i)));
+        out.writeInt(history.size());
+        for (int i = 0; i < history.size(); i++) {
+            int place = history.getPlaceId(i);
+            out.writeInt(history.getTime(i));
+            out.writeDouble(history.getMagnitude(i));
+            out.writeInt(place == EarthquakeHistory.NO_PLACE ? -1 : placeIndex[place]);
+        }
+
+        out.writeBoolean(throttle != null);
+        if (throttle != null)
+            throttle.writeTo(out);
+    }
+
+    public static SimulationSnapshot read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a simulation snapshot: " + file);
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported snapshot version " + version + ": " + file);
+
+            SimulationSnapshot snapshot = new SimulationSnapshot();
+            snapshot.currentTime = in.readInt();
+            snapshot.watcherEventsRead = in.readInt();
+            snapshot.watcherOffset = in.readLong();
+            snapshot.watcherSkip = in.readInt();
+            snapshot.earthquakeEventsRead = in.readInt();
+            snapshot.earthquakeOffset = in.readLong();
+            snapshot.earthquakeSkip = in.readInt();
+
+            int watcherCount = in.readInt();
+            snapshot.watchers = new Point2D[watcherCount];
+            snapshot.watcherShape = new byte[watcherCount];
+            for (int i = 0; i < watcherCount; i++) {
+                snapshot.watcherShape[i] = in.readByte();
+                double x = in.readDouble();
+                double y = in.readDouble();
+                String name = in.readUTF();
+                snapshot.watchers[i] = new Point2D(x, y, name, in.readInt());
+            }
+
+            int windowSize = in.readInt();
+            EarthquakeEvent[] window = new EarthquakeEvent[windowSize];
+            snapshot.window = new ChunkedQueue<>();
+            for (int i = 0; i < windowSize; i++) {
+                EarthquakeEvent quake = new EarthquakeEvent();
+                quake.id = readString(in);
+                quake.time = in.readInt();
+                quake.place = readString(in);
+                quake.longitude = in.readDouble();
+                quake.latitude = in.readDouble();
+                quake.depth = in.readDouble();
+                quake.magnitude = in.readDouble();
+                window[i] = quake;
+                snapshot.window.add(quake);
+            }
+
+            snapshot.heapSize = in.readInt();
+            snapshot.heapOrder = new ChunkedArray<>(snapshot.heapSize);
+            for (int i = 0; i < snapshot.heapSize; i++)
+                snapshot.heapOrder.set(i, window[in.readInt()]);
+
+            int nodes = in.readInt();
+            snapshot.quakeNodes = new EarthquakeEvent[nodes];
+            snapshot.quakeRemoved = new boolean[nodes];
+            snapshot.quakeShape = new byte[nodes];
+            for (int i = 0; i < nodes; i++) {
+                snapshot.quakeShape[i] = in.readByte();
+                int index = in.readInt();
+                if (index < 0) {
+                    EarthquakeEvent placeholder = new EarthquakeEvent();
+                    placeholder.longitude = in.readDouble();
+                    placeholder.latitude = in.readDouble();
+                    snapshot.quakeNodes[i] = placeholder;
+                    snapshot.quakeRemoved[i] = true;
+                } else {
+                    snapshot.quakeNodes[i] = window[index];
+                }
+            }
+
+            // the places are distinct, so interning them in order makes an index its id
+            StringDictionary places = new StringDictionary();
+            int placeCount = in.readInt();
+            for (int i = 0; i < placeCount; i++)
+                places.intern(in.readUTF());
+            EarthquakeHistory history = new EarthquakeHistory(places);
+            int historySize = in.readInt();
+            for (int i = 0; i < historySize; i++) {
+                int time = in.readInt();
+                double magnitude = in.readDouble();
+                int place = in.readInt();
+                history.append(time, magnitude, place < 0 ? EarthquakeHistory.NO_PLACE : place);
+            }
+            snapshot.history = history.view();
+
+            if (in.readBoolean())
+                snapshot.throttle = NotificationThrottle.readFrom(in);
+            return snapshot;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null)
+            out.writeUTF(s);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
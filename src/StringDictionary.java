@@ -0,0 +1,150 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Interns strings to dense int ids (0, 1, 2, ...) so a place or watcher name
+// that repeats across millions of events is stored once and referred to by id.
+// The text is kept as UTF-8 in one shared byte array rather than as String
+// objects, which matters when most names are unique (watcher names). get()
+// decodes into a small direct-mapped cache, so a place that keeps coming back
+// is not decoded again for every quake. Lookups go through an open-addressing table
+// of ids hashed on the UTF-8 bytes, so growing the table rehashes the stored
+// bytes instead of keeping a hash per id.
+public class StringDictionary {
+    private static final int EMPTY = -1;
+    private static final int CACHE_SIZE = 1 << 12;
+
+    private byte[] bytes = new byte[256];
+    private int length;
+    private int[] starts = new int[64];
+    private int count;
+    private int[] table = newTable(64);
+    private final String[] cache = new String[CACHE_SIZE];
+    private final int[] cacheIds = newTable(CACHE_SIZE);
+
+    public int size() {
+        return count;
+    }
+
+    public String get(int id) {
+        int slot = id & (CACHE_SIZE - 1);
+        if (cacheIds[slot] == id)
+            return cache[slot];
+        String s = decode(bytes, starts, count, length, id);
+        cache[slot] = s;
+        cacheIds[slot] = id;
+        return s;
+    }
+
+    // Read-only view of the strings interned so far. Interned text is never
+    // rewritten and growing copies into fresh arrays, so the view stays valid,
+    // and may be read from another thread, while interning continues.
+    public View view() {
+        return new View(bytes, starts, count, length);
+    }
+
+    public static class View {
+        private final byte[] bytes;
+        private final int[] starts;
+        private final int count;
+        private final int length;
+
+        private View(byte[] bytes, int[] starts, int count, int length) {
+            this.bytes = bytes;
+            this.starts = starts;
+            this.count = count;
+            this.length = length;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public String get(int id) {
+            if (id < 0 || id >= count)
+                throw new IndexOutOfBoundsException("Illegal index: " + id);
+            return decode(bytes, starts, count, length, id);
+        }
+    }
+
+    private static String decode(byte[] bytes, int[] starts, int count, int length, int id) {
+        int start = starts[id];
+        int end = id + 1 < count ? starts[id + 1] : length;
+        return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    // Returns the id of s, or -1 if it has not been interned.
+    public int find(String s) {
+        byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+        int mask = table.length - 1;
+        for (int slot = hash(encoded, 0, encoded.length) & mask; table[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (matches(id, encoded))
+                return id;
+        }
+        return EMPTY;
+    }
+
+    // Returns the id of s, adding it if it has not been seen yet.
+    public int intern(String s) {
+        byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+        int mask = table.length - 1;
+        int slot = hash(encoded, 0, encoded.length) & mask;
+        while (table[slot] != EMPTY) {
+            int id = table[slot];
+            if (matches(id, encoded))
+                return id;
+            slot = (slot + 1) & mask;
+        }
+
+        int id = count;
+        if (length + encoded.length > bytes.length)
+            bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + encoded.length));
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        if (count == starts.length)
+            starts = Arrays.copyOf(starts, Math.max(64, 2 * starts.length));
+        starts[count++] = length;
+        length += encoded.length;
+        table[slot] = id;
+        if (4 * count > 3 * table.length)
+            rehash(2 * table.length);
+        return id;
+    }
+
+    // Drops the spare capacity left by growing; call once no more strings are added.
+    public void trimToSize() {
+        bytes = Arrays.copyOf(bytes, length);
+        starts = Arrays.copyOf(starts, count);
+    }
+
+    private boolean matches(int id, byte[] encoded) {
+        int start = starts[id];
+        int end = id + 1 < count ? starts[id + 1] : length;
+        return Arrays.equals(bytes, start, end, encoded, 0, encoded.length);
+    }
+
+    private void rehash(int capacity) {
+        table = newTable(capacity);
+        int mask = capacity - 1;
+        for (int id = 0; id < count; id++) {
+            int end = id + 1 < count ? starts[id + 1] : length;
+            int slot = hash(bytes, starts[id], end) & mask;
+            while (table[slot] != EMPTY)
+                slot = (slot + 1) & mask;
+            table[slot] = id;
+        }
+    }
+
+    private static int[] newTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++)
+            h = 31 * h + bytes[i];
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
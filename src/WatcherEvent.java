@@ -4,6 +4,15 @@ public class WatcherEvent implements Event {
     public double longitude;
     public double latitude;
     public String name;
+    public int watcherId;
+    public int count;
+    public double radius;
+    public int fromTime;
+    public int toTime;
+    // byte offset just past this event's line in the watcher file
+    public long endOffset;
+
+    public WatcherEvent() {}
 
     public WatcherEvent(int time, String action, double longitude, double latitude, String name) {
         this.time = time;
@@ -24,6 +33,27 @@ public class WatcherEvent implements Event {
         this.action = action;
     }
 
+    public WatcherEvent(int time, String action, double longitude, double latitude, double radius) {
+        this.time = time;
+        this.action = action;
+        this.longitude = longitude;
+        this.latitude = latitude;
+        this.radius = radius;
+    }
+
+    public WatcherEvent(int time, String action, int fromTime, int toTime) {
+        this.time = time;
+        this.action = action;
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+    }
+
+    public WatcherEvent(int time, String action, int count) {
+        this.time = time;
+        this.action = action;
+        this.count = count;
+    }
+
     @Override
     public int getTime() {
         return this.time;
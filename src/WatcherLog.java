@@ -0,0 +1,526 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// Durable append-only log of watcher add/delete commands, kept in a directory of
+// numbered segments (wal-00000001.log, ...) plus an optional watchers.snap.
+// Every watcher command read from the input is logged, the ones that do not
+// change the watchers only as a position record: the log and the snapshot both
+// know how much of the watcher file has been applied, as an InputProgress
+// position, so a restarted run reads the file from there instead of applying
+// its commands a second time.
+//
+// append() only encodes the record into an in-memory buffer. A flusher thread
+// swaps the buffer out, writes it and fsyncs, so every fsync covers all records
+// appended since the previous one (group commit). The durability window is the
+// longest the flusher waits before syncing: a crash loses at most that much.
+//
+// Once the active segment is large enough, compact() starts a new segment and
+// freezes the watcher tree, and the flusher writes the frozen tree to
+// watchers.snap, after which the older segments are deleted. recover() loads the snapshot and replays the
+// segments after it.
+//
+// Each record is: int length, int CRC32 of the payload, payload. Replay stops at
+// the first short or corrupt record, which is what a torn final write looks like.
+public class WatcherLog {
+    private static final int SNAPSHOT_MAGIC = 0x45515753;
+    // version 3 added the skip count
+    private static final int SNAPSHOT_VERSION = 3;
+    private static final String SNAPSHOT_NAME = "watchers.snap";
+    // numbered past the earlier records, whose position had no skip count
+    private static final byte ADD = 6;
+    private static final byte DELETE = 7;
+    private static final byte POSITION = 8;
+    private static final long SEGMENT_BYTES = 64L << 20;
+    private static final int WAKE_BYTES = 1 << 20;
+    private static final int MAX_PENDING_BYTES = 64 << 20;
+
+    private final File directory;
+    private final long syncMillis;
+    private final CRC32 crc = new CRC32();
+
+    // how much of the watcher file the log covers, as InputProgress keeps it;
+    // recovered, then advanced by append()
+    private int watcherEventsRead;
+    private long watcherOffset;
+    private int watcherSkip;
+
+    // guarded by lock
+    private final Object lock = new Object();
+    private ByteBuffer active = ByteBuffer.allocate(WAKE_BYTES);
+    private long appended;
+    private long durable;
+    private boolean closed;
+    private IOException failure;
+    private Compaction pendingCompaction;
+    private int syncWaiters;
+    private long firstPendingMillis;
+
+    // owned by the flusher once started
+    private ByteBuffer flushing = ByteBuffer.allocate(WAKE_BYTES);
+    private FileChannel segment;
+    // only changes while a compaction is pending, so compact() may read it
+    private int segmentNumber;
+    private volatile long segmentBytes;
+    private long flushedRecords;
+    private Thread flusher;
+
+    private static class Compaction {
+        final int firstSegment;
+        final int watcherEventsRead;
+        final long watcherOffset;
+        final int watcherSkip;
+        final WatcherTree.Frozen watchers;
+        final ByteBuffer tail;
+
+        Compaction(int firstSegment, int watcherEventsRead, long watcherOffset, int watcherSkip, WatcherTree.Frozen watchers, ByteBuffer tail) {
+            this.firstSegment = firstSegment;
+            this.watcherEventsRead = watcherEventsRead;
+            this.watcherOffset = watcherOffset;
+            this.watcherSkip = watcherSkip;
+            this.watchers = watchers;
+            this.tail = tail;
+        }
+    }
+
+    public WatcherLog(File directory, long syncMillis) {
+        this.directory = directory;
+        this.syncMillis = syncMillis;
+    }
+
+    // Loads watchers.snap and replays the segments after it into the (empty)
+    // tree and index, then opens a fresh segment and starts the flusher. The
+    // watcher file should then be read from getWatcherOffset() on, skipping the
+    // first getWatcherSkip() events of the rest in time order.
+    public void recover(WatcherTree watcherTree, WatcherTierIndex watcherIndex) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+
+        int firstSegment = 1;
+        File snapshot = new File(directory, SNAPSHOT_NAME);
+        if (snapshot.exists())
+            firstSegment = readSnapshot(snapshot, watcherTree, watcherIndex);
+
+        int[] segments = listSegments();
+        int last = firstSegment - 1;
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i] < firstSegment)
+                continue;
+            File file = segmentFile(segments[i]);
+            if (file.length() == 0) {
+                file.delete();
+                continue;
+            }
+            last = segments[i];
+            long valid = replay(file, watcherTree, watcherIndex);
+            if (valid < file.length()) {
+                // cut the torn tail so the segments written after this run still replay
+                System.err.println("Watcher log: dropped a torn record at the end of " + file.getName());
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                    channel.force(false);
+                }
+                break;
+            }
+        }
+
+        openSegment(last + 1);
+        flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "watcher-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Number of watcher commands before getWatcherOffset()
+    public int getWatcherEventsRead() {
+        return watcherEventsRead;
+    }
+
+    // Watcher file offset just past the prefix of the file the log covers
+    public long getWatcherOffset() {
+        return watcherOffset;
+    }
+
+    // Watcher commands past getWatcherOffset() the log covers
+    public int getWatcherSkip() {
+        return watcherSkip;
+    }
+
+    // Logs the next watcher command applied, with the position of the watcher
+    // file once it has been (input must already include it). Add and delete are
+    // logged with their arguments, any other command only advances the position.
+    public void append(WatcherEvent event, InputProgress input) throws IOException {
+        byte[] name = event.name == null ? null : event.name.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = 1 + 4 + 4 + 8 + 4;
+        if (event.action.equals("add"))
+            payloadLength += 8 + 8 + 4 + 2 + name.length;
+        else if (event.action.equals("delete"))
+            payloadLength += 2 + name.length;
+
+        synchronized (lock) {
+            checkOpen();
+            while (active.position() >= MAX_PENDING_BYTES) {
+                waitOnLock(0);
+                checkOpen();
+            }
+            ensureRoom(8 + payloadLength);
+            int start = active.position();
+            if (start == 0) {
+                firstPendingMillis = System.currentTimeMillis();
+                lock.notifyAll();
+            }
+            watcherEventsRead = input.getEventsRead();
+            watcherOffset = input.getOffset();
+            watcherSkip = input.getSkip();
+            active.putInt(payloadLength);
+            active.putInt(0);
+            if (event.action.equals("add")) {
+                active.put(ADD);
+                putPosition(event.time);
+                active.putDouble(event.longitude);
+                active.putDouble(event.latitude);
+                active.putInt(event.watcherId);
+                putName(name);
+            } else if (event.action.equals("delete")) {
+                active.put(DELETE);
+                putPosition(event.time);
+                putName(name);
+            } else {
+                active.put(POSITION);
+                putPosition(event.time);
+            }
+
+            crc.reset();
+            crc.update(active.array(), start + 8, payloadLength);
+            active.putInt(start + 4, (int) crc.getValue());
+            appended++;
+            if (active.position() >= WAKE_BYTES)
+                lock.notifyAll();
+        }
+    }
+
+    private void putPosition(int time) {
+        active.putInt(time);
+        active.putInt(watcherEventsRead);
+        active.putLong(watcherOffset);
+        active.putInt(watcherSkip);
+    }
+
+    private void putName(byte[] name) {
+        active.putShort((short) name.length);
+        active.put(name);
+    }
+
+    public boolean shouldCompact() {
+        synchronized (lock) {
+            return pendingCompaction == null && segmentBytes + active.position() >= SEGMENT_BYTES;
+        }
+    }
+
+    // Switches to a new segment and has the flusher write a snapshot of the
+    // given tree, which must reflect every record appended so far.
+    public void compact(WatcherTree watcherTree) throws IOException {
+        synchronized (lock) {
+            checkOpen();
+            if (pendingCompaction != null)
+                return;
+            // records buffered so far still belong to the old segment
+            ByteBuffer tail = active;
+            active = ByteBuffer.allocate(WAKE_BYTES);
+            pendingCompaction = new Compaction(segmentNumber + 1, watcherEventsRead, watcherOffset, watcherSkip, watcherTree.freeze(), tail);
+            lock.notifyAll();
+        }
+    }
+
+    // Blocks until everything appended so far is on disk.
+    public void sync() throws IOException {
+        synchronized (lock) {
+            long target = appended;
+            syncWaiters++;
+            lock.notifyAll();
+            try {
+                while (durable < target) {
+                    checkOpen();
+                    waitOnLock(0);
+                }
+            } finally {
+                syncWaiters--;
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        sync();
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segment.close();
+        if (failure != null)
+            throw failure;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long batchEnd;
+            Compaction compaction;
+            synchronized (lock) {
+                // sync once the oldest buffered record has waited out the window,
+                // sooner if the buffer is large or someone is blocked in sync()
+                while (!closed && pendingCompaction == null) {
+                    if (active.position() == 0) {
+                        waitOnLock(0);
+                        continue;
+                    }
+                    long remaining = firstPendingMillis + syncMillis - System.currentTimeMillis();
+                    if (remaining <= 0 || active.position() >= WAKE_BYTES || syncWaiters > 0)
+                        break;
+                    waitOnLock(remaining);
+                }
+                if (closed && active.position() == 0 && pendingCompaction == null)
+                    return;
+                ByteBuffer full = active;
+                active = flushing;
+                active.clear();
+                flushing = full;
+                batchEnd = appended;
+                compaction = pendingCompaction;
+            }
+
+            try {
+                if (compaction != null) {
+                    write(compaction.tail);
+                    segment.force(false);
+                    segment.close();
+                    openSegment(compaction.firstSegment);
+                }
+                write(flushing);
+                segment.force(false);
+                if (Metrics.enabled)
+                    Metrics.recordWatcherLogSync(batchEnd - flushedRecords);
+                flushedRecords = batchEnd;
+                synchronized (lock) {
+                    durable = batchEnd;
+                    lock.notifyAll();
+                }
+                if (compaction != null) {
+                    writeSnapshot(compaction);
+                    deleteSegmentsBefore(compaction.firstSegment);
+                    synchronized (lock) {
+                        pendingCompaction = null;
+                    }
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    closed = true;
+                    lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            segmentBytes += segment.write(buffer);
+        buffer.clear();
+    }
+
+    private void openSegment(int number) throws IOException {
+        segmentNumber = number;
+        segment = FileChannel.open(segmentFile(number).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentBytes = 0;
+    }
+
+    private void writeSnapshot(Compaction compaction) throws IOException {
+        File target = new File(directory, SNAPSHOT_NAME);
+        File temp = new File(directory, SNAPSHOT_NAME + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(compaction.firstSegment);
+            out.writeInt(compaction.watcherEventsRead);
+            out.writeLong(compaction.watcherOffset);
+            out.writeInt(compaction.watcherSkip);
+            out.writeInt(compaction.watchers.size());
+            compaction.watchers.writePreorder(out);
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            compaction.watchers.release();
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private int readSnapshot(File file, WatcherTree watcherTree, WatcherTierIndex watcherIndex) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC)
+                throw new IOException("Not a watcher snapshot: " + file);
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION)
+                throw new IOException("Unsupported watcher snapshot version " + version + ": " + file);
+            int firstSegment = in.readInt();
+            watcherEventsRead = in.readInt();
+            watcherOffset = in.readLong();
+            watcherSkip = in.readInt();
+            int count = in.readInt();
+            Point2D[] watchers = new Point2D[count];
+            byte[] shape = new byte[count];
+            for (int i = 0; i < count; i++) {
+                shape[i] = in.readByte();
+                double x = in.readDouble();
+                double y = in.readDouble();
+                String name = in.readUTF();
+                watchers[i] = new Point2D(x, y, name, in.readInt());
+                watcherIndex.add(x, y);
+            }
+            watcherTree.restorePreorder(watchers, shape, count);
+            return firstSegment;
+        }
+    }
+
+    // Applies the records of one segment and returns the length of its valid
+    // prefix, which is short of the file length when it ends in a torn record.
+    private long replay(File file, WatcherTree watcherTree, WatcherTierIndex watcherIndex) throws IOException {
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            byte[] payload = new byte[256];
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return valid;
+                }
+                if (length <= 0 || length > 1 << 20)
+                    return valid;
+                if (payload.length < length)
+                    payload = new byte[Math.max(length, 2 * payload.length)];
+                try {
+                    int checksum = in.readInt();
+                    in.readFully(payload, 0, length);
+                    crc.reset();
+                    crc.update(payload, 0, length);
+                    if ((int) crc.getValue() != checksum)
+                        return valid;
+                } catch (EOFException e) {
+                    return valid;
+                }
+                apply(ByteBuffer.wrap(payload, 0, length), watcherTree, watcherIndex);
+                valid += 8 + length;
+            }
+        }
+    }
+
+    // Same tree and index updates as EarthquakeNotification.processWatcherEvent.
+    private void apply(ByteBuffer record, WatcherTree watcherTree, WatcherTierIndex watcherIndex) throws IOException {
+        byte type = record.get();
+        if (type != ADD && type != DELETE && type != POSITION)
+            throw new IOException("Unsupported watcher log record type " + type);
+        record.getInt();
+        watcherEventsRead = record.getInt();
+        watcherOffset = record.getLong();
+        watcherSkip = record.getInt();
+        if (type == ADD) {
+            double x = record.getDouble();
+            double y = record.getDouble();
+            int id = record.getInt();
+            String name = readName(record);
+            watcherTree.insert(new Point2D(x, y, name, id));
+            watcherIndex.add(x, y);
+        } else if (type == DELETE) {
+            Point2D point = watcherTree.searchByName(readName(record));
+            if (point != null) {
+                watcherTree.remove(point);
+                watcherIndex.remove(point.getX(), point.getY());
+            }
+        }
+    }
+
+    private static String readName(ByteBuffer record) {
+        byte[] name = new byte[record.getShort() & 0xFFFF];
+        record.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private void deleteSegmentsBefore(int number) {
+        int[] segments = listSegments();
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i] < number)
+                segmentFile(segments[i]).delete();
+        }
+    }
+
+    private int[] listSegments() {
+        String[] names = directory.list();
+        if (names == null)
+            return new int[0];
+        IntArrayList found = new IntArrayList();
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].startsWith("wal-") && names[i].endsWith(".log")) {
+                try {
+                    found.add(Integer.parseInt(names[i].substring(4, names[i].length() - 4)));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        int[] numbers = found.toArray();
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    private File segmentFile(int number) {
+        return new File(directory, String.format("wal-%08d.log", number));
+    }
+
+    private void ensureRoom(int bytes) {
+        if (active.remaining() >= bytes)
+            return;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * active.capacity(), active.position() + bytes));
+        active.flip();
+        larger.put(active);
+        active = larger;
+    }
+
+    private void checkOpen() throws IOException {
+        if (failure != null)
+            throw failure;
+        if (closed)
+            throw new IOException("Watcher log is closed");
+    }
+
+    private void waitOnLock(long millis) {
+        try {
+            lock.wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+// Coarse lon/lat grid that answers "can any watcher be within the notification
+// radius of this magnitude?" without walking the watcher-tree.
+// For every magnitude tier we keep, per cell, how many watchers lie within the
+// tier's radius of that cell. A zero count means the quake can be rejected.
+public class WatcherTierIndex {
+    public static final double CELL_SIZE = 5.0;
+    public static final double[] TIER_MAGNITUDES = {1.0, 1.5, 2.0, 2.5, 3.0};
+
+    private static final double MIN_X = -180.0;
+    private static final double MAX_X = 180.0;
+    private static final double MIN_Y = -90.0;
+    private static final double MAX_Y = 90.0;
+
+    private final int columns;
+    private final int rows;
+    private final double[] tierRadius;
+    private final int[][] tierCounts;
+
+    public WatcherTierIndex() {
+        columns = (int) Math.ceil((MAX_X - MIN_X) / CELL_SIZE);
+        rows = (int) Math.ceil((MAX_Y - MIN_Y) / CELL_SIZE);
+        tierRadius = new double[TIER_MAGNITUDES.length];
+        tierCounts = new int[TIER_MAGNITUDES.length][columns * rows];
+        for (int t = 0; t < TIER_MAGNITUDES.length; t++) {
+            tierRadius[t] = notificationDistance(TIER_MAGNITUDES[t]);
+        }
+    }
+
+    public static double notificationDistance(double magnitude) {
+        return 2 * Math.pow(magnitude, 3);
+    }
+
+    public void add(double x, double y) {
+        update(x, y, 1);
+    }
+
+    public void remove(double x, double y) {
+        update(x, y, -1);
+    }
+
+    // Returns false only when no watcher can be within the notification
+    // distance of a quake of this magnitude at (x, y).
+    public boolean mayHaveWatchersWithin(double x, double y, double magnitude) {
+        if (!(x >= MIN_X && x <= MAX_X && y >= MIN_Y && y <= MAX_Y))
+            return true;
+        int tier = tierFor(magnitude);
+        if (tier < 0)
+            return true;
+        return tierCounts[tier][cellIndex(column(x), row(y))] > 0;
+    }
+
+    private int tierFor(double magnitude) {
+        for (int t = 0; t < TIER_MAGNITUDES.length; t++) {
+            if (magnitude <= TIER_MAGNITUDES[t])
+                return t;
+        }
+        return -1;
+    }
+
+    private void update(double x, double y, int delta) {
+        for (int t = 0; t < tierRadius.length; t++) {
+            double radius = tierRadius[t];
+            int minCol = column(x - radius);
+            int maxCol = column(x + radius);
+            int minRow = row(y - radius);
+            int maxRow = row(y + radius);
+            int[] counts = tierCounts[t];
+
+            for (int c = minCol; c <= maxCol; c++) {
+                for (int r = minRow; r <= maxRow; r++) {
+                    if (distanceToCell(x, y, c, r) <= radius) {
+                        counts[cellIndex(c, r)] += delta;
+                    }
+                }
+            }
+        }
+    }
+
+    private double distanceToCell(double x, double y, int column, int row) {
+        double cellMinX = MIN_X + column * CELL_SIZE;
+        double cellMinY = MIN_Y + row * CELL_SIZE;
+        double dx = Math.max(0, Math.max(cellMinX - x, x - (cellMinX + CELL_SIZE)));
+        double dy = Math.max(0, Math.max(cellMinY - y, y - (cellMinY + CELL_SIZE)));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private int column(double x) {
+        return clamp((int) Math.floor((x - MIN_X) / CELL_SIZE), columns);
+    }
+
+    private int row(double y) {
+        return clamp((int) Math.floor((y - MIN_Y) / CELL_SIZE), rows);
+    }
+
+    private int clamp(int i, int n) {
+        if (i < 0)
+            return 0;
+        if (i >= n)
+            return n - 1;
+        return i;
+    }
+
+    private int cellIndex(int column, int row) {
+        return row * columns + column;
+    }
+}
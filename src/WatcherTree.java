@@ -0,0 +1,34 @@
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Spatial index of the registered watchers. KDTree2D keeps its nodes as
+// objects on the heap; OffHeapKDTree2D keeps them in direct buffers. Points
+// handed out by either tree are reused, so they stay valid only until the
+// tree's next insert or query.
+public interface WatcherTree {
+    int size();
+    void insert(Point2D point);
+    void insert(double x, double y, String name, int id);
+    void remove(Point2D point);
+    boolean removeByName(String name);
+    Point2D searchByName(String name);
+    List<Point2D> rangeQueryCircular(double x, double y, double radius);
+    void rangeQueryCircular(double x, double y, double radius, List<Point2D> result);
+    int getLastNodesVisited();
+    // The tree as it is now, in O(1). After a freeze a node is copied before
+    // it is first changed (path copying), so the frozen tree stays as it was
+    // and may be read from another thread while this one keeps changing.
+    Frozen freeze();
+    void restorePreorder(Point2D[] points, byte[] shape, int count);
+
+    interface Frozen {
+        int size();
+        // Writes every watcher in preorder as its shape bits (1 = has a left
+        // child, 2 = has a right child), x, y, name and id; restorePreorder
+        // rebuilds the same tree from that.
+        void writePreorder(DataOutput out) throws IOException;
+        // Called once the frozen tree has been read, so the nodes only it
+        // still holds can be reused.
+        void release();
+    }
+}
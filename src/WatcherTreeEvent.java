@@ -0,0 +1,20 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("earthquake.WatcherTree")
+@Label("Watcher Tree Update")
+@Category("Earthquake Notification")
+@Description("A watcher inserted into or removed from the watcher-tree")
+public class WatcherTreeEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Watcher")
+    public String name;
+
+    @Label("Depth Touched")
+    @Description("Deepest tree level the operation reached")
+    public int depth;
+}
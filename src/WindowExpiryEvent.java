@@ -0,0 +1,19 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("earthquake.WindowExpiry")
+@Label("Window Expiry")
+@Category("Earthquake Notification")
+@Description("Earthquakes dropped from the 6-hour window in one step")
+public class WindowExpiryEvent extends jdk.jfr.Event {
+    @Label("Time")
+    public int time;
+
+    @Label("Expired")
+    public int expired;
+
+    @Label("Remaining")
+    public int remaining;
+}
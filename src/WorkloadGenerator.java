@@ -0,0 +1,320 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+// Writes large, deterministic watcher and earthquake files in the same formats
+// EarthquakeNotification reads. Both files come out sorted by time and are
+// streamed, so memory stays flat whatever the event count.
+//
+// Model:
+// - watchers are clustered around cities (bigger cities get more of them) and
+//   churn through add/delete, with query-largest commands interleaved;
+// - mainshocks fall near a fixed set of fault zones with Gutenberg-Richter
+//   magnitudes (b = 1); larger ones trigger aftershock swarms that decay with
+//   Omori's law and stay close to the mainshock.
+public class WorkloadGenerator {
+
+    private static final String USAGE = "Usage: java WorkloadGenerator [--seed <n>] [--hours <n>] [--watcher-events <n>] [--earthquakes <n>] [--query-fraction <p>] <watcherFile> <earthquakeFile>";
+
+    private static final String[] CITY_NAMES = {
+            "Los Angeles", "San Francisco", "Tokyo", "Nagoya", "Istanbul", "Ankara", "London", "Paris",
+            "Berlin", "Warsaw", "Sydney", "Auckland", "Sao Paulo", "Santiago", "Mexico City", "Delhi",
+            "Mumbai", "Jakarta", "Shanghai", "Reykjavik"
+    };
+    private static final double[][] CITIES = {
+            {-118.24, 34.05}, {-122.42, 37.77}, {139.69, 35.69}, {136.91, 35.18}, {28.98, 41.01},
+            {32.86, 39.93}, {-0.13, 51.51}, {2.35, 48.86}, {13.40, 52.52}, {21.01, 52.23},
+            {151.21, -33.87}, {174.76, -36.85}, {-46.63, -23.55}, {-70.67, -33.45}, {-99.13, 19.43},
+            {77.21, 28.61}, {72.88, 19.08}, {106.85, -6.21}, {121.47, 31.23}, {-21.94, 64.15}
+    };
+    // fault zones: lon, lat, spread in degrees
+    private static final double[][] FAULTS = {
+            {-117.0, 34.5, 2.0}, {-122.0, 37.5, 1.5}, {140.0, 36.0, 2.5}, {137.0, 35.0, 1.0},
+            {29.0, 40.8, 1.5}, {26.0, 38.5, 2.0}, {-72.0, -33.0, 3.0}, {-99.0, 17.5, 2.0},
+            {174.0, -40.0, 2.0}, {-19.0, 64.0, 1.0}, {95.0, 3.0, 3.0}, {-155.0, 19.5, 1.0}
+    };
+    private static final String[] DIRECTIONS = {"N", "NE", "E", "SE", "S", "SW", "W", "NW", "ENE", "WNW", "SSE", "East"};
+
+    private static final double MIN_MAGNITUDE = 1.0;
+    private static final double MAX_MAGNITUDE = 6.0;
+    private static final double SWARM_MAGNITUDE = 2.5;
+
+    private final Random random;
+    private final double[] cityWeights;
+
+    private final PriorityQueue<Aftershock> pending = new PriorityQueue<>();
+
+    private final IntArrayList liveWatchers = new IntArrayList(1024);
+    private int nextWatcherId;
+    private long nextEarthquakeId;
+    private long nextAftershock;
+
+    private static class Aftershock implements Comparable<Aftershock> {
+        final int time;
+        final long sequence;
+        final double longitude;
+        final double latitude;
+        final double magnitude;
+        final int city;
+
+        Aftershock(int time, long sequence, double longitude, double latitude, double magnitude, int city) {
+            this.time = time;
+            this.sequence = sequence;
+            this.longitude = longitude;
+            this.latitude = latitude;
+            this.magnitude = magnitude;
+            this.city = city;
+        }
+
+        @Override
+        public int compareTo(Aftershock other) {
+            if (time != other.time)
+                return Integer.compare(time, other.time);
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    public WorkloadGenerator(long seed) {
+        random = new Random(seed);
+        // Zipf-like city sizes
+        cityWeights = new double[CITIES.length];
+        double total = 0;
+        for (int i = 0; i < CITIES.length; i++) {
+            cityWeights[i] = 1.0 / (i + 1);
+            total += cityWeights[i];
+        }
+        for (int i = 0; i < CITIES.length; i++)
+            cityWeights[i] /= total;
+    }
+
+    public static void main(String[] args) {
+        long seed = 1;
+        long watcherEvents = 100000;
+        long earthquakes = 100000;
+        int hours = -1;
+        double queryFraction = 0.1;
+
+        int argIndex = 0;
+        try {
+            while (argIndex < args.length && args[argIndex].startsWith("--")) {
+                String option = args[argIndex];
+                if (argIndex + 1 >= args.length) {
+                    System.out.println(USAGE);
+                    return;
+                }
+                String value = args[++argIndex];
+                if (option.equals("--seed")) {
+                    seed = Long.parseLong(value);
+                } else if (option.equals("--hours")) {
+                    hours = Integer.parseInt(value);
+                } else if (option.equals("--watcher-events")) {
+                    watcherEvents = Long.parseLong(value);
+                } else if (option.equals("--earthquakes")) {
+                    earthquakes = Long.parseLong(value);
+                } else if (option.equals("--query-fraction")) {
+                    queryFraction = Double.parseDouble(value);
+                } else {
+                    System.out.println(USAGE);
+                    return;
+                }
+                argIndex++;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        if (args.length - argIndex != 2) {
+            System.out.println(USAGE);
+            return;
+        }
+        if (hours <= 0) {
+            // about 20 quakes per hour, i.e. ~120 in the 6-hour window
+            hours = (int) Math.max(1, Math.min(Integer.MAX_VALUE, earthquakes / 20));
+        }
+
+        WorkloadGenerator generator = new WorkloadGenerator(seed);
+        try (Writer watcherOut = open(args[argIndex]); Writer earthquakeOut = open(args[argIndex + 1])) {
+            generator.generate(watcherOut, earthquakeOut, watcherEvents, earthquakes, hours, queryFraction);
+        } catch (IOException e) {
+            System.out.println("Error writing workload: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static Writer open(String fileName) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8), 1 << 20);
+    }
+
+    public void generate(Writer watcherOut, Writer earthquakeOut, long watcherEvents, long earthquakes, int hours, double queryFraction) throws IOException {
+        double watcherRate = (double) watcherEvents / hours;
+        // leave room for aftershocks in the per-hour budget
+        double mainshockRate = 0.7 * earthquakes / hours;
+
+        StringBuilder line = new StringBuilder(256);
+        long watchersWritten = 0;
+        long earthquakesWritten = 0;
+
+        earthquakeOut.write("<allearthquakes>\n");
+        for (int time = 0; watchersWritten < watcherEvents || earthquakesWritten < earthquakes; time++) {
+            boolean lastHour = time >= hours - 1;
+
+            long count = lastHour ? watcherEvents - watchersWritten : Math.min(poisson(watcherRate), watcherEvents - watchersWritten);
+            for (long i = 0; i < count; i++) {
+                line.setLength(0);
+                appendWatcherEvent(line, time, queryFraction);
+                watcherOut.append(line);
+            }
+            watchersWritten += count;
+
+            while (earthquakesWritten < earthquakes && !pending.isEmpty() && pending.peek().time <= time) {
+                Aftershock a = pending.poll();
+                line.setLength(0);
+                appendEarthquake(line, time, a.longitude, a.latitude, a.magnitude, a.city);
+                earthquakeOut.append(line);
+                earthquakesWritten++;
+            }
+
+            count = lastHour && pending.isEmpty() ? earthquakes - earthquakesWritten : Math.min(poisson(mainshockRate), earthquakes - earthquakesWritten);
+            for (long i = 0; i < count; i++) {
+                line.setLength(0);
+                appendMainshock(line, time);
+                earthquakeOut.append(line);
+            }
+            earthquakesWritten += count;
+        }
+        earthquakeOut.write("</allearthquakes>\n");
+    }
+
+    private void appendWatcherEvent(StringBuilder line, int time, double queryFraction) {
+        line.append(time).append(' ');
+        double r = random.nextDouble();
+        if (r < queryFraction) {
+            line.append("query-largest\n");
+        } else if (!liveWatchers.isEmpty() && r < queryFraction + (1 - queryFraction) * 0.4) {
+            int i = random.nextInt(liveWatchers.size());
+            int id = liveWatchers.get(i);
+            liveWatchers.set(i, liveWatchers.get(liveWatchers.size() - 1));
+            liveWatchers.removeLast();
+            line.append("delete w").append(id).append('\n');
+        } else {
+            int city = pickCity();
+            int id = nextWatcherId++;
+            liveWatchers.add(id);
+            line.append("add ");
+            appendFixed(line, CITIES[city][0] + random.nextGaussian() * 1.5, 6);
+            line.append(' ');
+            appendFixed(line, CITIES[city][1] + random.nextGaussian() * 1.5, 6);
+            line.append(" w").append(id).append('\n');
+        }
+    }
+
+    private void appendMainshock(StringBuilder line, int time) {
+        double[] fault = FAULTS[random.nextInt(FAULTS.length)];
+        double longitude = fault[0] + random.nextGaussian() * fault[2];
+        double latitude = fault[1] + random.nextGaussian() * fault[2];
+        double magnitude = gutenbergRichter();
+        int city = nearestCity(longitude, latitude);
+        appendEarthquake(line, time, longitude, latitude, magnitude, city);
+
+        if (magnitude >= SWARM_MAGNITUDE)
+            scheduleAftershocks(time, longitude, latitude, magnitude, city);
+    }
+
+    // Bath's law puts the largest aftershock ~1.2 below the mainshock; the swarm
+    // size grows tenfold per magnitude unit and the delays follow Omori (p = 1.1).
+    private void scheduleAftershocks(int time, double longitude, double latitude, double magnitude, int city) {
+        int count = (int) Math.min(500, Math.pow(10, magnitude - 1.2 - MIN_MAGNITUDE));
+        double maxAftershock = magnitude - 1.2;
+        for (int i = 0; i < count; i++) {
+            double delay = 0.5 * (Math.pow(1 - random.nextDouble(), -1 / 0.1) - 1);
+            if (delay > 72)
+                continue;
+            double m = Math.min(maxAftershock, gutenbergRichter());
+            pending.add(new Aftershock(time + 1 + (int) delay, nextAftershock++,
+                    longitude + random.nextGaussian() * 0.1, latitude + random.nextGaussian() * 0.1, m, city));
+        }
+    }
+
+    private void appendEarthquake(StringBuilder line, int time, double longitude, double latitude, double magnitude, int city) {
+        long id = nextEarthquakeId++;
+        line.append(" <earthquake>\n  <id> ").append(id).append(" </id>\n  <time> ").append(time).append(" </time>\n  <place> ")
+                .append(1 + random.nextInt(60)).append("km ").append(DIRECTIONS[random.nextInt(DIRECTIONS.length)])
+                .append(" of ").append(CITY_NAMES[city]).append(" </place>\n  <coordinates> ");
+        appendFixed(line, longitude, 4);
+        line.append(", ");
+        appendFixed(line, latitude, 4);
+        line.append(", ");
+        appendFixed(line, 2 + random.nextDouble() * 30, 1);
+        line.append(" </coordinates>\n  <magnitude> ");
+        appendFixed(line, magnitude, 12);
+        line.append(" </magnitude>\n </earthquake>\n");
+    }
+
+    private double gutenbergRichter() {
+        double m = MIN_MAGNITUDE - Math.log10(1 - random.nextDouble());
+        return Math.min(m, MAX_MAGNITUDE);
+    }
+
+    private int pickCity() {
+        double r = random.nextDouble();
+        for (int i = 0; i < cityWeights.length; i++) {
+            r -= cityWeights[i];
+            if (r < 0)
+                return i;
+        }
+        return cityWeights.length - 1;
+    }
+
+    private int nearestCity(double longitude, double latitude) {
+        int best = 0;
+        double bestDistance = Double.MAX_VALUE;
+        for (int i = 0; i < CITIES.length; i++) {
+            double dx = CITIES[i][0] - longitude;
+            double dy = CITIES[i][1] - latitude;
+            double d = dx * dx + dy * dy;
+            if (d < bestDistance) {
+                bestDistance = d;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private long poisson(double mean) {
+        if (mean > 30)
+            return Math.max(0, Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+        double limit = Math.exp(-mean);
+        long k = 0;
+        double p = random.nextDouble();
+        while (p > limit) {
+            k++;
+            p *= random.nextDouble();
+        }
+        return k;
+    }
+
+    // Fixed-point formatting without going through String.format.
+    private static void appendFixed(StringBuilder sb, double value, int decimals) {
+        if (value < 0) {
+            sb.append('-');
+            value = -value;
+        }
+        long scale = 1;
+        for (int i = 0; i < decimals; i++)
+            scale *= 10;
+        long scaled = Math.round(value * scale);
+        sb.append(scaled / scale);
+        if (decimals == 0)
+            return;
+        sb.append('.');
+        String fraction = Long.toString(scaled % scale);
+        for (int i = fraction.length(); i < decimals; i++)
+            sb.append('0');
+        sb.append(fraction);
+    }
+}